@@ -0,0 +1,156 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BenchmarkData is responsible for loading the bundled cleansed catchment area dataset, standardising it in the same way
+ * as DataProcessor, and splitting it into training, validation and testing subsets for the benchmarks to use.
+ * <p>
+ * The dataset is read from the path given by the neuralnetwork.data system property, or from CSV/Cleansed_Data.csv
+ * relative to either the working directory or its parent, so that the benchmarks can be run from the project root or
+ * from the benchmarks module.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class BenchmarkData {
+    private static final String DATA_FILE = "CSV/Cleansed_Data.csv";
+
+    private static List<CatchmentArea> allData;
+
+    private BenchmarkData() {
+    }
+
+
+    /**
+     * Returns the 60% training subset of the dataset
+     *
+     * @return an unmodifiable list of catchment area, which is the training dataset
+     */
+    static List<CatchmentArea> trainingData() {
+        List<CatchmentArea> data = load();
+        return data.subList(0, (int) (data.size() * 0.6));
+    }
+
+
+    /**
+     * Returns the 20% validation subset of the dataset
+     *
+     * @return an unmodifiable list of catchment area, which is the validation dataset
+     */
+    static List<CatchmentArea> validationData() {
+        List<CatchmentArea> data = load();
+        return data.subList((int) (data.size() * 0.6), (int) (data.size() * 0.8));
+    }
+
+
+    /**
+     * Returns the 20% testing subset of the dataset
+     *
+     * @return an unmodifiable list of catchment area, which is the testing dataset
+     */
+    static List<CatchmentArea> testData() {
+        List<CatchmentArea> data = load();
+        return data.subList((int) (data.size() * 0.8), data.size());
+    }
+
+
+    /**
+     * Reads in and standardises the dataset the first time it is needed
+     *
+     * @return an unmodifiable list of all standardised catchment area
+     */
+    private static synchronized List<CatchmentArea> load() {
+        if (allData == null) {
+            List<CatchmentArea> data = new ArrayList<>();
+            try (BufferedReader br = Files.newBufferedReader(locateDataFile())) {
+                // Skip the header row
+                String line = br.readLine();
+                while ((line = br.readLine()) != null) {
+                    String[] values = line.split(",");
+                    data.add(new CatchmentArea(Double.parseDouble(values[0].trim()), Double.parseDouble(values[1].trim()), Double.parseDouble(values[2].trim()),
+                            Double.parseDouble(values[3].trim()), Double.parseDouble(values[4].trim()), Double.parseDouble(values[5].trim()),
+                            Double.parseDouble(values[6].trim()), Double.parseDouble(values[7].trim()), Double.parseDouble(values[8].trim())));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            standardise(data);
+            allData = Collections.unmodifiableList(data);
+        }
+        return allData;
+    }
+
+
+    /**
+     * Standardises every column of the dataset to the range 0.1 - 0.9, using the minimum and maximum of each column
+     *
+     * @param data the catchment area to standardise
+     */
+    private static void standardise(List<CatchmentArea> data) {
+        double[] min = new double[9];
+        double[] max = new double[9];
+        for (int columnNum = 0; columnNum < 9; columnNum++) {
+            min[columnNum] = Double.MAX_VALUE;
+            max[columnNum] = -Double.MAX_VALUE;
+        }
+        for (CatchmentArea catchmentArea : data) {
+            double[] values = values(catchmentArea);
+            for (int columnNum = 0; columnNum < 9; columnNum++) {
+                min[columnNum] = Math.min(min[columnNum], values[columnNum]);
+                max[columnNum] = Math.max(max[columnNum], values[columnNum]);
+            }
+        }
+        for (CatchmentArea catchmentArea : data) {
+            double[] values = values(catchmentArea);
+            for (int columnNum = 0; columnNum < 9; columnNum++) {
+                values[columnNum] = 0.8 * ((values[columnNum] - min[columnNum]) / (max[columnNum] - min[columnNum])) + 0.1;
+            }
+            for (int featureNum = 0; featureNum < CatchmentArea.NUMBER_OF_FEATURES; featureNum++) {
+                catchmentArea.setFeature(featureNum, values[featureNum]);
+            }
+            catchmentArea.setIndexFlood(values[CatchmentArea.NUMBER_OF_FEATURES]);
+        }
+    }
+
+
+    /**
+     * Returns all column values of a catchment area, with the index flood last
+     *
+     * @param catchmentArea the catchment area to read the values of
+     * @return an array of the catchment area's column values
+     */
+    private static double[] values(CatchmentArea catchmentArea) {
+        double[] values = new double[CatchmentArea.NUMBER_OF_FEATURES + 1];
+        catchmentArea.copyFeatures(values, 0);
+        values[CatchmentArea.NUMBER_OF_FEATURES] = catchmentArea.getIndexFlood();
+        return values;
+    }
+
+
+    /**
+     * Finds the dataset file
+     *
+     * @return the path of the dataset file
+     */
+    private static Path locateDataFile() {
+        String configuredPath = System.getProperty("neuralnetwork.data");
+        if (configuredPath != null) {
+            return Paths.get(configuredPath);
+        }
+        Path dataFile = Paths.get(DATA_FILE);
+        if (Files.exists(dataFile)) {
+            return dataFile;
+        }
+        return Paths.get("..").resolve(DATA_FILE);
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataParallelEpochBenchmark measures the time taken to train a network for a single epoch using Batch Processing, with
+ * each mini-batch split into chunks that are processed in parallel, for a range of thread counts, chunk sizes and hidden
+ * layer sizes
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataParallelEpochBenchmark {
+
+    @Param({"1", "2", "4"})
+    private int parallelism;
+
+    @Param({"16", "64"})
+    private int chunkSize;
+
+    @Param({"16", "64", "256"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID"})
+    private ActivationFunctions activationFunction;
+
+    @Param({"171"})
+    private int batchSize;
+
+    private Dataset trainingData;
+    private ForkJoinPool pool;
+    private NeuralNetwork network;
+
+    @Setup
+    public void setUp() {
+        trainingData = Dataset.fromCatchmentAreas(BenchmarkData.trainingData(), 1);
+        pool = new ForkJoinPool(parallelism);
+        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(Arrays.asList(Improvements.BATCH_PROCESSING)), 0);
+        network.setBatchSize(batchSize);
+        network.setDataParallelism(pool, chunkSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public double dataParallelEpoch() {
+        return network.trainEpoch(trainingData);
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EpochBenchmark measures the time taken to train a network for a single epoch over the bundled training dataset, both
+ * online and using Batch Processing, for each activation function and a range of hidden layer sizes. The mini-batch
+ * size used for Batch Processing can be varied with the batchSize parameter.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EpochBenchmark {
+
+    @Param({"4", "8", "12", "16"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID", "TANH", "RELU"})
+    private ActivationFunctions activationFunction;
+
+    @Param({"171"})
+    private int batchSize;
+
+    private Dataset trainingData;
+    private NeuralNetwork onlineNetwork;
+    private NeuralNetwork batchProcessingNetwork;
+
+    @Setup
+    public void setUp() {
+        trainingData = Dataset.fromCatchmentAreas(BenchmarkData.trainingData(), 1);
+        onlineNetwork = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(), 0);
+        batchProcessingNetwork = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(Arrays.asList(Improvements.BATCH_PROCESSING)), 0);
+        batchProcessingNetwork.setBatchSize(batchSize);
+    }
+
+    @Benchmark
+    public double onlineEpoch() {
+        return onlineNetwork.trainEpoch(trainingData);
+    }
+
+    @Benchmark
+    public double batchProcessingEpoch() {
+        return batchProcessingNetwork.trainEpoch(trainingData);
+    }
+}
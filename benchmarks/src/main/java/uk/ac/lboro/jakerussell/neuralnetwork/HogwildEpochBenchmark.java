@@ -0,0 +1,59 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HogwildEpochBenchmark measures the time taken to train a network for a single epoch using Hogwild, for a range of
+ * thread counts and hidden layer sizes. Dividing the size of the training dataset by the time taken gives the
+ * throughput in samples per second.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HogwildEpochBenchmark {
+
+    @Param({"1", "2", "4"})
+    private int numberOfHogwildThreads;
+
+    @Param({"16", "64", "256"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID"})
+    private ActivationFunctions activationFunction;
+
+    private Dataset trainingData;
+    private NeuralNetwork network;
+
+    @Setup
+    public void setUp() {
+        trainingData = Dataset.fromCatchmentAreas(BenchmarkData.trainingData(), 1);
+        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(Arrays.asList(Improvements.HOGWILD)), 0);
+        network.setHogwildThreads(numberOfHogwildThreads);
+    }
+
+    @Benchmark
+    public double hogwildEpoch() {
+        return network.trainEpoch(trainingData);
+    }
+}
@@ -0,0 +1,92 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KernelBenchmark compares the scalar and vector dense kernels for the forward pass and the weight update of a single
+ * dense layer, for a range of layer sizes. The vector kernels need Java 17 or later, and the network artifact to have
+ * been built with Java 17 or later so that they are included.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+
+    @Param({"scalar", "vector"})
+    private String kernels;
+
+    @Param({"8", "64", "256"})
+    private int numberOfInputs;
+
+    @Param({"4", "16", "64", "256", "1024"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID", "TANH", "RELU"})
+    private ActivationFunctions activationFunction;
+
+    private DenseKernels denseKernels;
+    private double[] weights;
+    private double[] updatedWeights;
+    private double[] biases;
+    private double[] inputs;
+    private double[] outputs;
+    private double[] deltas;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        if ("vector".equals(kernels)) {
+            denseKernels = (DenseKernels) Class.forName(DenseKernels.VECTOR_KERNELS_CLASS).getDeclaredConstructor().newInstance();
+        } else {
+            denseKernels = new ScalarDenseKernels();
+        }
+
+        SplittableRandom random = new SplittableRandom(42L);
+        weights = randomValues(random, numberOfHiddenNodes * numberOfInputs);
+        updatedWeights = new double[numberOfHiddenNodes * numberOfInputs];
+        biases = randomValues(random, numberOfHiddenNodes);
+        inputs = randomValues(random, numberOfInputs);
+        outputs = new double[numberOfHiddenNodes];
+        deltas = randomValues(random, numberOfHiddenNodes);
+    }
+
+    @Benchmark
+    public double[] forwardPass() {
+        denseKernels.batchWeightedSums(weights, biases, inputs, outputs, 1, numberOfHiddenNodes, numberOfInputs);
+        denseKernels.activate(activationFunction, outputs, 0, numberOfHiddenNodes);
+        return outputs;
+    }
+
+    @Benchmark
+    public double[] weightUpdate() {
+        denseKernels.updateWeights(weights, updatedWeights, deltas, inputs, numberOfHiddenNodes, numberOfInputs, 0.1, true, 0.9, false);
+        return updatedWeights;
+    }
+
+    private static double[] randomValues(SplittableRandom random, int length) {
+        double[] values = new double[length];
+        for (int valueNum = 0; valueNum < length; valueNum++) {
+            values[valueNum] = random.nextDouble(-1, 1);
+        }
+        return values;
+    }
+}
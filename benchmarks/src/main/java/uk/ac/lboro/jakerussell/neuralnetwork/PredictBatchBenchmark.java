@@ -0,0 +1,100 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PredictBatchBenchmark measures the throughput of predicting the index flood of the whole testing dataset, packed into
+ * a single feature matrix, with predictBatch() compared to calling predict() once per catchment area. As well as the
+ * number of passes over the dataset per second, the number of catchment areas predicted per second is reported as the
+ * "samples" counter.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictBatchBenchmark {
+
+    @Param({"4", "8", "12", "16"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID", "TANH", "RELU"})
+    private ActivationFunctions activationFunction;
+
+    private List<CatchmentArea> testData;
+    private Dataset testDataset;
+    private double[] features;
+    private double[] predictions;
+    private NeuralNetwork network;
+
+    /**
+     * SampleCounter counts the number of catchment areas predicted, so that JMH reports them per second alongside the
+     * number of passes over the dataset
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class SampleCounter {
+        public long samples;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            samples = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        testData = BenchmarkData.testData();
+        testDataset = Dataset.fromCatchmentAreas(testData, 1);
+        features = new double[testData.size() * CatchmentArea.NUMBER_OF_FEATURES];
+        for (int sampleNum = 0; sampleNum < testData.size(); sampleNum++) {
+            testData.get(sampleNum).copyFeatures(features, sampleNum * CatchmentArea.NUMBER_OF_FEATURES);
+        }
+        predictions = new double[testData.size()];
+        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(), 0);
+    }
+
+    @Benchmark
+    public double[] predictBatch(SampleCounter counter) {
+        network.predictBatch(features, testData.size(), predictions);
+        counter.samples += testData.size();
+        return predictions;
+    }
+
+    @Benchmark
+    public double[] predictBatchFromDataset(SampleCounter counter) {
+        network.predictBatch(testDataset, 0, testDataset.size(), predictions, 0);
+        counter.samples += testDataset.size();
+        return predictions;
+    }
+
+    @Benchmark
+    public double[] predictEach(SampleCounter counter) {
+        for (int sampleNum = 0; sampleNum < testDataset.size(); sampleNum++) {
+            predictions[sampleNum] = network.predict(testDataset, sampleNum);
+        }
+        counter.samples += testDataset.size();
+        return predictions;
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PredictBenchmark measures the latency of predicting the index flood of a single catchment area, for each activation
+ * function and a range of hidden layer sizes. Successive invocations cycle through the testing dataset.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredictBenchmark {
+
+    @Param({"4", "8", "12", "16"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID", "TANH", "RELU"})
+    private ActivationFunctions activationFunction;
+
+    private List<CatchmentArea> testData;
+    private NeuralNetwork network;
+    private int testDataIndex;
+
+    @Setup
+    public void setUp() {
+        testData = BenchmarkData.testData();
+        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(), 0);
+    }
+
+    @Benchmark
+    public double predict() {
+        CatchmentArea catchmentArea = testData.get(testDataIndex);
+        testDataIndex = testDataIndex == testData.size() - 1 ? 0 : testDataIndex + 1;
+        return network.predict(catchmentArea);
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ValidationBenchmark measures the time taken for a validation pass, which is a forwards pass only over the bundled
+ * validation dataset and the calculation of its RMSE, for each activation function and a range of hidden layer sizes
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"4", "8", "12", "16"})
+    private int numberOfHiddenNodes;
+
+    @Param({"SIGMOID", "TANH", "RELU"})
+    private ActivationFunctions activationFunction;
+
+    private Dataset validationData;
+    private NeuralNetwork network;
+
+    @Setup
+    public void setUp() {
+        validationData = Dataset.fromCatchmentAreas(BenchmarkData.validationData(), 1);
+        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, 0.1, activationFunction, new ArrayList<>(), 0);
+    }
+
+    @Benchmark
+    public double validationPass() {
+        return network.calculateRootMeanSquaredError(validationData);
+    }
+}
@@ -2,13 +2,134 @@ package uk.ac.lboro.jakerussell.neuralnetwork;
 
 /**
  * Activation Functions that can be used
+ * <p>
+ * Each activation function provides its own implementation of both the function and its first derivative, for a single
+ * value and for a whole layer at a time. The layer implementations keep the loop inside each activation function, so
+ * the network resolves the activation function once per layer rather than once per node.
  *
  * @author Jake Russell
  * @version 1.0
  * @since 22/03/2021
  */
 public enum ActivationFunctions {
-    SIGMOID,
-    TANH,
-    RELU
-}
\ No newline at end of file
+    SIGMOID {
+        @Override
+        public double activate(double weightedSum) {
+            return 1 / (1 + Math.exp(weightedSum * -1));
+        }
+
+        @Override
+        public double firstDerivative(double value) {
+            return value * (1 - value);
+        }
+
+        @Override
+        public void activate(double[] values, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                values[valueNum] = activate(values[valueNum]);
+            }
+        }
+
+        @Override
+        public void firstDerivative(double[] values, double[] firstDerivatives, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                firstDerivatives[valueNum] = firstDerivative(values[valueNum]);
+            }
+        }
+    },
+    TANH {
+        @Override
+        public double activate(double weightedSum) {
+            return (Math.exp(weightedSum) - Math.exp(weightedSum * -1)) / (Math.exp(weightedSum) + Math.exp(weightedSum * -1));
+        }
+
+        @Override
+        public double firstDerivative(double value) {
+            return 1 - Math.pow(value, 2);
+        }
+
+        @Override
+        public void activate(double[] values, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                values[valueNum] = activate(values[valueNum]);
+            }
+        }
+
+        @Override
+        public void firstDerivative(double[] values, double[] firstDerivatives, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                firstDerivatives[valueNum] = firstDerivative(values[valueNum]);
+            }
+        }
+    },
+    RELU {
+        @Override
+        public double activate(double weightedSum) {
+            // Returns weightedSum if weightedSum >= 0
+            // Returns 0.01 * weightedSum if weightedSum < 0
+            return Math.max(weightedSum, 0.01 * weightedSum);
+        }
+
+        @Override
+        public double firstDerivative(double value) {
+            if (value <= 0) {
+                return 0.01;
+            } else {
+                return 1.00;
+            }
+        }
+
+        @Override
+        public void activate(double[] values, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                values[valueNum] = activate(values[valueNum]);
+            }
+        }
+
+        @Override
+        public void firstDerivative(double[] values, double[] firstDerivatives, int offset, int length) {
+            for (int valueNum = offset; valueNum < offset + length; valueNum++) {
+                firstDerivatives[valueNum] = firstDerivative(values[valueNum]);
+            }
+        }
+    };
+
+
+    /**
+     * Applies the activation function to a given value
+     *
+     * @param weightedSum the value to apply the activation function to
+     * @return the original value with the activation function applied
+     */
+    public abstract double activate(double weightedSum);
+
+
+    /**
+     * Calculates the first derivative of the activation function
+     *
+     * @param value the output of the activation function to be used in calculating the first derivative
+     * @return the first derivative of the activation function
+     */
+    public abstract double firstDerivative(double value);
+
+
+    /**
+     * Applies the activation function in place to a range of weighted sums, such as all nodes in a layer
+     *
+     * @param values the weighted sums, which are replaced with their activated values
+     * @param offset the index of the first value to activate
+     * @param length the number of values to activate
+     */
+    public abstract void activate(double[] values, int offset, int length);
+
+
+    /**
+     * Calculates the first derivative of the activation function for a range of activated values
+     *
+     * @param values           the outputs of the activation function
+     * @param firstDerivatives the array to write the first derivatives into, at the same indexes as their values
+     * @param offset           the index of the first value
+     * @param length           the number of values
+     */
+    public abstract void firstDerivative(double[] values, double[] firstDerivatives, int offset, int length);
+}
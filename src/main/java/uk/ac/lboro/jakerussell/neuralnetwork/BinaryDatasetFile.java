@@ -0,0 +1,251 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BinaryDatasetFile is responsible for writing a dataset to a compact binary file, and for memory-mapping such a file
+ * so that a network can be trained on it without parsing it first.
+ * <p>
+ * All values are little-endian. The file starts with a header of:
+ * <ul>
+ *     <li>the magic number and the format version, as ints</li>
+ *     <li>the number of samples, features and targets, as ints</li>
+ *     <li>for each column, features first and then targets, the length of its UTF-8 name as an int, the name, and the
+ *     minimum and maximum values of the column used to standardise it, as doubles</li>
+ * </ul>
+ * The header is padded to a multiple of 8 bytes, and is followed by the row-major features of every sample and then
+ * the row-major targets of every sample, as doubles.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class BinaryDatasetFile {
+
+    private static final int MAGIC_NUMBER = 0x4E4E4453;
+    private static final int FORMAT_VERSION = 1;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final String[] columnNames;
+    private final double[] columnMinimums;
+    private final double[] columnMaximums;
+    private final Dataset dataset;
+
+    private BinaryDatasetFile(String[] columnNames, double[] columnMinimums, double[] columnMaximums, Dataset dataset) {
+        this.columnNames = columnNames;
+        this.columnMinimums = columnMinimums;
+        this.columnMaximums = columnMaximums;
+        this.dataset = dataset;
+    }
+
+
+    /**
+     * Returns the name of each column, features first and then targets
+     *
+     * @return a copy of the column names
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+
+    /**
+     * Returns the minimum value of a column before it was standardised, features first and then targets
+     *
+     * @param columnNum the number of the column
+     * @return the minimum value of the column
+     */
+    public double getColumnMinimum(int columnNum) {
+        return columnMinimums[columnNum];
+    }
+
+
+    /**
+     * Returns the maximum value of a column before it was standardised, features first and then targets
+     *
+     * @param columnNum the number of the column
+     * @return the maximum value of the column
+     */
+    public double getColumnMaximum(int columnNum) {
+        return columnMaximums[columnNum];
+    }
+
+
+    /**
+     * Returns the dataset stored in the file, which reads directly from the memory-mapped file
+     *
+     * @return the memory-mapped dataset
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+
+    /**
+     * Writes a dataset to a binary file, along with the name and standardisation range of each column
+     *
+     * @param file           the file to write
+     * @param dataset        the dataset to write
+     * @param columnNames    the name of each column, features first and then targets
+     * @param columnMinimums the minimum value of each column before it was standardised
+     * @param columnMaximums the maximum value of each column before it was standardised
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, Dataset dataset, String[] columnNames, double[] columnMinimums, double[] columnMaximums) throws IOException {
+        int numberOfColumns = dataset.getNumberOfFeatures() + dataset.getNumberOfTargets();
+        if (columnNames.length != numberOfColumns || columnMinimums.length != numberOfColumns || columnMaximums.length != numberOfColumns) {
+            throw new IllegalArgumentException("Expected a name, minimum and maximum for each of the " + numberOfColumns + " columns");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            // Write the header
+            buffer.putInt(MAGIC_NUMBER);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putInt(dataset.size());
+            buffer.putInt(dataset.getNumberOfFeatures());
+            buffer.putInt(dataset.getNumberOfTargets());
+            for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+                byte[] name = columnNames[columnNum].getBytes(StandardCharsets.UTF_8);
+                buffer = ensureSpace(channel, buffer, Integer.BYTES + name.length + 2 * Double.BYTES);
+                buffer.putInt(name.length);
+                buffer.put(name);
+                buffer.putDouble(columnMinimums[columnNum]);
+                buffer.putDouble(columnMaximums[columnNum]);
+            }
+            buffer = ensureSpace(channel, buffer, Double.BYTES);
+            long headerLength = channel.position() + buffer.position();
+            for (long padding = headerLength; padding % Double.BYTES != 0; padding++) {
+                buffer.put((byte) 0);
+            }
+
+            // Write the features, then the targets
+            for (int sampleNum = 0; sampleNum < dataset.size(); sampleNum++) {
+                for (int featureNum = 0; featureNum < dataset.getNumberOfFeatures(); featureNum++) {
+                    buffer = ensureSpace(channel, buffer, Double.BYTES);
+                    buffer.putDouble(dataset.getFeature(sampleNum, featureNum));
+                }
+            }
+            for (int sampleNum = 0; sampleNum < dataset.size(); sampleNum++) {
+                for (int targetNum = 0; targetNum < dataset.getNumberOfTargets(); targetNum++) {
+                    buffer = ensureSpace(channel, buffer, Double.BYTES);
+                    buffer.putDouble(dataset.getTarget(sampleNum, targetNum));
+                }
+            }
+            flush(channel, buffer);
+        }
+    }
+
+
+    /**
+     * Memory-maps a binary dataset file, reading only its header. The features and targets are read directly from the
+     * file as the network needs them, so training can start straight away, and the dataset is read-only.
+     *
+     * @param file the file to map
+     * @return the mapped file, containing the column names, the standardisation ranges and the dataset
+     * @throws IOException if the file cannot be read, is not a binary dataset file, or has a block too large to map
+     */
+    public static BinaryDatasetFile map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The file is mapped lazily, so mapping the start of it to read the header only reads the pages it touches
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE)).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < 5 * Integer.BYTES || header.getInt() != MAGIC_NUMBER) {
+                throw new IOException(file + " is not a binary dataset file");
+            }
+            int formatVersion = header.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException(file + " has unsupported format version " + formatVersion);
+            }
+            int numberOfSamples = header.getInt();
+            int numberOfFeatures = header.getInt();
+            int numberOfTargets = header.getInt();
+
+            int numberOfColumns = numberOfFeatures + numberOfTargets;
+            String[] columnNames = new String[numberOfColumns];
+            double[] columnMinimums = new double[numberOfColumns];
+            double[] columnMaximums = new double[numberOfColumns];
+            for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+                byte[] name = new byte[header.getInt()];
+                header.get(name);
+                columnNames[columnNum] = new String(name, StandardCharsets.UTF_8);
+                columnMinimums[columnNum] = header.getDouble();
+                columnMaximums[columnNum] = header.getDouble();
+            }
+
+            long featuresStart = (header.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+            long featuresLength = (long) numberOfSamples * numberOfFeatures * Double.BYTES;
+            long targetsStart = featuresStart + featuresLength;
+            long targetsLength = (long) numberOfSamples * numberOfTargets * Double.BYTES;
+            if (targetsStart + targetsLength != channel.size()) {
+                throw new IOException(file + " is " + channel.size() + " bytes, but its header describes " + (targetsStart + targetsLength) + " bytes");
+            }
+
+            DoubleBuffer features = mapDoubles(channel, featuresStart, featuresLength);
+            DoubleBuffer targets = mapDoubles(channel, targetsStart, targetsLength);
+            Dataset dataset = new Dataset(numberOfSamples, numberOfFeatures, numberOfTargets, features, targets);
+            return new BinaryDatasetFile(columnNames, columnMinimums, columnMaximums, dataset);
+        }
+    }
+
+
+    /**
+     * Memory-maps a block of doubles from a file. The mapping remains valid after the file has been closed.
+     *
+     * @param channel the channel of the file to map
+     * @param start   the position in the file of the start of the block
+     * @param length  the length of the block in bytes
+     * @return a read-only buffer of the doubles in the block
+     * @throws IOException if the block is too large to map in one go, or cannot be mapped
+     */
+    private static DoubleBuffer mapDoubles(FileChannel channel, long start, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("A block of " + length + " bytes is too large to map");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+
+    /**
+     * Makes sure the write buffer has room for a number of bytes, by writing its contents to the file if it does not
+     *
+     * @param channel the channel of the file being written
+     * @param buffer  the write buffer
+     * @param length  the number of bytes about to be put into the buffer
+     * @return the write buffer, which is a new larger buffer if the bytes would not fit into an empty buffer
+     * @throws IOException if the file cannot be written
+     */
+    private static ByteBuffer ensureSpace(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+        flush(channel, buffer);
+        if (buffer.capacity() < length) {
+            return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return buffer;
+    }
+
+
+    /**
+     * Writes the contents of the write buffer to the file, and empties the buffer
+     *
+     * @param channel the channel of the file being written
+     * @param buffer  the write buffer
+     * @throws IOException if the file cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
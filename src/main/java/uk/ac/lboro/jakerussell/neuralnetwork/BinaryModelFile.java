@@ -0,0 +1,255 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * BinaryModelFile is responsible for writing a trained InferenceModel to a compact binary file, along with the ranges
+ * used to standardise its inputs and outputs, and for loading such a file, so that a model can be used for predicting
+ * without training it again.
+ * <p>
+ * All values are little-endian. The file starts with a header of:
+ * <ul>
+ *     <li>the magic number and the format version, as ints</li>
+ *     <li>the number of inputs and the number of layers, as ints, followed by the number of nodes in each layer, as
+ *     ints, where the last layer is the output layer</li>
+ *     <li>the length of the UTF-8 name of the activation function as an int, and the name</li>
+ *     <li>for each column, inputs first and then outputs, the length of its UTF-8 name as an int, the name, and the
+ *     minimum and maximum values of the column used to standardise it, as doubles</li>
+ * </ul>
+ * The header is padded to a multiple of 8 bytes, and is followed by the row-major weights and then the biases of each
+ * layer in turn, as doubles, so that every weight and bias is restored exactly.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class BinaryModelFile {
+
+    private static final int MAGIC_NUMBER = 0x4E4E4D4C;
+    private static final int FORMAT_VERSION = 1;
+
+    private final String[] columnNames;
+    private final double[] columnMinimums;
+    private final double[] columnMaximums;
+    private final InferenceModel model;
+
+    private BinaryModelFile(String[] columnNames, double[] columnMinimums, double[] columnMaximums, InferenceModel model) {
+        this.columnNames = columnNames;
+        this.columnMinimums = columnMinimums;
+        this.columnMaximums = columnMaximums;
+        this.model = model;
+    }
+
+
+    /**
+     * Returns the name of each column, inputs first and then outputs
+     *
+     * @return a copy of the column names
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+
+    /**
+     * Returns the minimum value of a column before it was standardised, inputs first and then outputs
+     *
+     * @param columnNum the number of the column
+     * @return the minimum value of the column
+     */
+    public double getColumnMinimum(int columnNum) {
+        return columnMinimums[columnNum];
+    }
+
+
+    /**
+     * Returns the maximum value of a column before it was standardised, inputs first and then outputs
+     *
+     * @param columnNum the number of the column
+     * @return the maximum value of the column
+     */
+    public double getColumnMaximum(int columnNum) {
+        return columnMaximums[columnNum];
+    }
+
+
+    /**
+     * Returns the model stored in the file
+     *
+     * @return the loaded model
+     */
+    public InferenceModel getModel() {
+        return model;
+    }
+
+
+    /**
+     * Writes a model to a binary file, along with the name and standardisation range of each input and output
+     *
+     * @param file           the file to write
+     * @param model          the model to write
+     * @param columnNames    the name of each column, inputs first and then outputs
+     * @param columnMinimums the minimum value of each column before it was standardised
+     * @param columnMaximums the maximum value of each column before it was standardised
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, InferenceModel model, String[] columnNames, double[] columnMinimums, double[] columnMaximums) throws IOException {
+        int numberOfColumns = model.getNumberOfInputs() + model.getNumberOfOutputs();
+        if (columnNames.length != numberOfColumns || columnMinimums.length != numberOfColumns || columnMaximums.length != numberOfColumns) {
+            throw new IllegalArgumentException("Expected a name, minimum and maximum for each of the " + numberOfColumns + " columns");
+        }
+
+        // The whole file is built up in memory and written in one go, as even a large network is only a few kilobytes
+        byte[] activationFunctionName = model.getActivationFunction().name().getBytes(StandardCharsets.UTF_8);
+        byte[][] names = new byte[numberOfColumns][];
+        int headerLength = (4 + model.getNumberOfLayers()) * Integer.BYTES + Integer.BYTES + activationFunctionName.length;
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            names[columnNum] = columnNames[columnNum].getBytes(StandardCharsets.UTF_8);
+            headerLength = headerLength + Integer.BYTES + names[columnNum].length + 2 * Double.BYTES;
+        }
+        int weightsStart = (headerLength + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(weightsStart + numberOfParameters(model) * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Write the header
+        buffer.putInt(MAGIC_NUMBER);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(model.getNumberOfInputs());
+        buffer.putInt(model.getNumberOfLayers());
+        for (int layerNum = 0; layerNum < model.getNumberOfLayers(); layerNum++) {
+            buffer.putInt(model.getLayerSize(layerNum));
+        }
+        buffer.putInt(activationFunctionName.length);
+        buffer.put(activationFunctionName);
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            buffer.putInt(names[columnNum].length);
+            buffer.put(names[columnNum]);
+            buffer.putDouble(columnMinimums[columnNum]);
+            buffer.putDouble(columnMaximums[columnNum]);
+        }
+        buffer.position(weightsStart);
+
+        // Write the weights and then the biases of each layer
+        for (int layerNum = 0; layerNum < model.getNumberOfLayers(); layerNum++) {
+            buffer.asDoubleBuffer().put(model.getLayerWeights(layerNum));
+            buffer.position(buffer.position() + model.getLayerWeights(layerNum).length * Double.BYTES);
+            buffer.asDoubleBuffer().put(model.getLayerBiases(layerNum));
+            buffer.position(buffer.position() + model.getLayerBiases(layerNum).length * Double.BYTES);
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+
+    /**
+     * Loads a binary model file. The file is memory-mapped, and the weights and biases of each layer are bulk-copied out
+     * of it, so a model can be loaded in milliseconds.
+     *
+     * @param file the file to load
+     * @return the loaded file, containing the column names, the standardisation ranges and the model
+     * @throws IOException if the file cannot be read, or is not a binary model file
+     */
+    public static BinaryModelFile load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be a binary model file");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                return read(file, buffer);
+            } catch (RuntimeException e) {
+                // A truncated or corrupted header shows up as a buffer underflow or an invalid topology
+                throw new IOException(file + " is not a valid binary model file: " + e, e);
+            }
+        }
+    }
+
+
+    /**
+     * Reads the header, weights and biases of a binary model file
+     *
+     * @param file   the path of the file, used in error messages
+     * @param buffer the contents of the file
+     * @return the loaded file
+     * @throws IOException if the file is not a binary model file, or is not the length its header describes
+     */
+    private static BinaryModelFile read(Path file, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4 * Integer.BYTES || buffer.getInt() != MAGIC_NUMBER) {
+            throw new IOException(file + " is not a binary model file");
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException(file + " has unsupported format version " + formatVersion);
+        }
+        int numberOfInputs = buffer.getInt();
+        int[] layerSizes = new int[buffer.getInt()];
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            layerSizes[layerNum] = buffer.getInt();
+        }
+        byte[] activationFunctionName = new byte[buffer.getInt()];
+        buffer.get(activationFunctionName);
+        ActivationFunctions activationFunction = ActivationFunctions.valueOf(new String(activationFunctionName, StandardCharsets.UTF_8));
+
+        int numberOfColumns = numberOfInputs + layerSizes[layerSizes.length - 1];
+        String[] columnNames = new String[numberOfColumns];
+        double[] columnMinimums = new double[numberOfColumns];
+        double[] columnMaximums = new double[numberOfColumns];
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            columnNames[columnNum] = new String(name, StandardCharsets.UTF_8);
+            columnMinimums[columnNum] = buffer.getDouble();
+            columnMaximums[columnNum] = buffer.getDouble();
+        }
+
+        // Read the weights and then the biases of each layer
+        buffer.position((buffer.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES);
+        double[][] weights = new double[layerSizes.length][];
+        double[][] biases = new double[layerSizes.length][];
+        int numberOfLayerInputs = numberOfInputs;
+        long expectedLength = buffer.position();
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            weights[layerNum] = new double[layerSizes[layerNum] * numberOfLayerInputs];
+            biases[layerNum] = new double[layerSizes[layerNum]];
+            expectedLength = expectedLength + (long) (weights[layerNum].length + biases[layerNum].length) * Double.BYTES;
+            numberOfLayerInputs = layerSizes[layerNum];
+        }
+        if (expectedLength != buffer.limit()) {
+            throw new IOException(file + " is " + buffer.limit() + " bytes, but its header describes " + expectedLength + " bytes");
+        }
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            buffer.asDoubleBuffer().get(weights[layerNum]);
+            buffer.position(buffer.position() + weights[layerNum].length * Double.BYTES);
+            buffer.asDoubleBuffer().get(biases[layerNum]);
+            buffer.position(buffer.position() + biases[layerNum].length * Double.BYTES);
+        }
+
+        InferenceModel model = new InferenceModel(numberOfInputs, activationFunction, weights, biases);
+        return new BinaryModelFile(columnNames, columnMinimums, columnMaximums, model);
+    }
+
+
+    /**
+     * Counts the weights and biases of every layer of a model
+     *
+     * @param model the model to count the weights and biases of
+     * @return the total number of weights and biases
+     */
+    private static int numberOfParameters(InferenceModel model) {
+        int numberOfParameters = 0;
+        for (int layerNum = 0; layerNum < model.getNumberOfLayers(); layerNum++) {
+            numberOfParameters = numberOfParameters + model.getLayerWeights(layerNum).length + model.getLayerBiases(layerNum).length;
+        }
+        return numberOfParameters;
+    }
+}
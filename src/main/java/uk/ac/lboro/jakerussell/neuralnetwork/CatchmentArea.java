@@ -5,16 +5,37 @@ import java.util.UUID;
 
 /**
  * CatchmentArea is responsible for representing a single catchment area in the dataset
+ * <p>
+ * The features of a catchment area, which are input to the network, are stored in an array in the order given by the
+ * feature indices below, so that they can be read by index or copied in bulk. The named getters and setters read and
+ * write the same array.
  *
  * @author Jake Russell
  * @version 1.0
  * @since 22/03/2021
  */
 public class CatchmentArea {
+
+    // The index of each feature, in the order they are input to the network and appear in the CSV file
+    public static final int AREA = 0;
+    public static final int BASE_FLOW_INDEX = 1;
+    public static final int FLOOD_ATTENUATION = 2;
+    public static final int FLOOD_PLAIN_EXTENT = 3;
+    public static final int LONGEST_DRAINAGE_PATH = 4;
+    public static final int PROPORTION_WET_DAYS = 5;
+    public static final int MEDIAN_ANNUAL_MAX_1_DAY_RAINFALL = 6;
+    public static final int STANDARD_ANNUAL_AVERAGE_RAINFALL = 7;
+    public static final int NUMBER_OF_FEATURES = 8;
+
+    // The name of each feature, as it appears in the header of the CSV file
+    private static final String[] FEATURE_NAMES = {"AREA", "BFIHOST", "FARL", "FPEXT", "LDP", "PROPWET", "RMED-1D", "SAAR"};
+
     private UUID id;
-    private double area, baseFlowIndex, floodAttenuation, floodPlainExtent, longestDrainagePath,
-            proportionWetDays, medianAnnualMax1DayRainfall, standardAnnualAverageRainfall,
-            indexFlood;
+    private final double[] features;
+
+    // The index flood, followed by any further flood statistics to be predicted alongside it, such as the flood for a
+    // given return period
+    private final double[] targets;
 
     /**
      * Constructor is responsible for creating a catchment area from given values read in from the original CSV data file
@@ -33,16 +54,103 @@ public class CatchmentArea {
                          double floodPlainExtent, double longestDrainagePath,
                          double proportionWetDays, double medianAnnualMax1DayRainfall,
                          double standardAnnualAverageRainfall, double indexFlood) {
+        this(new double[]{area, baseFlowIndex, floodAttenuation, floodPlainExtent, longestDrainagePath, proportionWetDays,
+                medianAnnualMax1DayRainfall, standardAnnualAverageRainfall}, new double[]{indexFlood});
+    }
+
+
+    /**
+     * Constructor is responsible for creating a catchment area from given values, with further flood statistics to be
+     * predicted alongside the index flood
+     *
+     * @param area                          the area of the catchment area
+     * @param baseFlowIndex                 the base flow index of the catchment area
+     * @param floodAttenuation              the flood attenuation of the catchment area
+     * @param floodPlainExtent              the flood plain extent of the catchment area
+     * @param longestDrainagePath           the longest drainage path of the catchment area
+     * @param proportionWetDays             the proportion wet days of the catchment area
+     * @param medianAnnualMax1DayRainfall   the median annual max 1 day rainfall of the catchment area
+     * @param standardAnnualAverageRainfall the standard annual average rainfall of the catchment area
+     * @param indexFlood                    the index flood of the catchment area
+     * @param additionalTargets             the further flood statistics of the catchment area, in the order they are predicted
+     */
+    public CatchmentArea(double area, double baseFlowIndex, double floodAttenuation,
+                         double floodPlainExtent, double longestDrainagePath,
+                         double proportionWetDays, double medianAnnualMax1DayRainfall,
+                         double standardAnnualAverageRainfall, double indexFlood, double... additionalTargets) {
+        this(new double[]{area, baseFlowIndex, floodAttenuation, floodPlainExtent, longestDrainagePath, proportionWetDays,
+                medianAnnualMax1DayRainfall, standardAnnualAverageRainfall}, withIndexFlood(indexFlood, additionalTargets));
+    }
+
+
+    /**
+     * Constructor is responsible for creating a catchment area from a row of feature values and a row of target values,
+     * such as a row of the CSV data file
+     *
+     * @param features the value of each feature, in the order of the feature indices
+     * @param targets  the index flood, followed by any further flood statistics in the order they are predicted
+     * @throws IllegalArgumentException if there is not a value for every feature, there is no index flood, or any value equals -999
+     */
+    public CatchmentArea(double[] features, double[] targets) {
+        if (features.length != NUMBER_OF_FEATURES) {
+            throw new IllegalArgumentException("Expected " + NUMBER_OF_FEATURES + " features, but was given " + features.length);
+        }
+        if (targets.length == 0) {
+            throw new IllegalArgumentException("A catchment area must have an index flood");
+        }
         this.id = UUID.randomUUID();
-        this.area = validateValue(area);
-        this.baseFlowIndex = validateValue(baseFlowIndex);
-        this.floodAttenuation = validateValue(floodAttenuation);
-        this.floodPlainExtent = validateValue(floodPlainExtent);
-        this.longestDrainagePath = validateValue(longestDrainagePath);
-        this.proportionWetDays = validateValue(proportionWetDays);
-        this.medianAnnualMax1DayRainfall = validateValue(medianAnnualMax1DayRainfall);
-        this.standardAnnualAverageRainfall = validateValue(standardAnnualAverageRainfall);
-        this.indexFlood = validateValue(indexFlood);
+        this.features = new double[NUMBER_OF_FEATURES];
+        for (int featureNum = 0; featureNum < NUMBER_OF_FEATURES; featureNum++) {
+            this.features[featureNum] = validateValue(features[featureNum]);
+        }
+        this.targets = new double[targets.length];
+        for (int targetNum = 0; targetNum < targets.length; targetNum++) {
+            this.targets[targetNum] = validateValue(targets[targetNum]);
+        }
+    }
+
+
+    /**
+     * Returns the name of a feature, as it appears in the header of the CSV file
+     *
+     * @param featureNum the index of the feature
+     * @return the name of the feature
+     */
+    public static String getFeatureName(int featureNum) {
+        return FEATURE_NAMES[featureNum];
+    }
+
+
+    /**
+     * Returns the value of a feature of the catchment area
+     *
+     * @param featureNum the index of the feature
+     * @return the value of the feature
+     */
+    public double getFeature(int featureNum) {
+        return features[featureNum];
+    }
+
+
+    /**
+     * Sets the value of a feature of the catchment area
+     *
+     * @param featureNum the index of the feature
+     * @param value      the new value of the feature
+     */
+    public void setFeature(int featureNum, double value) {
+        features[featureNum] = value;
+    }
+
+
+    /**
+     * Copies the value of every feature of the catchment area into an array, in the order of the feature indices
+     *
+     * @param values the array to copy the features into
+     * @param offset the position in the array to copy the first feature to
+     */
+    public void copyFeatures(double[] values, int offset) {
+        System.arraycopy(features, 0, values, offset, NUMBER_OF_FEATURES);
     }
 
 
@@ -52,7 +160,7 @@ public class CatchmentArea {
      * @return the area of the catchment area
      */
     public double getArea() {
-        return area;
+        return features[AREA];
     }
 
 
@@ -62,7 +170,7 @@ public class CatchmentArea {
      * @param area the new area to be set
      */
     public void setArea(double area) {
-        this.area = area;
+        features[AREA] = area;
     }
 
 
@@ -72,7 +180,7 @@ public class CatchmentArea {
      * @return the base flow index of the catchment area
      */
     public double getBaseFlowIndex() {
-        return baseFlowIndex;
+        return features[BASE_FLOW_INDEX];
     }
 
 
@@ -82,7 +190,7 @@ public class CatchmentArea {
      * @param baseFlowIndex the new base flow index to be set
      */
     public void setBaseFlowIndex(double baseFlowIndex) {
-        this.baseFlowIndex = baseFlowIndex;
+        features[BASE_FLOW_INDEX] = baseFlowIndex;
     }
 
 
@@ -92,7 +200,7 @@ public class CatchmentArea {
      * @return the flood attenuation of the catchment area
      */
     public double getFloodAttenuation() {
-        return floodAttenuation;
+        return features[FLOOD_ATTENUATION];
     }
 
 
@@ -102,7 +210,7 @@ public class CatchmentArea {
      * @param floodAttenuation the new flood attenuation to be set
      */
     public void setFloodAttenuation(double floodAttenuation) {
-        this.floodAttenuation = floodAttenuation;
+        features[FLOOD_ATTENUATION] = floodAttenuation;
     }
 
 
@@ -112,7 +220,7 @@ public class CatchmentArea {
      * @return the flood plain extent of the catchment area
      */
     public double getFloodPlainExtent() {
-        return floodPlainExtent;
+        return features[FLOOD_PLAIN_EXTENT];
     }
 
 
@@ -122,7 +230,7 @@ public class CatchmentArea {
      * @param floodPlainExtent the new flood plain extent to be set
      */
     public void setFloodPlainExtent(double floodPlainExtent) {
-        this.floodPlainExtent = floodPlainExtent;
+        features[FLOOD_PLAIN_EXTENT] = floodPlainExtent;
     }
 
 
@@ -132,7 +240,7 @@ public class CatchmentArea {
      * @return the longest drainage path of the catchment area
      */
     public double getLongestDrainagePath() {
-        return longestDrainagePath;
+        return features[LONGEST_DRAINAGE_PATH];
     }
 
 
@@ -142,7 +250,7 @@ public class CatchmentArea {
      * @param longestDrainagePath the new longest drainage path to be set
      */
     public void setLongestDrainagePath(double longestDrainagePath) {
-        this.longestDrainagePath = longestDrainagePath;
+        features[LONGEST_DRAINAGE_PATH] = longestDrainagePath;
     }
 
 
@@ -152,7 +260,7 @@ public class CatchmentArea {
      * @return the proportion wet days of the catchment area
      */
     public double getProportionWetDays() {
-        return proportionWetDays;
+        return features[PROPORTION_WET_DAYS];
     }
 
 
@@ -162,7 +270,7 @@ public class CatchmentArea {
      * @param proportionWetDays the new proportion wet days to be set
      */
     public void setProportionWetDays(double proportionWetDays) {
-        this.proportionWetDays = proportionWetDays;
+        features[PROPORTION_WET_DAYS] = proportionWetDays;
     }
 
 
@@ -172,7 +280,7 @@ public class CatchmentArea {
      * @return the median annual max 1 day rainfall of the catchment area
      */
     public double getMedianAnnualMax1DayRainfall() {
-        return medianAnnualMax1DayRainfall;
+        return features[MEDIAN_ANNUAL_MAX_1_DAY_RAINFALL];
     }
 
 
@@ -182,7 +290,7 @@ public class CatchmentArea {
      * @param medianAnnualMax1DayRainfall the new median annual max 1 day rainfall to be set
      */
     public void setMedianAnnualMax1DayRainfall(double medianAnnualMax1DayRainfall) {
-        this.medianAnnualMax1DayRainfall = medianAnnualMax1DayRainfall;
+        features[MEDIAN_ANNUAL_MAX_1_DAY_RAINFALL] = medianAnnualMax1DayRainfall;
     }
 
 
@@ -192,7 +300,7 @@ public class CatchmentArea {
      * @return the standard annual average rainfall of the catchment area
      */
     public double getStandardAnnualAverageRainfall() {
-        return standardAnnualAverageRainfall;
+        return features[STANDARD_ANNUAL_AVERAGE_RAINFALL];
     }
 
 
@@ -202,7 +310,7 @@ public class CatchmentArea {
      * @param standardAnnualAverageRainfall the new standard annual average rainfall to be set
      */
     public void setStandardAnnualAverageRainfall(double standardAnnualAverageRainfall) {
-        this.standardAnnualAverageRainfall = standardAnnualAverageRainfall;
+        features[STANDARD_ANNUAL_AVERAGE_RAINFALL] = standardAnnualAverageRainfall;
     }
 
 
@@ -212,7 +320,7 @@ public class CatchmentArea {
      * @return the index flood of the catchment area
      */
     public double getIndexFlood() {
-        return indexFlood;
+        return targets[0];
     }
 
 
@@ -222,7 +330,42 @@ public class CatchmentArea {
      * @param indexFlood the new index flood to be set
      */
     public void setIndexFlood(double indexFlood) {
-        this.indexFlood = indexFlood;
+        targets[0] = indexFlood;
+    }
+
+
+    /**
+     * Returns the number of values the catchment area has to be predicted, which is the index flood followed by any
+     * further flood statistics
+     *
+     * @return the number of targets of the catchment area
+     */
+    public int getNumberOfTargets() {
+        return targets.length;
+    }
+
+
+    /**
+     * Returns a value to be predicted for the catchment area, where target 0 is the index flood and the further flood
+     * statistics follow in order
+     *
+     * @param targetNum the number of the target to return
+     * @return the value of the target
+     */
+    public double getTarget(int targetNum) {
+        return targets[targetNum];
+    }
+
+
+    /**
+     * Sets a value to be predicted for the catchment area, where target 0 is the index flood and the further flood
+     * statistics follow in order
+     *
+     * @param targetNum the number of the target to set
+     * @param target    the new value of the target
+     */
+    public void setTarget(int targetNum, double target) {
+        targets[targetNum] = target;
     }
 
 
@@ -233,7 +376,7 @@ public class CatchmentArea {
      * @return the value if it is valid, i.e., not -999
      * @throws IllegalArgumentException if the value equals -999
      */
-    private double validateValue(double value) {
+    private static double validateValue(double value) {
         if (value != -999) {
             return value;
         }
@@ -241,9 +384,31 @@ public class CatchmentArea {
     }
 
 
+    /**
+     * Prepends the index flood to any further flood statistics, to form the targets of a catchment area
+     *
+     * @param indexFlood        the index flood of the catchment area
+     * @param additionalTargets the further flood statistics of the catchment area, in the order they are predicted
+     * @return an array of the index flood followed by the further flood statistics
+     */
+    private static double[] withIndexFlood(double indexFlood, double[] additionalTargets) {
+        double[] targets = new double[1 + additionalTargets.length];
+        targets[0] = indexFlood;
+        System.arraycopy(additionalTargets, 0, targets, 1, additionalTargets.length);
+        return targets;
+    }
+
+
     @Override
     public String toString() {
-        return "[" + area + ", " + baseFlowIndex + ", " + floodAttenuation + ", " + floodPlainExtent + ", " + longestDrainagePath + ", " + proportionWetDays + ", " + medianAnnualMax1DayRainfall + ", " + standardAnnualAverageRainfall + ", " + indexFlood + "]";
+        StringBuilder description = new StringBuilder("[");
+        for (double feature : features) {
+            description.append(feature).append(", ");
+        }
+        for (int targetNum = 0; targetNum < targets.length; targetNum++) {
+            description.append(targets[targetNum]).append(targetNum == targets.length - 1 ? "]" : ", ");
+        }
+        return description.toString();
     }
 
 
@@ -0,0 +1,113 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * CheckpointWriter is responsible for writing the checkpoints of a NeuralNetwork to a file on a background thread, so
+ * that training does not wait for the disk.
+ * <p>
+ * Only the most recent checkpoint matters, so at most one checkpoint waits to be written. If training produces a new
+ * checkpoint while the previous one is still waiting, the waiting checkpoint is replaced rather than queued behind it,
+ * so the training thread never blocks and memory use does not grow if the disk is slow.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class CheckpointWriter {
+
+    private final Path file;
+
+    // Guarded by this. The checkpoint waiting to be written, and whether a checkpoint is being written right now.
+    private TrainingCheckpoint pendingCheckpoint;
+    private boolean writing;
+    private Thread writerThread;
+
+    /**
+     * Constructor creates a writer for a checkpoint file. The background thread is started when the first checkpoint is
+     * submitted.
+     *
+     * @param file the file each checkpoint replaces
+     */
+    CheckpointWriter(Path file) {
+        this.file = file;
+    }
+
+
+    /**
+     * Returns the file each checkpoint is written to
+     *
+     * @return the checkpoint file
+     */
+    Path getFile() {
+        return file;
+    }
+
+
+    /**
+     * Hands a checkpoint to the background thread to be written, replacing any checkpoint still waiting to be written
+     *
+     * @param checkpoint the checkpoint to write
+     */
+    synchronized void submit(TrainingCheckpoint checkpoint) {
+        pendingCheckpoint = checkpoint;
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeCheckpoints, "checkpoint-writer-" + file.getFileName());
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+        notifyAll();
+    }
+
+
+    /**
+     * Waits until every submitted checkpoint has been written, so that the file holds the most recent checkpoint
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    synchronized void awaitWrites() throws InterruptedException {
+        while (pendingCheckpoint != null || writing) {
+            wait();
+        }
+    }
+
+
+    /**
+     * Writes each checkpoint as it is submitted, for as long as the JVM runs. A checkpoint which cannot be written, for any
+     * reason, is reported, and the next checkpoint is tried as usual, so that the thread never dies with checkpoints left
+     * waiting for it. If the thread is interrupted while waiting, it stops, and the next checkpoint submitted starts a new
+     * one.
+     */
+    private void writeCheckpoints() {
+        while (true) {
+            TrainingCheckpoint checkpoint;
+            synchronized (this) {
+                while (pendingCheckpoint == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        writerThread = null;
+                        return;
+                    }
+                }
+                checkpoint = pendingCheckpoint;
+                pendingCheckpoint = null;
+                writing = true;
+            }
+
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                System.out.println("Could not write checkpoint to " + file + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.out.println("Could not write checkpoint to " + file + ": " + e);
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ColumnStatistics is responsible for calculating the mean, standard deviation, minimum and maximum of every column of
+ * a stream of rows in a single pass, without storing the rows.
+ * <p>
+ * The mean and variance are updated with Welford's algorithm, which stays accurate for long streams where summing the
+ * values and their squares would lose precision. The statistics of 2 sets of rows can be merged, so the rows can be split
+ * into chunks which are each added on a different thread, and the partial statistics merged afterwards.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class ColumnStatistics {
+
+    // The number of rows added on a single thread when calculating the statistics of a whole table in parallel
+    private static final int ROWS_PER_CHUNK = 4096;
+
+    private final int numberOfColumns;
+    private long count;
+    private final double[] means;
+    private final double[] sumsOfSquaredDifferences;
+    private final double[] minimums;
+    private final double[] maximums;
+
+    /**
+     * RowReader reads a row of a table by its index, so that the statistics of any table can be calculated without first
+     * copying it into a particular layout
+     */
+    @FunctionalInterface
+    interface RowReader {
+
+        /**
+         * Reads a row of the table
+         *
+         * @param rowNum the index of the row to read
+         * @param row    the array to read the value of each column into
+         */
+        void readRow(int rowNum, double[] row);
+    }
+
+    /**
+     * Constructor creates statistics for a number of columns, with no rows added yet
+     *
+     * @param numberOfColumns the number of columns of each row
+     */
+    ColumnStatistics(int numberOfColumns) {
+        this.numberOfColumns = numberOfColumns;
+        this.means = new double[numberOfColumns];
+        this.sumsOfSquaredDifferences = new double[numberOfColumns];
+        this.minimums = new double[numberOfColumns];
+        this.maximums = new double[numberOfColumns];
+        Arrays.fill(this.minimums, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.maximums, Double.NEGATIVE_INFINITY);
+    }
+
+
+    /**
+     * Adds a row to the statistics
+     *
+     * @param row the value of each column of the row
+     */
+    void add(double[] row) {
+        count++;
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            double value = row[columnNum];
+            double difference = value - means[columnNum];
+            means[columnNum] += difference / count;
+            sumsOfSquaredDifferences[columnNum] += difference * (value - means[columnNum]);
+            minimums[columnNum] = Math.min(minimums[columnNum], value);
+            maximums[columnNum] = Math.max(maximums[columnNum], value);
+        }
+    }
+
+
+    /**
+     * Calculates the statistics of every column of a table in a single pass. The rows are split into chunks of a fixed
+     * size which are added in parallel on the common pool, and the partial statistics of the chunks are merged. The
+     * chunks and the order they are merged in do not depend on the number of threads, so the result is always the same.
+     *
+     * @param numberOfRows    the number of rows of the table
+     * @param numberOfColumns the number of columns of the table
+     * @param rowReader       the reader of each row of the table, which must be safe to call from several threads at once
+     * @return the statistics of every column of the table
+     */
+    static ColumnStatistics calculate(int numberOfRows, int numberOfColumns, RowReader rowReader) {
+        return ForkJoinPool.commonPool().invoke(new ChunkStatistics(0, numberOfRows, numberOfColumns, rowReader));
+    }
+
+
+    /**
+     * Merges the statistics of another set of rows into these statistics, as if every row of the other set had been added
+     *
+     * @param other the statistics of the other set of rows, which are left unchanged
+     * @throws IllegalArgumentException if the other statistics have a different number of columns
+     */
+    void merge(ColumnStatistics other) {
+        if (other.numberOfColumns != numberOfColumns) {
+            throw new IllegalArgumentException("Cannot merge statistics of " + other.numberOfColumns + " columns into statistics of "
+                    + numberOfColumns + " columns");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            System.arraycopy(other.means, 0, means, 0, numberOfColumns);
+            System.arraycopy(other.sumsOfSquaredDifferences, 0, sumsOfSquaredDifferences, 0, numberOfColumns);
+            System.arraycopy(other.minimums, 0, minimums, 0, numberOfColumns);
+            System.arraycopy(other.maximums, 0, maximums, 0, numberOfColumns);
+            return;
+        }
+        long mergedCount = count + other.count;
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            // Chan et al.'s update, which combines the means and the sums of squared differences of the 2 sets of rows
+            double difference = other.means[columnNum] - means[columnNum];
+            means[columnNum] += difference * other.count / mergedCount;
+            sumsOfSquaredDifferences[columnNum] += other.sumsOfSquaredDifferences[columnNum]
+                    + difference * difference * count * other.count / mergedCount;
+            minimums[columnNum] = Math.min(minimums[columnNum], other.minimums[columnNum]);
+            maximums[columnNum] = Math.max(maximums[columnNum], other.maximums[columnNum]);
+        }
+        count = mergedCount;
+    }
+
+
+    /**
+     * Returns the number of columns of each row
+     *
+     * @return the number of columns
+     */
+    int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+
+
+    /**
+     * Returns the number of rows added to the statistics
+     *
+     * @return the number of rows
+     */
+    long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the mean of a column
+     *
+     * @param columnNum the number of the column
+     * @return the mean of the column, or 0 if no rows have been added
+     */
+    double getMean(int columnNum) {
+        return means[columnNum];
+    }
+
+
+    /**
+     * Returns the population standard deviation of a column
+     *
+     * @param columnNum the number of the column
+     * @return the standard deviation of the column, or 0 if no rows have been added
+     */
+    double getStandardDeviation(int columnNum) {
+        return count == 0 ? 0.0 : Math.sqrt(sumsOfSquaredDifferences[columnNum] / count);
+    }
+
+
+    /**
+     * Returns the minimum value of a column
+     *
+     * @param columnNum the number of the column
+     * @return the minimum value of the column, or positive infinity if no rows have been added
+     */
+    double getMinimum(int columnNum) {
+        return minimums[columnNum];
+    }
+
+
+    /**
+     * Returns the maximum value of a column
+     *
+     * @param columnNum the number of the column
+     * @return the maximum value of the column, or negative infinity if no rows have been added
+     */
+    double getMaximum(int columnNum) {
+        return maximums[columnNum];
+    }
+
+
+    /**
+     * Returns the mean of every column
+     *
+     * @return an array of the mean of each column
+     */
+    double[] getMeans() {
+        return means.clone();
+    }
+
+
+    /**
+     * Returns the population standard deviation of every column
+     *
+     * @return an array of the standard deviation of each column
+     */
+    double[] getStandardDeviations() {
+        double[] standardDeviations = new double[numberOfColumns];
+        for (int columnNum = 0; columnNum < numberOfColumns; columnNum++) {
+            standardDeviations[columnNum] = getStandardDeviation(columnNum);
+        }
+        return standardDeviations;
+    }
+
+
+    /**
+     * Returns the minimum value of every column
+     *
+     * @return an array of the minimum value of each column
+     */
+    double[] getMinimums() {
+        return minimums.clone();
+    }
+
+
+    /**
+     * Returns the maximum value of every column
+     *
+     * @return an array of the maximum value of each column
+     */
+    double[] getMaximums() {
+        return maximums.clone();
+    }
+
+
+    /**
+     * ChunkStatistics calculates the statistics of a range of rows, by splitting it in half until each half is no larger
+     * than a chunk, adding the rows of each chunk, and merging the halves back together
+     */
+    private static final class ChunkStatistics extends RecursiveTask<ColumnStatistics> {
+        private final int first;
+        private final int numberOfRows;
+        private final int numberOfColumns;
+        private final RowReader rowReader;
+
+        private ChunkStatistics(int first, int numberOfRows, int numberOfColumns, RowReader rowReader) {
+            this.first = first;
+            this.numberOfRows = numberOfRows;
+            this.numberOfColumns = numberOfColumns;
+            this.rowReader = rowReader;
+        }
+
+
+        /**
+         * Calculates the statistics of the range of rows
+         *
+         * @return the statistics of the range of rows
+         */
+        @Override
+        protected ColumnStatistics compute() {
+            if (numberOfRows <= ROWS_PER_CHUNK) {
+                ColumnStatistics statistics = new ColumnStatistics(numberOfColumns);
+                double[] row = new double[numberOfColumns];
+                for (int rowNum = first; rowNum < first + numberOfRows; rowNum++) {
+                    rowReader.readRow(rowNum, row);
+                    statistics.add(row);
+                }
+                return statistics;
+            }
+
+            int numberOfFirstHalfRows = numberOfRows / 2;
+            ChunkStatistics secondHalf = new ChunkStatistics(first + numberOfFirstHalfRows, numberOfRows - numberOfFirstHalfRows, numberOfColumns, rowReader);
+            secondHalf.fork();
+            ColumnStatistics statistics = new ChunkStatistics(first, numberOfFirstHalfRows, numberOfColumns, rowReader).compute();
+            statistics.merge(secondHalf.join());
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CsvMetricsWriter is a TrainingMetricsSink which writes the results of each validation to 3 CSV files on a background
+ * thread, so that graphs can be plotted of the training and validation RMSE and the learning rate against the number of
+ * epochs. Each line of a file is the epoch of a validation followed by the value.
+ * <p>
+ * Results are handed to the background thread through a bounded queue of primitive arrays, which are allocated once, so
+ * recording a result never allocates memory or waits for the disk. The training thread is the only one adding results,
+ * and the background thread is the only one taking them, so the queue needs no locking. If the disk falls so far behind
+ * that the queue is full, further results are dropped and counted rather than making training wait.
+ * <p>
+ * Each file is named after the run followed by the name of the graph, so networks trained at the same time can write
+ * their results to the same directory without overwriting each other's. With an empty run name, the files have the
+ * names the coursework graphs are plotted from.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class CsvMetricsWriter implements TrainingMetricsSink {
+
+    /**
+     * The number of results the queue holds unless another capacity is given
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final String VALIDATION_FILE_NAME = "RMSE_Validation_Dataset.csv";
+    private static final String TRAINING_FILE_NAME = "RMSE_Training_Dataset.csv";
+    private static final String LEARNING_RATE_FILE_NAME = "Learning_Rate_Change.csv";
+
+    // How long the background thread sleeps for when the queue is empty, unless it is woken by a new result
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path validationFile;
+    private final Path trainingFile;
+    private final Path learningRateFile;
+
+    private final int[] epochCounts;
+    private final double[] trainingRootMeanSquaredErrors;
+    private final double[] validationRootMeanSquaredErrors;
+    private final double[] learningRates;
+
+    // The number of results ever added, which only the training thread changes, and the number of results ever taken,
+    // which only the background thread changes. The result at each count is held at the count modulo the capacity.
+    private volatile long numberOfResultsAdded;
+    private volatile long numberOfResultsTaken;
+    private volatile boolean finishing;
+    private volatile long numberOfDroppedResults;
+
+    private Thread writerThread;
+
+    /**
+     * Constructor creates a writer for the CSV files of a run, with a queue of the default capacity. The files are
+     * created, replacing any files of the same name, when the first result is recorded.
+     *
+     * @param directory the directory to write the files to, which must already exist
+     * @param runName   the name of the run, which the names of the files start with, or an empty string
+     */
+    public CsvMetricsWriter(Path directory, String runName) {
+        this(directory, runName, DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * Constructor creates a writer for the CSV files of a run. The files are created, replacing any files of the same
+     * name, when the first result is recorded.
+     *
+     * @param directory the directory to write the files to, which must already exist
+     * @param runName   the name of the run, which the names of the files start with, or an empty string
+     * @param capacity  the number of results which can be waiting to be written, which must be at least 1
+     */
+    public CsvMetricsWriter(Path directory, String runName, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, but was " + capacity);
+        }
+        String prefix = runName.isEmpty() ? "" : runName + "_";
+        this.validationFile = directory.resolve(prefix + VALIDATION_FILE_NAME);
+        this.trainingFile = directory.resolve(prefix + TRAINING_FILE_NAME);
+        this.learningRateFile = directory.resolve(prefix + LEARNING_RATE_FILE_NAME);
+        this.epochCounts = new int[capacity];
+        this.trainingRootMeanSquaredErrors = new double[capacity];
+        this.validationRootMeanSquaredErrors = new double[capacity];
+        this.learningRates = new double[capacity];
+    }
+
+
+    /**
+     * Adds the results of a validation to the queue to be written, starting the background thread if this is the first
+     * result of the training run. If the queue is full, the results are dropped.
+     *
+     * @param epochCount                     the number of epochs trained for when the network was validated
+     * @param trainingRootMeanSquaredError   the RMSE for the training data during the epoch before the validation
+     * @param validationRootMeanSquaredError the RMSE for the validation data
+     * @param learningRate                   the learning rate after the validation
+     */
+    @Override
+    public void recordValidation(int epochCount, double trainingRootMeanSquaredError, double validationRootMeanSquaredError, double learningRate) {
+        if (writerThread == null) {
+            writerThread = new Thread(this::writeResults, "metrics-writer-" + validationFile.getFileName());
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+
+        long resultNum = numberOfResultsAdded;
+        if (resultNum - numberOfResultsTaken >= epochCounts.length) {
+            numberOfDroppedResults = numberOfDroppedResults + 1;
+            return;
+        }
+        int index = (int) (resultNum % epochCounts.length);
+        epochCounts[index] = epochCount;
+        trainingRootMeanSquaredErrors[index] = trainingRootMeanSquaredError;
+        validationRootMeanSquaredErrors[index] = validationRootMeanSquaredError;
+        learningRates[index] = learningRate;
+
+        // Publishing the new count makes the result visible to the background thread
+        numberOfResultsAdded = resultNum + 1;
+        LockSupport.unpark(writerThread);
+    }
+
+
+    /**
+     * Waits for every result recorded to be written and the files to be closed, so that they are complete when train()
+     * returns
+     */
+    @Override
+    public void trainingFinished() {
+        if (writerThread == null) {
+            return;
+        }
+        finishing = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+        finishing = false;
+        numberOfResultsAdded = 0;
+        numberOfResultsTaken = 0;
+    }
+
+
+    /**
+     * Returns the number of results which were not written because the queue was full
+     *
+     * @return the number of dropped results
+     */
+    public long getNumberOfDroppedResults() {
+        return numberOfDroppedResults;
+    }
+
+
+    /**
+     * Writes each result as it is recorded, until training has finished and every result has been written. If the files
+     * cannot be written, this is reported, and the remaining results are taken and discarded so that the queue does not
+     * fill up.
+     */
+    private void writeResults() {
+        try (PrintWriter validationOut = new PrintWriter(Files.newBufferedWriter(validationFile));
+             PrintWriter trainingOut = new PrintWriter(Files.newBufferedWriter(trainingFile));
+             PrintWriter learningRateOut = new PrintWriter(Files.newBufferedWriter(learningRateFile))) {
+            while (true) {
+                // finishing is read before the count, so once it is seen, the count includes every result recorded
+                boolean finished = finishing;
+                long resultNum = numberOfResultsTaken;
+                long numberOfResults = numberOfResultsAdded;
+                if (resultNum == numberOfResults) {
+                    if (finished) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                for (; resultNum < numberOfResults; resultNum++) {
+                    int index = (int) (resultNum % epochCounts.length);
+                    validationOut.println(epochCounts[index] + ", " + validationRootMeanSquaredErrors[index]);
+                    trainingOut.println(epochCounts[index] + ", " + trainingRootMeanSquaredErrors[index]);
+                    learningRateOut.println(epochCounts[index] + ", " + learningRates[index]);
+                }
+                numberOfResultsTaken = numberOfResults;
+            }
+            if (validationOut.checkError() || trainingOut.checkError() || learningRateOut.checkError()) {
+                System.out.println("Could not write training metrics to " + validationFile.getParent());
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write training metrics to " + validationFile.getParent() + ": " + e.getMessage());
+            discardResults();
+        }
+    }
+
+
+    /**
+     * Takes and discards each result as it is recorded, until training has finished
+     */
+    private void discardResults() {
+        while (true) {
+            boolean finished = finishing;
+            numberOfResultsTaken = numberOfResultsAdded;
+            if (finished) {
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+}
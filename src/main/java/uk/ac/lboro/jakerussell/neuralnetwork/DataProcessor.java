@@ -2,12 +2,19 @@ package uk.ac.lboro.jakerussell.neuralnetwork;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -28,22 +35,65 @@ import java.util.stream.Collectors;
  */
 public class DataProcessor {
     private static final int STANDARD_DEVIATION_MULTIPLIER = 4;
-
-    private List<CatchmentArea> trainingData;
-    private List<CatchmentArea> validationData;
-    private List<CatchmentArea> testData;
-
-    private double minArea, maxArea, meanArea, standardDeviationArea;
-    private double minBaseFlowIndex, maxBaseFlowIndex, meanBaseFlowIndex, standardDeviationBaseFlowIndex;
-    private double minFloodAttenuation, maxFloodAttenuation, meanFloodAttenuation, standardDeviationFloodAttenuation;
-    private double minFloodPlainExtent, maxFloodPlainExtent, meanFloodPlainExtent, standardDeviationFloodPlainExtent;
-    private double minLongestDrainagePath, maxLongestDrainagePath, meanLongestDrainagePath, standardDeviationLongestDrainagePath;
-    private double minProportionWetDays, maxProportionWetDays, meanProportionWetDays, standardDeviationProportionWetDays;
-    private double minMedianAnnualMax1DayRainfall, maxMedianAnnualMax1DayRainfall, meanMedianAnnualMax1DayRainfall, standardDeviationMedianAnnualMax1DayRainfall;
-    private double minStandardAnnualAverageRainfall, maxStandardAnnualAverageRainfall, meanStandardAnnualAverageRainfall, standardDeviationStandardAnnualAverageRainfall;
-    private double minIndexFlood, maxIndexFlood, meanIndexFlood, standardDeviationIndexFlood;
-
-    private int numberOfHiddenLayers;
+    private static final int NUMBER_OF_RUNS_PER_CONFIGURATION = 3;
+    private static final long DEFAULT_SWEEP_SEED = 20210322L;
+
+    // When streaming, each chunk holds a whole number of default-sized mini-batches, and 2 chunks are read ahead
+    private static final int STREAMING_CHUNK_SIZE = 171 * 96;
+    private static final int NUMBER_OF_PREFETCHED_CHUNKS = 2;
+
+    // The columns of the CSV file are the features of a catchment area, in order, followed by the index flood
+    private static final int INDEX_FLOOD_COLUMN = CatchmentArea.NUMBER_OF_FEATURES;
+    private static final int NUMBER_OF_COLUMNS = CatchmentArea.NUMBER_OF_FEATURES + 1;
+    private static final String[] COLUMN_NAMES = columnNames();
+
+    // If set, each trained model is saved to the binary model file at this path
+    private static final String MODEL_FILE_PROPERTY = "neuralnetwork.model";
+
+    // If set, checkpoints are saved to this path during training, every given number of epochs, and the first network
+    // resumes training from the checkpoint at the resume path rather than asking for a network configuration
+    private static final String CHECKPOINT_FILE_PROPERTY = "neuralnetwork.checkpoint";
+    private static final String CHECKPOINT_INTERVAL_PROPERTY = "neuralnetwork.checkpointInterval";
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 10000;
+    private static final String RESUME_FILE_PROPERTY = "neuralnetwork.resume";
+
+    // Set how often each network is validated, and when training which stops automatically stops. The validation interval
+    // is in epochs, unless an interval in milliseconds is given instead. If none are set, the default policy is used.
+    private static final String VALIDATION_INTERVAL_PROPERTY = "neuralnetwork.validationInterval";
+    private static final String VALIDATION_INTERVAL_MILLIS_PROPERTY = "neuralnetwork.validationIntervalMillis";
+    private static final String PATIENCE_PROPERTY = "neuralnetwork.patience";
+    private static final String MIN_DELTA_PROPERTY = "neuralnetwork.minDelta";
+    private static final String RESTORE_BEST_WEIGHTS_PROPERTY = "neuralnetwork.restoreBestWeights";
+    private static final String PLATEAU_WINDOW_PROPERTY = "neuralnetwork.plateauWindow";
+    private static final String PLATEAU_TOLERANCE_PROPERTY = "neuralnetwork.plateauTolerance";
+    private static final EarlyStoppingPolicy EARLY_STOPPING_POLICY = earlyStoppingPolicy();
+
+    // If true, each network is validated on a separate thread while training carries on
+    private static final String ASYNCHRONOUS_VALIDATION_PROPERTY = "neuralnetwork.asyncValidation";
+
+    // If true, each network of the configuration sweep writes its own graph CSV files. Otherwise the sweep writes none,
+    // as it only reports the RMSE of the test data, and would otherwise write 3 files for every network it trains.
+    private static final String SWEEP_GRAPHS_PROPERTY = "neuralnetwork.sweepGraphs";
+
+    // Set how many networks the configuration sweep trains at once, one per available processor by default, and the master
+    // seed which the seed of every network it trains is generated from
+    private static final String SWEEP_PARALLELISM_PROPERTY = "neuralnetwork.sweepParallelism";
+    private static final String SWEEP_SEED_PROPERTY = "neuralnetwork.sweepSeed";
+
+    private Dataset trainingData;
+    private Dataset validationData;
+    private Dataset testData;
+
+    // Set instead of the datasets above when the CSV file is streamed in chunks rather than read into memory
+    private StreamingCatchmentData streamingData;
+
+    // The minimum, maximum, mean and standard deviation of each column, in the order of the columns of the CSV file
+    private final double[] columnMinimums = new double[NUMBER_OF_COLUMNS];
+    private final double[] columnMaximums = new double[NUMBER_OF_COLUMNS];
+    private final double[] columnMeans = new double[NUMBER_OF_COLUMNS];
+    private final double[] columnStandardDeviations = new double[NUMBER_OF_COLUMNS];
+
+    private int[] hiddenLayerSizes;
     private double learningRate;
     private ActivationFunctions activationFunctionSelection;
     private List<Improvements> improvementsSelection;
@@ -53,13 +103,166 @@ public class DataProcessor {
     /**
      * The main method invokes the creation of a new DataProcessor instance, and is responsible for reading in the CSV
      * file of catchment area data.
+     * <p>
+     * If given the path of a binary dataset file, the data is memory-mapped from that file instead, and if given
+     * "convert" followed by the path of a CSV file and the path of a binary dataset file, the CSV file is cleaned,
+     * standardised and written to the binary dataset file, and no network is trained. If given "stream" followed by the
+     * path of a CSV file, the CSV file is cleaned and standardised as it is streamed in chunks, so that it does not need
+     * to fit into memory.
      *
-     * @param args unused
+     * @param args either nothing, the path of a binary dataset file, "convert" and the paths of the files to convert
+     *             between, or "stream" and the path of a CSV file
      */
     public static void main(String[] args) {
+        if (args.length == 3 && args[0].equals("convert")) {
+            try {
+                convertCsvToBinary(args[1], Paths.get(args[2]));
+                System.out.println("Converted " + args[1] + " to " + args[2]);
+            } catch (IOException e) {
+                System.out.println("Could not convert " + args[1] + ": " + e.getMessage());
+            }
+            return;
+        }
+
         DataProcessor dataProcessor = new DataProcessor();
 
-        String file = "/Users/jake/OneDrive - Loughborough University/COMPUTER SCIENCE AND AI/Part B/Semester 2/AI Methods/NeuralNetworkCoursework/CSV/Coursework_Dataset_Original.csv";
+        if (args.length == 2 && args[0].equals("stream")) {
+            // Streams the CSV file in chunks, removing outliers and standardising each row as it is read
+            try {
+                dataProcessor.loadStreamingData(Paths.get(args[1]));
+            } catch (IOException e) {
+                System.out.println("Could not read " + args[1] + ": " + e.getMessage());
+                return;
+            }
+        } else if (args.length == 1) {
+            // Memory-maps the cleaned and standardised data from a binary dataset file, so no parsing is needed
+            try {
+                dataProcessor.loadBinaryData(Paths.get(args[0]));
+            } catch (IOException e) {
+                System.out.println("Could not read " + args[0] + ": " + e.getMessage());
+                return;
+            }
+        } else {
+            String file = "/Users/jake/OneDrive - Loughborough University/COMPUTER SCIENCE AND AI/Part B/Semester 2/AI Methods/NeuralNetworkCoursework/CSV/Coursework_Dataset_Original.csv";
+            List<CatchmentArea> csvData = dataProcessor.loadCsvData(file);
+
+            // Splits the data into 3 distinct subsets -
+            dataProcessor.trainingData = Dataset.fromCatchmentAreas(dataProcessor.trainingData(csvData), 1);
+            dataProcessor.validationData = Dataset.fromCatchmentAreas(dataProcessor.validationData(csvData), 1);
+            dataProcessor.testData = Dataset.fromCatchmentAreas(dataProcessor.testData(csvData), 1);
+        }
+
+        boolean anotherNetwork = true;
+
+        // Creates, tests, and trains a new NeuralNetwork instance based off of the user's inputted network configuration
+
+        // If a checkpoint to resume from has been given, the first network carries on training from it instead
+        NeuralNetwork network = null;
+        String resumeFile = System.getProperty(RESUME_FILE_PROPERTY);
+        if (resumeFile != null) {
+            try {
+                network = NeuralNetwork.resume(Paths.get(resumeFile));
+                System.out.println("Resuming training from " + resumeFile);
+            } catch (IOException e) {
+                System.out.println("Could not resume from " + resumeFile + ": " + e.getMessage());
+                return;
+            }
+        } else {
+            network = dataProcessor.getUserNetworkConfiguration();
+        }
+        boolean resumingNetwork = resumeFile != null;
+
+        while (anotherNetwork) {
+            //NeuralNetwork network = dataProcessor.getUserNetworkConfiguration();
+            if (resumingNetwork) {
+                resumingNetwork = false;
+            } else {
+                if (dataProcessor.hiddenLayerSizes == null) {
+                    dataProcessor.getUserNetworkConfiguration();
+                }
+                network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, dataProcessor.hiddenLayerSizes, dataProcessor.learningRate, dataProcessor.activationFunctionSelection, dataProcessor.improvementsSelection, dataProcessor.numberOfEpochsToTrainFor);
+            }
+
+            network.setEarlyStoppingPolicy(EARLY_STOPPING_POLICY);
+            network.setAsynchronousValidation(Boolean.getBoolean(ASYNCHRONOUS_VALIDATION_PROPERTY));
+
+            // Saves checkpoints during training, so that training can be resumed if it is stopped
+            String checkpointFile = System.getProperty(CHECKPOINT_FILE_PROPERTY);
+            if (checkpointFile != null) {
+                network.setCheckpointing(Paths.get(checkpointFile), Integer.getInteger(CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL));
+            }
+            InferenceModel model = network.train(dataProcessor.trainingChunks(), dataProcessor.validationChunks());
+
+            double squaredError = 0.0;
+
+            List<Double> networkPredictions = new ArrayList<>();
+            List<Double> expectedValues = new ArrayList<>();
+            Iterator<Dataset> testChunkIterator = dataProcessor.testChunks().iterator();
+            try {
+                while (testChunkIterator.hasNext()) {
+                    Dataset testChunk = testChunkIterator.next();
+                    for (int testDataIndex = 0; testDataIndex < testChunk.size(); testDataIndex++) {
+                        networkPredictions.add(model.predict(testChunk, testDataIndex));
+                        expectedValues.add(testChunk.getTarget(testDataIndex, 0));
+                    }
+                }
+            } finally {
+                PrefetchingIterator.closeIfPrefetching(testChunkIterator);
+            }
+
+            try {
+                File csvFile = new File("CSV/Network_Predictions.csv");
+                PrintWriter out = new PrintWriter(csvFile);
+                for (int j = 0; j < networkPredictions.size(); j++) {
+                    double expectedValue = destandardisedValue(expectedValues.get(j), dataProcessor.columnMinimums[INDEX_FLOOD_COLUMN], dataProcessor.columnMaximums[INDEX_FLOOD_COLUMN]);
+                    double predictedValue = destandardisedValue(networkPredictions.get(j), dataProcessor.columnMinimums[INDEX_FLOOD_COLUMN], dataProcessor.columnMaximums[INDEX_FLOOD_COLUMN]);
+                    squaredError = squaredError + Math.pow(expectedValue - predictedValue, 2);
+                    out.println(expectedValue + ", " + predictedValue);
+                }
+                out.close();
+                Double rootMeanSquaredError = Math.sqrt(squaredError / networkPredictions.size());
+                System.out.println("\nTesting complete with RMSE of: " + rootMeanSquaredError);
+            } catch (FileNotFoundException e) {
+                System.out.println("File not found.");
+            }
+
+            // Saves the trained model, so that it can be used for predicting without being trained again
+            String modelFile = System.getProperty(MODEL_FILE_PROPERTY);
+            if (modelFile != null) {
+                try {
+                    dataProcessor.saveModel(model, Paths.get(modelFile));
+                    System.out.println("Saved model to " + modelFile);
+                } catch (IOException e) {
+                    System.out.println("Could not save model to " + modelFile + ": " + e.getMessage());
+                }
+            }
+
+
+            Scanner scanner = new Scanner(System.in);
+            System.out.println("\nWould you like to train another network?");
+            String anotherNetworkInput = scanner.next();
+            if (anotherNetworkInput.equals("n")) {
+                anotherNetwork = false;
+            }
+        }
+
+        // Runs all possible network configurations
+        //dataProcessor.runAllNetworkConfigurations();
+
+        // Compares the convergence and throughput of Hogwild with sequential training
+        //dataProcessor.compareHogwildWithSequentialTraining(8, 0.1, ActivationFunctions.SIGMOID, 10000, Runtime.getRuntime().availableProcessors(), DEFAULT_SWEEP_SEED);
+
+    }
+
+
+    /**
+     * Reads in a CSV file of catchment area data, removes any outliers, and standardises the remaining data, using the
+     * minimum and maximum values of each column
+     *
+     * @param file the path of the CSV file to read
+     * @return a list of all remaining catchment area, standardised
+     */
+    private List<CatchmentArea> loadCsvData(String file) {
         String delimiter = ",";
 
         List<CatchmentArea> csvData = new ArrayList<>();
@@ -71,7 +274,12 @@ public class DataProcessor {
                 String[] values = line.split(delimiter);
 
                 try {
-                    csvData.add(new CatchmentArea(Double.parseDouble(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2]), Double.parseDouble(values[3]), Double.parseDouble(values[4]), Double.parseDouble(values[5]), Double.parseDouble(values[6]), Double.parseDouble(values[7]), Double.parseDouble(values[8])));
+                    double[] features = new double[CatchmentArea.NUMBER_OF_FEATURES];
+                    for (int featureNum = 0; featureNum < CatchmentArea.NUMBER_OF_FEATURES; featureNum++) {
+                        features[featureNum] = Double.parseDouble(values[featureNum]);
+                    }
+                    double indexFlood = Double.parseDouble(values[INDEX_FLOOD_COLUMN]);
+                    csvData.add(new CatchmentArea(features, new double[]{indexFlood}));
                 } catch (IllegalArgumentException e) {
                     // Catches the exception where one of the data values is either not a number, or is -999
                     System.out.println("Invalid column data " + e.getMessage());
@@ -83,71 +291,219 @@ public class DataProcessor {
 
         // Filters through all data to calculate the mean and standard deviation of each column, used for identifying
         // outliers and removing these from the dataset
-        dataProcessor.calculateMeanValues(csvData);
-        dataProcessor.calculateStandardDeviationValues(csvData);
-        List<CatchmentArea> outliers = dataProcessor.calculateOutliers(csvData);
+        calculateMeanAndStandardDeviationValues(csvData);
+        List<CatchmentArea> outliers = calculateOutliers(csvData);
         System.out.println("Identified " + outliers.size() + " outliers.");
         csvData.removeAll(outliers);
         System.out.println(csvData.size() + " data points remaining.");
 
         // Calculates the minimum and maximum values of each column, excluding the testing data set
-        dataProcessor.calculateMinMaxValues(csvData);
+        calculateMinMaxValues(csvData);
 
         // Standardises all data, using the minimum and maximum values of each column calculated prior
-        dataProcessor.calculateStandardisedValues(csvData);
+        calculateStandardisedValues(csvData);
 
-        // Splits the data into 3 distinct subsets -
-        dataProcessor.trainingData = dataProcessor.trainingData(csvData);
-        dataProcessor.validationData = dataProcessor.validationData(csvData);
-        dataProcessor.testData = dataProcessor.testData(csvData);
+        return csvData;
+    }
 
-        boolean anotherNetwork = true;
 
-        // Creates, tests, and trains a new NeuralNetwork instance based off of the user's inputted network configuration
+    /**
+     * Memory-maps a binary dataset file of cleaned and standardised catchment area data, splitting it into the training,
+     * validation and testing datasets without copying it, and reads the minimum and maximum of each column from its header
+     *
+     * @param file the path of the binary dataset file
+     * @throws IOException if the file cannot be read or is not a binary dataset file
+     */
+    private void loadBinaryData(Path file) throws IOException {
+        BinaryDatasetFile binaryDatasetFile = BinaryDatasetFile.map(file);
+        Dataset allData = binaryDatasetFile.getDataset();
+        if (allData.getNumberOfFeatures() != CatchmentArea.NUMBER_OF_FEATURES) {
+            throw new IOException(file + " has " + allData.getNumberOfFeatures() + " features, but a catchment area has "
+                    + CatchmentArea.NUMBER_OF_FEATURES);
+        }
 
-        NeuralNetwork network = dataProcessor.getUserNetworkConfiguration();
+        for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+            columnMinimums[columnNum] = binaryDatasetFile.getColumnMinimum(columnNum);
+            columnMaximums[columnNum] = binaryDatasetFile.getColumnMaximum(columnNum);
+        }
 
-        while (anotherNetwork) {
-            //NeuralNetwork network = dataProcessor.getUserNetworkConfiguration();
-            network = new NeuralNetwork(8, dataProcessor.numberOfHiddenLayers, dataProcessor.learningRate, dataProcessor.activationFunctionSelection, dataProcessor.improvementsSelection, dataProcessor.numberOfEpochsToTrainFor);
-            network.train(dataProcessor.trainingData, dataProcessor.validationData);
+        // Splits the data into the same 3 distinct subsets as the CSV data
+        int numberOfTrainingSamples = (int) (allData.size() * 0.6);
+        int numberOfValidationSamples = (int) (allData.size() * 0.2);
+        int numberOfTestSamples = Math.min((int) (allData.size() * 0.2), allData.size() - (int) (allData.size() * 0.8));
+        this.trainingData = allData.subset(0, numberOfTrainingSamples);
+        this.validationData = allData.subset(numberOfTrainingSamples, numberOfValidationSamples);
+        this.testData = allData.subset((int) (allData.size() * 0.8), numberOfTestSamples);
+    }
 
-            double squaredError = 0.0;
 
-            List<Double> networkPredictions = new ArrayList<>();
-            for (CatchmentArea catchmentArea : dataProcessor.testData) {
-                double output = network.predict(catchmentArea);
-                networkPredictions.add(output);
-            }
+    /**
+     * Prepares a CSV file of catchment area data to be streamed in chunks, rather than reading it into memory. The
+     * outliers and the minimum and maximum of each column are found by streaming over the file, and every pass over the
+     * training, validation or testing dataset then streams the file again, standardising each row as it is read.
+     *
+     * @param file the path of the CSV file
+     * @throws IOException if the CSV file cannot be read
+     */
+    private void loadStreamingData(Path file) throws IOException {
+        this.streamingData = StreamingCatchmentData.prepare(file, STREAMING_CHUNK_SIZE, NUMBER_OF_PREFETCHED_CHUNKS);
+        System.out.println("Skipped " + streamingData.getNumberOfInvalidRows() + " invalid rows.");
+        System.out.println("Identified " + streamingData.getNumberOfOutliers() + " outliers.");
+        System.out.println(streamingData.getNumberOfSamples() + " data points remaining.");
+
+        for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+            columnMinimums[columnNum] = streamingData.getColumnMinimum(columnNum);
+            columnMaximums[columnNum] = streamingData.getColumnMaximum(columnNum);
+        }
+    }
 
-            try {
-                File csvFile = new File("CSV/Network_Predictions.csv");
-                PrintWriter out = new PrintWriter(csvFile);
-                for (int j = 0; j < networkPredictions.size(); j++) {
-                    double expectedValue = destandardisedValue(dataProcessor.testData.get(j).getIndexFlood(), dataProcessor.minIndexFlood, dataProcessor.maxIndexFlood);
-                    double predictedValue = destandardisedValue(networkPredictions.get(j), dataProcessor.minIndexFlood, dataProcessor.maxIndexFlood);
-                    squaredError = squaredError + Math.pow(expectedValue - predictedValue, 2);
-                    out.println(expectedValue + ", " + predictedValue);
+
+    /**
+     * Returns the training dataset as chunks, which is a single chunk unless the data is being streamed
+     *
+     * @return the chunks of the training dataset
+     */
+    private Iterable<Dataset> trainingChunks() {
+        return streamingData != null ? streamingData.trainingChunks() : Collections.singletonList(trainingData);
+    }
+
+
+    /**
+     * Returns the validation dataset as chunks, which is a single chunk unless the data is being streamed
+     *
+     * @return the chunks of the validation dataset
+     */
+    private Iterable<Dataset> validationChunks() {
+        return streamingData != null ? streamingData.validationChunks() : Collections.singletonList(validationData);
+    }
+
+
+    /**
+     * Returns the testing dataset as chunks, which is a single chunk unless the data is being streamed
+     *
+     * @return the chunks of the testing dataset
+     */
+    private Iterable<Dataset> testChunks() {
+        return streamingData != null ? streamingData.testChunks() : Collections.singletonList(testData);
+    }
+
+
+    /**
+     * Converts a CSV file of catchment area data to a binary dataset file. The data is cleaned and standardised exactly as
+     * when it is read in by main(), and the minimum and maximum of each column are written to the file's header so that
+     * predictions can be destandardised.
+     *
+     * @param csvFile    the path of the CSV file to read
+     * @param binaryFile the path of the binary dataset file to write
+     * @throws IOException if the binary dataset file cannot be written
+     */
+    private static void convertCsvToBinary(String csvFile, Path binaryFile) throws IOException {
+        DataProcessor dataProcessor = new DataProcessor();
+        List<CatchmentArea> csvData = dataProcessor.loadCsvData(csvFile);
+
+        BinaryDatasetFile.write(binaryFile, Dataset.fromCatchmentAreas(csvData, 1), COLUMN_NAMES.clone(),
+                dataProcessor.columnMinimums.clone(), dataProcessor.columnMaximums.clone());
+    }
+
+
+    /**
+     * Saves a trained model to a binary model file, along with the minimum and maximum of each column so that the inputs
+     * can be standardised and the predictions destandardised. The file is then loaded again, and its model must predict
+     * exactly the same value for every catchment area in the testing dataset as the model that was saved.
+     *
+     * @param model the trained model to save
+     * @param file  the path of the binary model file to write
+     * @throws IOException if the file cannot be written or read, or the loaded model predicts different values
+     */
+    private void saveModel(InferenceModel model, Path file) throws IOException {
+        BinaryModelFile.write(file, model, COLUMN_NAMES.clone(), columnMinimums.clone(), columnMaximums.clone());
+        InferenceModel loadedModel = BinaryModelFile.load(file).getModel();
+
+        double[] predictions = new double[STREAMING_CHUNK_SIZE];
+        double[] loadedPredictions = new double[STREAMING_CHUNK_SIZE];
+        // If the chunks are being streamed, the iterator is closed even if a prediction differs part-way through the pass
+        Iterator<Dataset> testChunkIterator = testChunks().iterator();
+        try {
+            while (testChunkIterator.hasNext()) {
+                Dataset testChunk = testChunkIterator.next();
+                for (int first = 0; first < testChunk.size(); first += STREAMING_CHUNK_SIZE) {
+                    int numberOfSamples = Math.min(STREAMING_CHUNK_SIZE, testChunk.size() - first);
+                    model.predictBatch(testChunk, first, numberOfSamples, predictions, 0);
+                    loadedModel.predictBatch(testChunk, first, numberOfSamples, loadedPredictions, 0);
+                    for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+                        if (Double.doubleToRawLongBits(predictions[sampleNum]) != Double.doubleToRawLongBits(loadedPredictions[sampleNum])) {
+                            throw new IOException("The model loaded from " + file + " predicts " + loadedPredictions[sampleNum]
+                                    + " for a test catchment area, but the trained model predicts " + predictions[sampleNum]);
+                        }
+                    }
                 }
-                out.close();
-                Double rootMeanSquaredError = Math.sqrt(squaredError / networkPredictions.size());
-                System.out.println("\nTesting complete with RMSE of: " + rootMeanSquaredError);
-            } catch (FileNotFoundException e) {
-                System.out.println("File not found.");
             }
+        } finally {
+            PrefetchingIterator.closeIfPrefetching(testChunkIterator);
+        }
+    }
 
 
-            Scanner scanner = new Scanner(System.in);
-            System.out.println("\nWould you like to train another network?");
-            String anotherNetworkInput = scanner.next();
-            if (anotherNetworkInput.equals("n")) {
-                anotherNetwork = false;
-            }
+    /**
+     * Creates the early stopping policy described by the system properties, starting from the default policy
+     *
+     * @return the early stopping policy to train each network with
+     */
+    private static EarlyStoppingPolicy earlyStoppingPolicy() {
+        EarlyStoppingPolicy policy = EarlyStoppingPolicy.everyEpochs(Integer.getInteger(VALIDATION_INTERVAL_PROPERTY, EarlyStoppingPolicy.DEFAULT_VALIDATION_INTERVAL));
+        Long validationIntervalMillis = Long.getLong(VALIDATION_INTERVAL_MILLIS_PROPERTY);
+        if (validationIntervalMillis != null) {
+            policy = EarlyStoppingPolicy.every(validationIntervalMillis, TimeUnit.MILLISECONDS);
         }
+        policy = policy.withPatience(Integer.getInteger(PATIENCE_PROPERTY, 0))
+                .withMinDelta(Double.parseDouble(System.getProperty(MIN_DELTA_PROPERTY, "0")))
+                .withBestWeightsRestored(Boolean.getBoolean(RESTORE_BEST_WEIGHTS_PROPERTY))
+                .withPlateauDetection(Integer.getInteger(PLATEAU_WINDOW_PROPERTY, 0), Double.parseDouble(System.getProperty(PLATEAU_TOLERANCE_PROPERTY, "0")));
+        return policy;
+    }
 
-        // Runs all possible network configurations
-        //dataProcessor.runAllNetworkConfigurations();
 
+    /**
+     * Returns the name of each column of the CSV file, which are the names of the features of a catchment area followed
+     * by the index flood
+     *
+     * @return an array of the name of each column
+     */
+    private static String[] columnNames() {
+        String[] columnNames = new String[NUMBER_OF_COLUMNS];
+        for (int featureNum = 0; featureNum < CatchmentArea.NUMBER_OF_FEATURES; featureNum++) {
+            columnNames[featureNum] = CatchmentArea.getFeatureName(featureNum);
+        }
+        columnNames[INDEX_FLOOD_COLUMN] = "Index flood";
+        return columnNames;
+    }
+
+
+    /**
+     * Returns the value of a column of a catchment area, in the order of the columns of the CSV file
+     *
+     * @param catchmentArea the catchment area to read the value from
+     * @param columnNum     the number of the column
+     * @return the value of the column
+     */
+    private static double getColumnValue(CatchmentArea catchmentArea, int columnNum) {
+        return columnNum == INDEX_FLOOD_COLUMN ? catchmentArea.getIndexFlood() : catchmentArea.getFeature(columnNum);
+    }
+
+
+    /**
+     * Sets the value of a column of a catchment area, in the order of the columns of the CSV file
+     *
+     * @param catchmentArea the catchment area to set the value of
+     * @param columnNum     the number of the column
+     * @param value         the new value of the column
+     */
+    private static void setColumnValue(CatchmentArea catchmentArea, int columnNum, double value) {
+        if (columnNum == INDEX_FLOOD_COLUMN) {
+            catchmentArea.setIndexFlood(value);
+        } else {
+            catchmentArea.setFeature(columnNum, value);
+        }
     }
 
 
@@ -159,11 +515,19 @@ public class DataProcessor {
      */
     private NeuralNetwork getUserNetworkConfiguration() {
         Scanner scanner = new Scanner(System.in);
-        int numberOfHiddenNodes;
+        int numberOfHiddenLayers;
         do {
-            System.out.println("\n\nEnter the number of Hidden Layers (between 4 and 16): ");
-            numberOfHiddenNodes = scanner.nextInt();
-        } while (!(numberOfHiddenNodes >= 4 && numberOfHiddenNodes <= 16));
+            System.out.println("\n\nEnter the number of Hidden Layers (between 1 and 4): ");
+            numberOfHiddenLayers = scanner.nextInt();
+        } while (!(numberOfHiddenLayers >= 1 && numberOfHiddenLayers <= 4));
+
+        int[] hiddenLayerSizes = new int[numberOfHiddenLayers];
+        for (int layerNum = 0; layerNum < numberOfHiddenLayers; layerNum++) {
+            do {
+                System.out.println("Enter the number of Hidden Nodes in Hidden Layer " + (layerNum + 1) + " (between 4 and 16): ");
+                hiddenLayerSizes[layerNum] = scanner.nextInt();
+            } while (!(hiddenLayerSizes[layerNum] >= 4 && hiddenLayerSizes[layerNum] <= 16));
+        }
 
         System.out.println("Enter the Learning Rate: ");
         double learningRate = scanner.nextDouble();
@@ -205,25 +569,25 @@ public class DataProcessor {
         }
         int improvementsSelection = scanner.nextInt();
 
-        this.numberOfHiddenLayers = numberOfHiddenNodes;
+        this.hiddenLayerSizes = hiddenLayerSizes;
         this.learningRate = learningRate;
         this.numberOfEpochsToTrainFor = numberOfEpochsToTrainFor;
 
-        return configureNetwork(numberOfHiddenNodes, learningRate, activationFunctionSelection, improvementsSelection, numberOfEpochsToTrainFor);
+        return configureNetwork(hiddenLayerSizes, learningRate, activationFunctionSelection, improvementsSelection, numberOfEpochsToTrainFor);
     }
 
 
     /**
      * Configures and returns a new NeuralNetwork based on a configuration passed in
      *
-     * @param numberOfHiddenNodes         the number of hidden nodes to configure the network with
+     * @param hiddenLayerSizes            the number of nodes in each hidden layer to configure the network with
      * @param learningRate                the learning rate to configure the network with
      * @param activationFunctionSelection the activation function to configure the network with
      * @param improvementsSelection       the improvements to configure the network with
      * @param numberOfEpochsToTrainFor    the number of epochs the network should be trained for
      * @return a NeuralNetwork instance to the desired network configuration
      */
-    private NeuralNetwork configureNetwork(int numberOfHiddenNodes, double learningRate, int activationFunctionSelection, int improvementsSelection, int numberOfEpochsToTrainFor) {
+    private NeuralNetwork configureNetwork(int[] hiddenLayerSizes, double learningRate, int activationFunctionSelection, int improvementsSelection, int numberOfEpochsToTrainFor) {
         NeuralNetwork network;
         // Switch-Case statements are used to ensure that the correct network configuration is generated
         switch (activationFunctionSelection) {
@@ -232,51 +596,51 @@ public class DataProcessor {
                 switch (improvementsSelection) {
                     case 2:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
                         break;
                     case 3:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 4:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 5:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 6:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 7:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 8:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 9:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 10:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 11:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 12:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     default:
                         this.improvementsSelection = new ArrayList<Improvements>();
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.TANH, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
                 }
                 break;
             case 3:
@@ -284,51 +648,51 @@ public class DataProcessor {
                 switch (improvementsSelection) {
                     case 2:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
                         break;
                     case 3:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 4:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 5:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 6:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 7:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 8:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 9:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 10:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 11:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 12:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     default:
                         this.improvementsSelection = new ArrayList<Improvements>();
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.RELU, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
                 }
                 break;
             default:
@@ -336,51 +700,51 @@ public class DataProcessor {
                 switch (improvementsSelection) {
                     case 2:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM)), numberOfEpochsToTrainFor);
                         break;
                     case 3:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 4:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 5:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 6:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 7:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.MOMENTUM, Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 8:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER)), numberOfEpochsToTrainFor);
                         break;
                     case 9:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BOLD_DRIVER, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 10:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING)), numberOfEpochsToTrainFor);
                         break;
                     case 11:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING, Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     case 12:
                         this.improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING));
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(Arrays.asList(Improvements.BATCH_PROCESSING)), numberOfEpochsToTrainFor);
                         break;
                     default:
                         this.improvementsSelection = new ArrayList<Improvements>();
-                        network = new NeuralNetwork(8, numberOfHiddenNodes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
+                        network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, hiddenLayerSizes, learningRate, ActivationFunctions.SIGMOID, new ArrayList<Improvements>(), numberOfEpochsToTrainFor);
                 }
         }
         return network;
@@ -388,11 +752,69 @@ public class DataProcessor {
 
 
     /**
-     * Runs all possible network configurations, and writes the RMSE results of the test data to a CSV file
+     * Runs all possible network configurations, and writes the RMSE results of the test data to a CSV file, training
+     * independent configurations concurrently. The parallelism and master seed are read from the
+     * neuralnetwork.sweepParallelism and neuralnetwork.sweepSeed system properties, and default to the number of
+     * available processors and the default sweep seed.
      */
     private void runAllNetworkConfigurations() {
+        runAllNetworkConfigurations(Integer.getInteger(SWEEP_PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                Long.getLong(SWEEP_SEED_PROPERTY, DEFAULT_SWEEP_SEED));
+    }
+
+
+    /**
+     * Runs all possible network configurations, and writes the RMSE results of the test data to a CSV file.
+     * <p>
+     * Each network configuration is trained as an independent task on a work-stealing pool. Every network is given its
+     * own seed, generated up front from the master seed in configuration order, so that the results of a configuration do
+     * not depend on the level of parallelism or on the order in which the tasks happen to run. The results are written to
+     * the CSV file by the calling thread alone, in configuration order, so lines are never interleaved.
+     *
+     * @param parallelism the number of network configurations to train concurrently
+     * @param masterSeed  the seed used to generate the seed of every network that is trained
+     * @throws IllegalArgumentException if the parallelism is less than 1
+     */
+    private void runAllNetworkConfigurations(int parallelism, long masterSeed) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("At least 1 network configuration must be trained at a time");
+        }
+        List<NetworkConfiguration> networkConfigurations = allNetworkConfigurations(masterSeed);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            List<ForkJoinTask<String>> results = new ArrayList<>();
+            for (NetworkConfiguration networkConfiguration : networkConfigurations) {
+                results.add(pool.submit(() -> runNetworkConfiguration(networkConfiguration)));
+            }
+
+            for (ForkJoinTask<String> result : results) {
+                try {
+                    Files.write(Paths.get("CSV/Network_Configurations_Full_Additions.csv"), result.join().getBytes(), StandardOpenOption.APPEND);
+                } catch (FileNotFoundException e) {
+                    System.out.println("File not found");
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Generates every network configuration to be tested, each with the seeds for its repeated runs
+     *
+     * @param masterSeed the seed used to generate the seed of every network that is trained
+     * @return a list of all network configurations, in the order their results should be written
+     */
+    private List<NetworkConfiguration> allNetworkConfigurations(long masterSeed) {
+        SplittableRandom seedGenerator = new SplittableRandom(masterSeed);
+        List<NetworkConfiguration> networkConfigurations = new ArrayList<>();
+
         // For each possible number of hidden nodes
-        for (int numberOfHiddenLayers = 4; numberOfHiddenLayers <= 16; numberOfHiddenLayers++) {
+        for (int numberOfHiddenNodes = 4; numberOfHiddenNodes <= 16; numberOfHiddenNodes++) {
             double learningRate = 0.05;
             // For each possible initial learning rate value (starting at 0.05 and incrementing by 0.05 each time until
             // it reaches a maximum learning rate of 0.5)
@@ -429,400 +851,205 @@ public class DataProcessor {
                                 improvementsSelection = new ArrayList<Improvements>(Arrays.asList(Improvements.ANNEALING));
 
                         }
-                        System.out.println("\n***** Now Training with " + numberOfHiddenLayers + " hidden layers, " + learningRate + " learning rate, "
-                                + activationFunctions.toString() + " activation function ");
-                        String improvementsConfiguration = "";
-                        for (int i = 0; i < improvementsSelection.size(); i++) {
-                            if (i != improvementsSelection.size() - 1) {
-                                System.out.print(improvementsSelection.get(i).toString() + ", ");
-                                improvementsConfiguration = improvementsConfiguration + improvementsSelection.get(i).toString() + " - ";
-                            } else {
-                                System.out.println(improvementsSelection.get(i).toString());
-                                improvementsConfiguration = improvementsConfiguration + improvementsSelection.get(i).toString();
-                            }
-                        }
 
-                        try {
-                            List<Double> rootMeanSquaredErrors = new ArrayList<>();
-
-                            // Run each network configuration 3 times, in order to try to avoid anomalous results
-                            for (int i = 0; i < 3; i++) {
-                                NeuralNetwork network = new NeuralNetwork(8, numberOfHiddenLayers, learningRate, activationFunctions, improvementsSelection, 10000);
-                                network.train(this.trainingData, this.validationData);
-
-                                double squaredError = 0.0;
-
-                                List<Double> networkPredictions = new ArrayList<>();
-                                for (CatchmentArea catchmentArea : this.testData) {
-                                    double output = network.predict(catchmentArea);
-                                    networkPredictions.add(output);
-                                }
-
-                                // Calculate the RMSE of the test data
-                                for (int j = 0; j < networkPredictions.size(); j++) {
-                                    double expectedValue = destandardisedValue(this.testData.get(j).getIndexFlood(), this.minIndexFlood, this.maxIndexFlood);
-                                    double predictedValue = destandardisedValue(networkPredictions.get(j), this.minIndexFlood, this.maxIndexFlood);
-                                    squaredError = squaredError + Math.pow(expectedValue - predictedValue, 2);
-                                }
-                                Double rootMeanSquaredError = Math.sqrt(squaredError / networkPredictions.size());
-                                rootMeanSquaredErrors.add(rootMeanSquaredError);
-                            }
-
-                            String line = ("\n" + numberOfHiddenLayers + ", " + learningRate + ", " + activationFunctions.toString() + ", " + improvementsConfiguration + ", " +
-                                    rootMeanSquaredErrors.get(0) + ", " + rootMeanSquaredErrors.get(1) + ", " + rootMeanSquaredErrors.get(2) + ", "
-                                    + (rootMeanSquaredErrors.get(0) + rootMeanSquaredErrors.get(1) + rootMeanSquaredErrors.get(2)) / 3);
-
-                            Files.write(Paths.get("CSV/Network_Configurations_Full_Additions.csv"), line.getBytes(), StandardOpenOption.APPEND);
-
-                        } catch (FileNotFoundException e) {
-                            System.out.println("File not found");
-                        } catch (IOException e) {
-                            e.printStackTrace();
+                        long[] seeds = new long[NUMBER_OF_RUNS_PER_CONFIGURATION];
+                        for (int i = 0; i < seeds.length; i++) {
+                            seeds[i] = seedGenerator.nextLong();
                         }
+                        networkConfigurations.add(new NetworkConfiguration(numberOfHiddenNodes, learningRate, activationFunctions, improvementsSelection, seeds));
                     }
                 }
                 learningRate = (double) Math.round((learningRate + 0.05) * 1000) / 1000;
             }
         }
-
-    }
-
-
-    /**
-     * Calculates the minimum and maximum values of each column, excluding the testing data set
-     *
-     * @param data all original catchment area data, excluding any missing data or non-numerical data
-     */
-    private void calculateMinMaxValues(List<CatchmentArea> data) {
-
-        List<CatchmentArea> trainingPlusValidationData = new ArrayList<>();
-        trainingPlusValidationData.addAll(trainingData(data));
-        trainingPlusValidationData.addAll(validationData(data));
-
-        minArea = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getArea())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxArea = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getArea())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minBaseFlowIndex = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getBaseFlowIndex())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxBaseFlowIndex = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getBaseFlowIndex())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minFloodAttenuation = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getFloodAttenuation())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxFloodAttenuation = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getFloodAttenuation())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minFloodPlainExtent = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getFloodPlainExtent())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxFloodPlainExtent = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getFloodPlainExtent())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minLongestDrainagePath = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getLongestDrainagePath())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxLongestDrainagePath = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getLongestDrainagePath())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minProportionWetDays = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getProportionWetDays())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxProportionWetDays = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getProportionWetDays())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minMedianAnnualMax1DayRainfall = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getMedianAnnualMax1DayRainfall())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxMedianAnnualMax1DayRainfall = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getMedianAnnualMax1DayRainfall())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minStandardAnnualAverageRainfall = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getStandardAnnualAverageRainfall())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxStandardAnnualAverageRainfall = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getStandardAnnualAverageRainfall())
-                .max(Double::compareTo)
-                .orElse(0.0);
-
-        minIndexFlood = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getIndexFlood())
-                .min(Double::compareTo)
-                .orElse(0.0);
-        maxIndexFlood = trainingPlusValidationData.stream()
-                .map(catchmentArea -> catchmentArea.getIndexFlood())
-                .max(Double::compareTo)
-                .orElse(0.0);
-    }
-
-
-    /**
-     * Calculates the mean of each column
-     *
-     * @param allData all original catchment area data, excluding any missing data or non-numerical data
-     */
-    private void calculateMeanValues(List<CatchmentArea> allData) {
-        meanArea = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getArea())
-                .average()
-                .orElse(0.0);
-
-        meanBaseFlowIndex = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getBaseFlowIndex())
-                .average()
-                .orElse(0.0);
-
-        meanFloodAttenuation = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getFloodAttenuation())
-                .average()
-                .orElse(0.0);
-
-        meanFloodPlainExtent = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getFloodPlainExtent())
-                .average()
-                .orElse(0.0);
-
-        meanLongestDrainagePath = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getLongestDrainagePath())
-                .average()
-                .orElse(0.0);
-
-        meanProportionWetDays = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getProportionWetDays())
-                .average()
-                .orElse(0.0);
-
-        meanMedianAnnualMax1DayRainfall = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getMedianAnnualMax1DayRainfall())
-                .average()
-                .orElse(0.0);
-
-        meanStandardAnnualAverageRainfall = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getStandardAnnualAverageRainfall())
-                .average()
-                .orElse(0.0);
-
-        meanIndexFlood = allData.stream()
-                .mapToDouble(catchmentArea -> catchmentArea.getIndexFlood())
-                .average()
-                .orElse(0.0);
+        return networkConfigurations;
     }
 
 
     /**
-     * Calculates the standard deviation of each column
+     * Trains and tests a single network configuration several times, in order to try to avoid anomalous results
      *
-     * @param allData all original catchment area data, excluding any missing data or non-numerical data
+     * @param networkConfiguration the network configuration to run
+     * @return the CSV line of RMSE results of the test data for the network configuration
      */
-    private void calculateStandardDeviationValues(List<CatchmentArea> allData) {
-        double standardDeviation;
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getArea() - meanArea, 2);
-        }
-        standardDeviationArea = Math.sqrt(standardDeviation / allData.size());
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getBaseFlowIndex() - meanBaseFlowIndex, 2);
-        }
-        standardDeviationBaseFlowIndex = Math.sqrt(standardDeviation / allData.size());
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getFloodAttenuation() - meanFloodAttenuation, 2);
-        }
-        standardDeviationFloodAttenuation = Math.sqrt(standardDeviation / allData.size());
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getFloodPlainExtent() - meanFloodPlainExtent, 2);
-        }
-        standardDeviationFloodPlainExtent = Math.sqrt(standardDeviation / allData.size());
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getLongestDrainagePath() - meanLongestDrainagePath, 2);
-        }
-        standardDeviationLongestDrainagePath = Math.sqrt(standardDeviation / allData.size());
-
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getProportionWetDays() - meanProportionWetDays, 2);
+    private String runNetworkConfiguration(NetworkConfiguration networkConfiguration) {
+        List<Improvements> improvementsSelection = networkConfiguration.improvements;
+        String improvementsConfiguration = "";
+        for (int i = 0; i < improvementsSelection.size(); i++) {
+            if (i != improvementsSelection.size() - 1) {
+                improvementsConfiguration = improvementsConfiguration + improvementsSelection.get(i).toString() + " - ";
+            } else {
+                improvementsConfiguration = improvementsConfiguration + improvementsSelection.get(i).toString();
+            }
         }
-        standardDeviationProportionWetDays = Math.sqrt(standardDeviation / allData.size());
+        System.out.println("\n***** Now Training with " + networkConfiguration.numberOfHiddenNodes + " hidden nodes, " + networkConfiguration.learningRate + " learning rate, "
+                + networkConfiguration.activationFunction.toString() + " activation function " + improvementsConfiguration.replace(" - ", ", "));
+
+        List<Double> rootMeanSquaredErrors = new ArrayList<>();
+
+        // Run each network configuration 3 times, in order to try to avoid anomalous results
+        for (long seed : networkConfiguration.seeds) {
+            NeuralNetwork network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, networkConfiguration.numberOfHiddenNodes, networkConfiguration.learningRate,
+                    networkConfiguration.activationFunction, improvementsSelection, 10000, seed);
+            network.setEarlyStoppingPolicy(EARLY_STOPPING_POLICY);
+            network.setAsynchronousValidation(Boolean.getBoolean(ASYNCHRONOUS_VALIDATION_PROPERTY));
+
+            // Configurations are trained at the same time, so if graphs are wanted, each run writes them to its own CSV files.
+            // Otherwise no graphs are written, rather than every run overwriting the same files.
+            if (Boolean.getBoolean(SWEEP_GRAPHS_PROPERTY)) {
+                String runName = networkConfiguration.numberOfHiddenNodes + "_" + networkConfiguration.learningRate + "_" + networkConfiguration.activationFunction
+                        + (improvementsSelection.isEmpty() ? "" : "_" + improvementsConfiguration.replace(" - ", "-")) + "_" + seed;
+                network.setMetricsSink(new CsvMetricsWriter(Paths.get("CSV"), runName));
+            } else {
+                network.setMetricsSink(NoOpMetricsSink.INSTANCE);
+            }
+            InferenceModel model = network.train(this.trainingData, this.validationData);
 
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getMedianAnnualMax1DayRainfall() - meanMedianAnnualMax1DayRainfall, 2);
-        }
-        standardDeviationMedianAnnualMax1DayRainfall = Math.sqrt(standardDeviation / allData.size());
+            double squaredError = 0.0;
 
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getStandardAnnualAverageRainfall() - meanStandardAnnualAverageRainfall, 2);
-        }
-        standardDeviationStandardAnnualAverageRainfall = Math.sqrt(standardDeviation / allData.size());
+            List<Double> networkPredictions = new ArrayList<>();
+            for (int testDataIndex = 0; testDataIndex < this.testData.size(); testDataIndex++) {
+                double output = model.predict(this.testData, testDataIndex);
+                networkPredictions.add(output);
+            }
 
-        standardDeviation = 0.0;
-        for (CatchmentArea catchmentArea : allData) {
-            standardDeviation += Math.pow(catchmentArea.getIndexFlood() - meanIndexFlood, 2);
+            // Calculate the RMSE of the test data
+            for (int j = 0; j < networkPredictions.size(); j++) {
+                double expectedValue = destandardisedValue(this.testData.getTarget(j, 0), this.columnMinimums[INDEX_FLOOD_COLUMN], this.columnMaximums[INDEX_FLOOD_COLUMN]);
+                double predictedValue = destandardisedValue(networkPredictions.get(j), this.columnMinimums[INDEX_FLOOD_COLUMN], this.columnMaximums[INDEX_FLOOD_COLUMN]);
+                squaredError = squaredError + Math.pow(expectedValue - predictedValue, 2);
+            }
+            Double rootMeanSquaredError = Math.sqrt(squaredError / networkPredictions.size());
+            rootMeanSquaredErrors.add(rootMeanSquaredError);
         }
-        standardDeviationIndexFlood = Math.sqrt(standardDeviation / allData.size());
-    }
-
-
-    /**
-     * Calculates any potential outliers in the data, and returns this as a List of catchment area
-     *
-     * @param allData all original catchment area data, excluding any missing data or non-numerical data
-     * @return a List of catchment area, containing all potential outliers
-     */
-    private List<CatchmentArea> calculateOutliers(List<CatchmentArea> allData) {
-        List<CatchmentArea> outliers = allData.stream()
-                .filter(catchmentArea -> isAreaOutlier(catchmentArea) || isBaseFlowIndexOutlier(catchmentArea)
-                        || isFloodAttenuationOutlier(catchmentArea) || isFloodPlainExtentOutlier(catchmentArea)
-                        || isLongestDrainagePathOutlier(catchmentArea) || isProportionWetDaysOutlier(catchmentArea)
-                        || isMedianAnnualMax1DayRainfallOutlier(catchmentArea) || isStandardAnnualAverageRainfallOutlier(catchmentArea)
-                        || isIndexFloodOutlier(catchmentArea)
-                )
-                .collect(Collectors.toList());
-        return outliers;
-    }
-
-
-    /**
-     * Determines if the area of a catchment area is an outlier
-     *
-     * @param catchmentArea the catchment area to check the area of
-     * @return true if area is an outlier, false otherwise
-     */
-    private boolean isAreaOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getArea() > meanArea + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationArea) ||
-                catchmentArea.getArea() < meanArea - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationArea);
-    }
-
 
-    /**
-     * Determines if the base flow index of a catchment area is an outlier
-     *
-     * @param catchmentArea the catchment area to check the base flow index of
-     * @return true if base flow index is an outlier, false otherwise
-     */
-    private boolean isBaseFlowIndexOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getBaseFlowIndex() > meanBaseFlowIndex + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationBaseFlowIndex) ||
-                catchmentArea.getBaseFlowIndex() < meanBaseFlowIndex - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationBaseFlowIndex);
+        return ("\n" + networkConfiguration.numberOfHiddenNodes + ", " + networkConfiguration.learningRate + ", " + networkConfiguration.activationFunction.toString() + ", " + improvementsConfiguration + ", " +
+                rootMeanSquaredErrors.get(0) + ", " + rootMeanSquaredErrors.get(1) + ", " + rootMeanSquaredErrors.get(2) + ", "
+                + (rootMeanSquaredErrors.get(0) + rootMeanSquaredErrors.get(1) + rootMeanSquaredErrors.get(2)) / 3);
     }
 
 
     /**
-     * Determines if the flood attenuation of a catchment area is an outlier
+     * Trains a network configuration both sequentially and with Hogwild, starting from the same random weights and biases,
+     * and prints the training throughput and the RMSE of the validation and test data of each, so that the convergence of
+     * Hogwild can be compared with sequential training
      *
-     * @param catchmentArea the catchment area to check the flood attenuation of
-     * @return true if flood attenuation is an outlier, false otherwise
+     * @param numberOfHiddenNodes      the number of hidden nodes in the network
+     * @param learningRate             the learning rate to be used during network training
+     * @param activationFunction       the activation function to be used in the network
+     * @param numberOfEpochsToTrainFor the number of epochs to train each network for
+     * @param numberOfHogwildThreads   the number of threads to train with when using Hogwild
+     * @param seed                     the seed used to generate the random starting weights and biases of both networks
      */
-    private boolean isFloodAttenuationOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getFloodAttenuation() > meanFloodAttenuation + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationFloodAttenuation) ||
-                catchmentArea.getFloodAttenuation() < meanFloodAttenuation - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationFloodAttenuation);
+    private void compareHogwildWithSequentialTraining(int numberOfHiddenNodes, double learningRate, ActivationFunctions activationFunction, int numberOfEpochsToTrainFor,
+                                                      int numberOfHogwildThreads, long seed) {
+        NeuralNetwork sequentialNetwork = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, learningRate, activationFunction, new ArrayList<Improvements>(), numberOfEpochsToTrainFor, seed);
+        sequentialNetwork.train(this.trainingData, this.validationData);
+
+        NeuralNetwork hogwildNetwork = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, numberOfHiddenNodes, learningRate, activationFunction, new ArrayList<Improvements>(Arrays.asList(Improvements.HOGWILD)), numberOfEpochsToTrainFor, seed);
+        hogwildNetwork.setHogwildThreads(numberOfHogwildThreads);
+        hogwildNetwork.train(this.trainingData, this.validationData);
+
+        double sequentialTestError = calculateTestRootMeanSquaredError(sequentialNetwork);
+        double hogwildTestError = calculateTestRootMeanSquaredError(hogwildNetwork);
+        System.out.println("\nSequential training: " + Math.round(sequentialNetwork.getSamplesPerSecond()) + " samples per second, validation RMSE of "
+                + sequentialNetwork.getValidationRootMeanSquaredError() + ", test RMSE of " + sequentialTestError +
+                "\nHogwild training with " + numberOfHogwildThreads + " threads: " + Math.round(hogwildNetwork.getSamplesPerSecond()) + " samples per second, validation RMSE of "
+                + hogwildNetwork.getValidationRootMeanSquaredError() + ", test RMSE of " + hogwildTestError +
+                "\nDifference in test RMSE: " + (hogwildTestError - sequentialTestError));
     }
 
 
     /**
-     * Determines if the flood plain extent of a catchment area is an outlier
+     * Calculates the RMSE of a trained network's destandardised predictions for the test data
      *
-     * @param catchmentArea the catchment area to check the flood plain extent of
-     * @return true if flood plain extent is an outlier, false otherwise
+     * @param network the trained network to test
+     * @return the RMSE of the test data
      */
-    private boolean isFloodPlainExtentOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getFloodPlainExtent() > meanFloodPlainExtent + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationFloodPlainExtent) ||
-                catchmentArea.getFloodPlainExtent() < meanFloodPlainExtent - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationFloodPlainExtent);
+    private double calculateTestRootMeanSquaredError(NeuralNetwork network) {
+        double squaredError = 0.0;
+        for (int testDataIndex = 0; testDataIndex < this.testData.size(); testDataIndex++) {
+            double expectedValue = destandardisedValue(this.testData.getTarget(testDataIndex, 0), this.columnMinimums[INDEX_FLOOD_COLUMN], this.columnMaximums[INDEX_FLOOD_COLUMN]);
+            double predictedValue = destandardisedValue(network.predict(this.testData, testDataIndex), this.columnMinimums[INDEX_FLOOD_COLUMN], this.columnMaximums[INDEX_FLOOD_COLUMN]);
+            squaredError = squaredError + Math.pow(expectedValue - predictedValue, 2);
+        }
+        return Math.sqrt(squaredError / this.testData.size());
     }
 
 
     /**
-     * Determines if the longest drainage path of a catchment area is an outlier
+     * Calculates the minimum and maximum values of each column, excluding the testing data set. The training and
+     * validation datasets are the first 80% of the data, so only those rows are read, in a single pass.
      *
-     * @param catchmentArea the catchment area to check the longest drainage path of
-     * @return true if longest drainage path is an outlier, false otherwise
+     * @param data all original catchment area data, excluding any missing data or non-numerical data
      */
-    private boolean isLongestDrainagePathOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getLongestDrainagePath() > meanLongestDrainagePath + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationLongestDrainagePath) ||
-                catchmentArea.getLongestDrainagePath() < meanLongestDrainagePath - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationLongestDrainagePath);
+    private void calculateMinMaxValues(List<CatchmentArea> data) {
+        int numberOfTrainingPlusValidationSamples = (int) (data.size() * 0.6) + (int) (data.size() * 0.2);
+        ColumnStatistics statistics = calculateColumnStatistics(data, numberOfTrainingPlusValidationSamples);
+        System.arraycopy(statistics.getMinimums(), 0, columnMinimums, 0, NUMBER_OF_COLUMNS);
+        System.arraycopy(statistics.getMaximums(), 0, columnMaximums, 0, NUMBER_OF_COLUMNS);
     }
 
 
     /**
-     * Determines if the proportion wet days of a catchment area is an outlier
+     * Calculates the mean and standard deviation of each column, in a single pass
      *
-     * @param catchmentArea the catchment area to check the proportion wet days of
-     * @return true if proportion wet days is an outlier, false otherwise
+     * @param allData all original catchment area data, excluding any missing data or non-numerical data
      */
-    private boolean isProportionWetDaysOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getProportionWetDays() > meanProportionWetDays + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationProportionWetDays) ||
-                catchmentArea.getProportionWetDays() < meanProportionWetDays - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationProportionWetDays);
+    private void calculateMeanAndStandardDeviationValues(List<CatchmentArea> allData) {
+        ColumnStatistics statistics = calculateColumnStatistics(allData, allData.size());
+        System.arraycopy(statistics.getMeans(), 0, columnMeans, 0, NUMBER_OF_COLUMNS);
+        System.arraycopy(statistics.getStandardDeviations(), 0, columnStandardDeviations, 0, NUMBER_OF_COLUMNS);
     }
 
 
     /**
-     * Determines if the median annual max 1 day rainfall of a catchment area is an outlier
+     * Calculates the statistics of every column of the first catchment areas of a list, in a single pass which is split
+     * into chunks processed in parallel
      *
-     * @param catchmentArea the catchment area to check the median annual max 1 day rainfall of
-     * @return true if median annual max 1 day rainfall is an outlier, false otherwise
+     * @param data            a list of catchment area
+     * @param numberOfSamples the number of catchment areas from the start of the list to calculate the statistics of
+     * @return the statistics of each column, in the order of the columns of the CSV file
      */
-    private boolean isMedianAnnualMax1DayRainfallOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getMedianAnnualMax1DayRainfall() > meanMedianAnnualMax1DayRainfall + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationMedianAnnualMax1DayRainfall) ||
-                catchmentArea.getMedianAnnualMax1DayRainfall() < meanMedianAnnualMax1DayRainfall - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationMedianAnnualMax1DayRainfall);
+    private static ColumnStatistics calculateColumnStatistics(List<CatchmentArea> data, int numberOfSamples) {
+        return ColumnStatistics.calculate(numberOfSamples, NUMBER_OF_COLUMNS, (rowNum, row) -> {
+            CatchmentArea catchmentArea = data.get(rowNum);
+            catchmentArea.copyFeatures(row, 0);
+            row[INDEX_FLOOD_COLUMN] = catchmentArea.getIndexFlood();
+        });
     }
 
 
     /**
-     * Determines if the standard annual average rainfall of a catchment area is an outlier
+     * Calculates any potential outliers in the data, and returns this as a List of catchment area
      *
-     * @param catchmentArea the catchment area to check the standard annual average rainfall of
-     * @return true if standard annual average rainfall is an outlier, false otherwise
+     * @param allData all original catchment area data, excluding any missing data or non-numerical data
+     * @return a List of catchment area, containing all potential outliers
      */
-    private boolean isStandardAnnualAverageRainfallOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getStandardAnnualAverageRainfall() > meanStandardAnnualAverageRainfall + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationStandardAnnualAverageRainfall) ||
-                catchmentArea.getStandardAnnualAverageRainfall() < meanStandardAnnualAverageRainfall - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationStandardAnnualAverageRainfall);
+    private List<CatchmentArea> calculateOutliers(List<CatchmentArea> allData) {
+        List<CatchmentArea> outliers = allData.stream()
+                .filter(this::isOutlier)
+                .collect(Collectors.toList());
+        return outliers;
     }
 
 
     /**
-     * Determines if the index flood of a catchment area is an outlier
+     * Determines if a catchment area is an outlier, which is if the value of any of its columns is more than 4 standard
+     * deviations from the mean of the column
      *
-     * @param catchmentArea the catchment area to check the index flood of
-     * @return true if index flood is an outlier, false otherwise
+     * @param catchmentArea the catchment area to check
+     * @return true if any column of the catchment area is an outlier, false otherwise
      */
-    private boolean isIndexFloodOutlier(CatchmentArea catchmentArea) {
-        return catchmentArea.getIndexFlood() > meanIndexFlood + (STANDARD_DEVIATION_MULTIPLIER * standardDeviationIndexFlood) ||
-                catchmentArea.getIndexFlood() < meanIndexFlood - (STANDARD_DEVIATION_MULTIPLIER * standardDeviationIndexFlood);
+    private boolean isOutlier(CatchmentArea catchmentArea) {
+        for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+            double value = getColumnValue(catchmentArea, columnNum);
+            if (value > columnMeans[columnNum] + (STANDARD_DEVIATION_MULTIPLIER * columnStandardDeviations[columnNum]) ||
+                    value < columnMeans[columnNum] - (STANDARD_DEVIATION_MULTIPLIER * columnStandardDeviations[columnNum])) {
+                return true;
+            }
+        }
+        return false;
     }
 
 
@@ -833,15 +1060,10 @@ public class DataProcessor {
      */
     private void calculateStandardisedValues(List<CatchmentArea> data) {
         for (CatchmentArea catchmentArea : data) {
-            catchmentArea.setArea(0.8 * ((catchmentArea.getArea() - minArea) / (maxArea - minArea)) + 0.1);
-            catchmentArea.setBaseFlowIndex(0.8 * ((catchmentArea.getBaseFlowIndex() - minBaseFlowIndex) / (maxBaseFlowIndex - minBaseFlowIndex)) + 0.1);
-            catchmentArea.setFloodAttenuation(0.8 * ((catchmentArea.getFloodAttenuation() - minFloodAttenuation) / (maxFloodAttenuation - minFloodAttenuation)) + 0.1);
-            catchmentArea.setFloodPlainExtent(0.8 * ((catchmentArea.getFloodPlainExtent() - minFloodPlainExtent) / (maxFloodPlainExtent - minFloodPlainExtent)) + 0.1);
-            catchmentArea.setLongestDrainagePath(0.8 * ((catchmentArea.getLongestDrainagePath() - minLongestDrainagePath) / (maxLongestDrainagePath - minLongestDrainagePath)) + 0.1);
-            catchmentArea.setProportionWetDays(0.8 * ((catchmentArea.getProportionWetDays() - minProportionWetDays) / (maxProportionWetDays - minProportionWetDays)) + 0.1);
-            catchmentArea.setMedianAnnualMax1DayRainfall(0.8 * ((catchmentArea.getMedianAnnualMax1DayRainfall() - minMedianAnnualMax1DayRainfall) / (maxMedianAnnualMax1DayRainfall - minMedianAnnualMax1DayRainfall)) + 0.1);
-            catchmentArea.setStandardAnnualAverageRainfall(0.8 * ((catchmentArea.getStandardAnnualAverageRainfall() - minStandardAnnualAverageRainfall) / (maxStandardAnnualAverageRainfall - minStandardAnnualAverageRainfall)) + 0.1);
-            catchmentArea.setIndexFlood(0.8 * ((catchmentArea.getIndexFlood() - minIndexFlood) / (maxIndexFlood - minIndexFlood)) + 0.1);
+            for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+                double value = getColumnValue(catchmentArea, columnNum);
+                setColumnValue(catchmentArea, columnNum, 0.8 * ((value - columnMinimums[columnNum]) / (columnMaximums[columnNum] - columnMinimums[columnNum])) + 0.1);
+            }
         }
     }
 
@@ -896,5 +1118,25 @@ public class DataProcessor {
     private static double destandardisedValue(double value, double rangeMin, double rangeMax) {
         return (((value - 0.1) / 0.8) * (rangeMax - rangeMin)) + rangeMin;
     }
-}
 
+
+    /**
+     * NetworkConfiguration represents a single network configuration to be tested when running all network
+     * configurations, along with the seeds to use for each of its runs
+     */
+    private static final class NetworkConfiguration {
+        private final int numberOfHiddenNodes;
+        private final double learningRate;
+        private final ActivationFunctions activationFunction;
+        private final List<Improvements> improvements;
+        private final long[] seeds;
+
+        private NetworkConfiguration(int numberOfHiddenNodes, double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, long[] seeds) {
+            this.numberOfHiddenNodes = numberOfHiddenNodes;
+            this.learningRate = learningRate;
+            this.activationFunction = activationFunction;
+            this.improvements = improvements;
+            this.seeds = seeds;
+        }
+    }
+}
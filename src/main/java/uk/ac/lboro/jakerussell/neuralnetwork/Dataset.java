@@ -0,0 +1,319 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * Dataset is responsible for storing the samples the network is trained and validated on, packed into contiguous
+ * row-major arrays. The features of every sample are stored in one array and the targets in another, so that the
+ * network can read a sample, or a whole mini-batch of samples, by its index without any allocation.
+ * <p>
+ * A dataset is either stored on the heap, or read directly from a memory-mapped file written by BinaryDatasetFile,
+ * in which case it is read-only.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class Dataset {
+
+    private final int numberOfSamples;
+    private final int numberOfFeatures;
+    private final int numberOfTargets;
+
+    // Row-major arrays, with one row per sample. Either the arrays are used, or the buffers if the dataset has been
+    // memory-mapped from a file, and the other pair is null.
+    private final double[] features;
+    private final double[] targets;
+    private final DoubleBuffer mappedFeatures;
+    private final DoubleBuffer mappedTargets;
+
+    /**
+     * Constructor creates a dataset with every feature and target set to 0, to be filled in with setFeature() and
+     * setTarget()
+     *
+     * @param numberOfSamples  the number of samples in the dataset
+     * @param numberOfFeatures the number of features of each sample
+     * @param numberOfTargets  the number of targets of each sample
+     */
+    public Dataset(int numberOfSamples, int numberOfFeatures, int numberOfTargets) {
+        if (numberOfSamples < 0 || numberOfFeatures < 1 || numberOfTargets < 1) {
+            throw new IllegalArgumentException("Invalid dataset shape: " + numberOfSamples + " samples, " + numberOfFeatures
+                    + " features, " + numberOfTargets + " targets");
+        }
+        if ((long) numberOfSamples * numberOfFeatures > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many samples for a single dataset: " + numberOfSamples);
+        }
+        this.numberOfSamples = numberOfSamples;
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfTargets = numberOfTargets;
+        this.features = new double[numberOfSamples * numberOfFeatures];
+        this.targets = new double[numberOfSamples * numberOfTargets];
+        this.mappedFeatures = null;
+        this.mappedTargets = null;
+    }
+
+
+    /**
+     * Constructor creates a read-only dataset which reads its features and targets directly from a pair of buffers, such
+     * as those memory-mapped from a file, without copying them
+     *
+     * @param numberOfSamples  the number of samples in the dataset
+     * @param numberOfFeatures the number of features of each sample
+     * @param numberOfTargets  the number of targets of each sample
+     * @param features         a buffer of the row-major features, with one row per sample
+     * @param targets          a buffer of the row-major targets, with one row per sample
+     */
+    Dataset(int numberOfSamples, int numberOfFeatures, int numberOfTargets, DoubleBuffer features, DoubleBuffer targets) {
+        if (features.capacity() != (long) numberOfSamples * numberOfFeatures || targets.capacity() != (long) numberOfSamples * numberOfTargets) {
+            throw new IllegalArgumentException("Buffer sizes do not match a dataset of " + numberOfSamples + " samples");
+        }
+        this.numberOfSamples = numberOfSamples;
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfTargets = numberOfTargets;
+        this.features = null;
+        this.targets = null;
+        this.mappedFeatures = features;
+        this.mappedTargets = targets;
+    }
+
+
+    /**
+     * Creates a dataset from a list of catchment area, copying the features and the first few targets of each
+     *
+     * @param catchmentAreas  a list of catchment area to copy into the dataset
+     * @param numberOfTargets the number of targets to copy from each catchment area, starting with the index flood
+     * @return a new dataset containing the catchment areas in the same order
+     * @throws IllegalArgumentException if a catchment area has fewer targets than requested
+     */
+    public static Dataset fromCatchmentAreas(List<CatchmentArea> catchmentAreas, int numberOfTargets) {
+        Dataset dataset = new Dataset(catchmentAreas.size(), CatchmentArea.NUMBER_OF_FEATURES, numberOfTargets);
+        for (int sampleNum = 0; sampleNum < catchmentAreas.size(); sampleNum++) {
+            CatchmentArea catchmentArea = catchmentAreas.get(sampleNum);
+            if (catchmentArea.getNumberOfTargets() < numberOfTargets) {
+                throw new IllegalArgumentException("Expected " + numberOfTargets + " targets, but a catchment area only has "
+                        + catchmentArea.getNumberOfTargets() + " targets");
+            }
+
+            catchmentArea.copyFeatures(dataset.features, sampleNum * CatchmentArea.NUMBER_OF_FEATURES);
+
+            for (int targetNum = 0; targetNum < numberOfTargets; targetNum++) {
+                dataset.targets[sampleNum * numberOfTargets + targetNum] = catchmentArea.getTarget(targetNum);
+            }
+        }
+        return dataset;
+    }
+
+
+    /**
+     * Returns the number of samples in the dataset
+     *
+     * @return the number of samples in the dataset
+     */
+    public int size() {
+        return numberOfSamples;
+    }
+
+
+    /**
+     * Returns the number of features of each sample
+     *
+     * @return the number of features of each sample
+     */
+    public int getNumberOfFeatures() {
+        return numberOfFeatures;
+    }
+
+
+    /**
+     * Returns the number of targets of each sample
+     *
+     * @return the number of targets of each sample
+     */
+    public int getNumberOfTargets() {
+        return numberOfTargets;
+    }
+
+
+    /**
+     * Returns whether the dataset reads its features and targets directly from a memory-mapped file
+     *
+     * @return true if the dataset is memory-mapped, and therefore read-only
+     */
+    public boolean isMapped() {
+        return features == null;
+    }
+
+
+    /**
+     * Returns a feature of a sample
+     *
+     * @param sampleNum  the index of the sample
+     * @param featureNum the number of the feature
+     * @return the value of the feature
+     */
+    public double getFeature(int sampleNum, int featureNum) {
+        if (features == null) {
+            return mappedFeatures.get(sampleNum * numberOfFeatures + featureNum);
+        }
+        return features[sampleNum * numberOfFeatures + featureNum];
+    }
+
+
+    /**
+     * Sets a feature of a sample
+     *
+     * @param sampleNum  the index of the sample
+     * @param featureNum the number of the feature
+     * @param value      the new value of the feature
+     * @throws java.nio.ReadOnlyBufferException if the dataset is memory-mapped
+     */
+    public void setFeature(int sampleNum, int featureNum, double value) {
+        if (features == null) {
+            mappedFeatures.put(sampleNum * numberOfFeatures + featureNum, value);
+        } else {
+            features[sampleNum * numberOfFeatures + featureNum] = value;
+        }
+    }
+
+
+    /**
+     * Returns a target of a sample, where target 0 is the index flood
+     *
+     * @param sampleNum the index of the sample
+     * @param targetNum the number of the target
+     * @return the value of the target
+     */
+    public double getTarget(int sampleNum, int targetNum) {
+        if (targets == null) {
+            return mappedTargets.get(sampleNum * numberOfTargets + targetNum);
+        }
+        return targets[sampleNum * numberOfTargets + targetNum];
+    }
+
+
+    /**
+     * Sets a target of a sample, where target 0 is the index flood
+     *
+     * @param sampleNum the index of the sample
+     * @param targetNum the number of the target
+     * @param value     the new value of the target
+     * @throws java.nio.ReadOnlyBufferException if the dataset is memory-mapped
+     */
+    public void setTarget(int sampleNum, int targetNum, double value) {
+        if (targets == null) {
+            mappedTargets.put(sampleNum * numberOfTargets + targetNum, value);
+        } else {
+            targets[sampleNum * numberOfTargets + targetNum] = value;
+        }
+    }
+
+
+    /**
+     * Returns a dataset of a run of consecutive samples of this dataset. A memory-mapped dataset is not copied, and the
+     * new dataset reads from the same file, whereas the samples of a dataset on the heap are copied.
+     *
+     * @param firstSampleNum  the index of the first sample
+     * @param numberOfSamples the number of samples
+     * @return a new dataset containing the samples in the same order
+     */
+    public Dataset subset(int firstSampleNum, int numberOfSamples) {
+        if (firstSampleNum < 0 || numberOfSamples < 0 || firstSampleNum + numberOfSamples > this.numberOfSamples) {
+            throw new IndexOutOfBoundsException("Samples " + firstSampleNum + " to " + (firstSampleNum + numberOfSamples)
+                    + " are not within a dataset of " + this.numberOfSamples + " samples");
+        }
+
+        if (features == null) {
+            return new Dataset(numberOfSamples, numberOfFeatures, numberOfTargets,
+                    slice(mappedFeatures, firstSampleNum * numberOfFeatures, numberOfSamples * numberOfFeatures),
+                    slice(mappedTargets, firstSampleNum * numberOfTargets, numberOfSamples * numberOfTargets));
+        }
+
+        Dataset subset = new Dataset(numberOfSamples, numberOfFeatures, numberOfTargets);
+        copyFeatures(firstSampleNum, numberOfSamples, subset.features, 0);
+        copyTargets(firstSampleNum, numberOfSamples, numberOfTargets, subset.targets, 0);
+        return subset;
+    }
+
+
+    /**
+     * Copies the features of a run of consecutive samples into a row-major array, with one row per sample
+     *
+     * @param firstSampleNum  the index of the first sample to copy
+     * @param numberOfSamples the number of samples to copy
+     * @param values          the array to copy the features into
+     * @param offset          the index in the array of the first feature
+     */
+    void copyFeatures(int firstSampleNum, int numberOfSamples, double[] values, int offset) {
+        if (features == null) {
+            copyFromBuffer(mappedFeatures, firstSampleNum * numberOfFeatures, values, offset, numberOfSamples * numberOfFeatures);
+        } else {
+            System.arraycopy(features, firstSampleNum * numberOfFeatures, values, offset, numberOfSamples * numberOfFeatures);
+        }
+    }
+
+
+    /**
+     * Copies the first few targets of a run of consecutive samples into a row-major array, with one row per sample
+     *
+     * @param firstSampleNum   the index of the first sample to copy
+     * @param numberOfSamples  the number of samples to copy
+     * @param numberOfValues   the number of targets to copy from each sample, which is the width of each row of the array
+     * @param values           the array to copy the targets into
+     * @param offset           the index in the array of the first target
+     */
+    void copyTargets(int firstSampleNum, int numberOfSamples, int numberOfValues, double[] values, int offset) {
+        // If every target is wanted, the rows are already laid out the same way and can be copied in one go
+        if (numberOfValues == numberOfTargets) {
+            if (targets == null) {
+                copyFromBuffer(mappedTargets, firstSampleNum * numberOfTargets, values, offset, numberOfSamples * numberOfTargets);
+            } else {
+                System.arraycopy(targets, firstSampleNum * numberOfTargets, values, offset, numberOfSamples * numberOfTargets);
+            }
+            return;
+        }
+
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int rowStart = (firstSampleNum + sampleNum) * numberOfTargets;
+            int rowOffset = offset + sampleNum * numberOfValues;
+            if (targets == null) {
+                copyFromBuffer(mappedTargets, rowStart, values, rowOffset, numberOfValues);
+            } else {
+                System.arraycopy(targets, rowStart, values, rowOffset, numberOfValues);
+            }
+        }
+    }
+
+
+    /**
+     * Copies values from a buffer into an array using absolute reads, so that the buffer's position is never changed and
+     * the buffer can be read by several threads at once
+     *
+     * @param buffer   the buffer to copy the values from
+     * @param start    the index in the buffer of the first value
+     * @param values   the array to copy the values into
+     * @param offset   the index in the array of the first value
+     * @param length   the number of values to copy
+     */
+    private static void copyFromBuffer(DoubleBuffer buffer, int start, double[] values, int offset, int length) {
+        for (int valueNum = 0; valueNum < length; valueNum++) {
+            values[offset + valueNum] = buffer.get(start + valueNum);
+        }
+    }
+
+
+    /**
+     * Returns a view of part of a buffer, sharing the same memory
+     *
+     * @param buffer the buffer to take a view of
+     * @param start  the index in the buffer of the first value of the view
+     * @param length the number of values in the view
+     * @return a new buffer sharing the values of the given part of the buffer
+     */
+    private static DoubleBuffer slice(DoubleBuffer buffer, int start, int length) {
+        DoubleBuffer duplicate = buffer.duplicate();
+        duplicate.position(start);
+        duplicate.limit(start + length);
+        return duplicate.slice();
+    }
+}
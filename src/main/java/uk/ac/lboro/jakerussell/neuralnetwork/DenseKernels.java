@@ -0,0 +1,125 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * DenseKernels provides the low level operations used by the network for its dense layers, so that they can be
+ * implemented either with plain scalar loops or with SIMD instructions.
+ * <p>
+ * All weights are expected to be stored in flat row-major arrays, with one row of weights per node, so that the weights
+ * feeding into a single node are contiguous.
+ * <p>
+ * The implementation used is chosen once per JVM with the neuralnetwork.kernels system property. The default, scalar,
+ * produces exactly the same results as the original network. Setting it to vector selects an implementation built on
+ * the incubating Vector API, which requires Java 17 or later and the JVM option --add-modules jdk.incubator.vector. If
+ * the vector implementation cannot be loaded, the scalar implementation is used instead.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+interface DenseKernels {
+
+    /**
+     * The system property used to choose the kernel implementation
+     */
+    String KERNELS_PROPERTY = "neuralnetwork.kernels";
+
+    /**
+     * The name of the class implementing the vector kernels, which is only compiled when building with Java 17 or later
+     */
+    String VECTOR_KERNELS_CLASS = "uk.ac.lboro.jakerussell.neuralnetwork.VectorDenseKernels";
+
+
+    /**
+     * Calculates the weighted sums of every node in a layer for a whole batch of samples at once, which is the product of
+     * the batch's inputs and the transpose of the layer's weights, plus each node's bias
+     *
+     * @param weights         the layer's row-major weights, with one row per node
+     * @param biases          the bias of each node
+     * @param inputs          the row-major inputs to the layer, with one row per sample
+     * @param weightedSums    the array to write the row-major weighted sums into, with one row per sample
+     * @param numberOfSamples the number of samples in the batch
+     * @param numberOfNodes   the number of nodes in the layer
+     * @param numberOfInputs  the number of inputs to the layer
+     */
+    void batchWeightedSums(double[] weights, double[] biases, double[] inputs, double[] weightedSums, int numberOfSamples, int numberOfNodes, int numberOfInputs);
+
+
+    /**
+     * Applies an activation function in place to a range of weighted sums
+     *
+     * @param activationFunction the activation function to apply
+     * @param values             the weighted sums, which are replaced with their activated values
+     * @param offset             the index of the first value to activate
+     * @param length             the number of values to activate
+     */
+    void activate(ActivationFunctions activationFunction, double[] values, int offset, int length);
+
+
+    /**
+     * Calculates the first derivative of an activation function for a range of activated values
+     *
+     * @param activationFunction the activation function to calculate the first derivative of
+     * @param values             the outputs of the activation function
+     * @param firstDerivatives   the array to write the first derivatives into, at the same indexes as their values
+     * @param offset             the index of the first value
+     * @param length             the number of values
+     */
+    void firstDerivative(ActivationFunctions activationFunction, double[] values, double[] firstDerivatives, int offset, int length);
+
+
+    /**
+     * Updates every weight in a layer by the outer product of the layer's deltas and its inputs, scaled by the learning
+     * rate, writing the new weights into a separate array. If a momentum term is given, the change to each weight is
+     * increased by that proportion of itself. The original network scaled each delta of its output layer by the learning
+     * rate before multiplying it by the input, but multiplied each delta of its hidden layer by the input first, so the
+     * order is kept for each kind of layer to give exactly the same results.
+     *
+     * @param weights        the layer's current row-major weights, with one row per node
+     * @param updatedWeights the array to write the updated weights into
+     * @param deltas         the delta of each node
+     * @param inputs         the inputs to the layer
+     * @param numberOfNodes  the number of nodes in the layer
+     * @param numberOfInputs the number of inputs to the layer
+     * @param learningRate   the learning rate to scale each weight change by
+     * @param useMomentum    true if momentum should be applied to each weight change
+     * @param momentumTerm   the proportion of each weight change to add again when using momentum
+     * @param outputLayer    true if the layer is the output layer, whose weight changes are (learningRate * delta) * input
+     *                       rather than learningRate * (delta * input)
+     */
+    void updateWeights(double[] weights, double[] updatedWeights, double[] deltas, double[] inputs, int numberOfNodes, int numberOfInputs,
+                       double learningRate, boolean useMomentum, double momentumTerm, boolean outputLayer);
+
+
+    /**
+     * Adds the weight changes of a whole batch of samples to a running sum of weight changes, which is the product of the
+     * transpose of the batch's deltas and the batch's inputs. The changes are added sample by sample, in the order of the
+     * samples in the batch.
+     *
+     * @param deltas           the row-major deltas of the layer's nodes, with one row per sample
+     * @param inputs           the row-major inputs to the layer, with one row per sample
+     * @param weightChangeSums the row-major running sums of the weight changes, with one row per node
+     * @param numberOfSamples  the number of samples in the batch
+     * @param numberOfNodes    the number of nodes in the layer
+     * @param numberOfInputs   the number of inputs to the layer
+     */
+    void accumulateWeightChanges(double[] deltas, double[] inputs, double[] weightChangeSums, int numberOfSamples, int numberOfNodes, int numberOfInputs);
+
+
+    /**
+     * Returns the kernel implementation chosen with the neuralnetwork.kernels system property
+     *
+     * @return the vector kernels if they were requested and can be used, otherwise the scalar kernels
+     */
+    static DenseKernels fromSystemProperty() {
+        if ("vector".equalsIgnoreCase(System.getProperty(KERNELS_PROPERTY))) {
+            try {
+                return (DenseKernels) Class.forName(VECTOR_KERNELS_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Thrown if the vector kernels were not compiled, the JVM is older than Java 17, or the Vector API
+                // module has not been added
+                System.out.println("Vector kernels unavailable, using scalar kernels: " + e);
+            }
+        }
+        return new ScalarDenseKernels();
+    }
+}
@@ -0,0 +1,469 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.SplittableRandom;
+
+/**
+ * DenseLayer is a single fully connected layer of a NeuralNetwork, where every node is connected to every input to the
+ * layer. It holds the layer's weights and biases, and performs the forwards pass, the backwards pass and the weight
+ * updates for the layer.
+ * <p>
+ * The weights are stored in a flat row-major array, with one row per node, so that the weights feeding into a single
+ * node are contiguous in memory, i.e. weights[nodeNum * numberOfInputs + inputNum]. The weights and biases are each
+ * double-buffered with their "previous" counterparts. An update writes the new values into the previous buffer and then
+ * swaps the two, so that the values before the most recent update are always available for Bold Driver to roll back to.
+ * <p>
+ * The values of the nodes are passed in as flat row-major arrays with one row per sample, so that the same methods can
+ * be used for a single catchment area or a whole mini-batch. Each layer also has its own preallocated arrays for the
+ * values of its nodes for a single catchment area, which are used when training without Batch Processing and when
+ * predicting.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class DenseLayer {
+
+    // The dense layer operations are chosen once per JVM, see DenseKernels for how to select the vector implementation
+    private static final DenseKernels KERNELS = DenseKernels.fromSystemProperty();
+
+    private final int numberOfInputs;
+    private final int numberOfNodes;
+    private final ActivationFunctions activationFunction;
+    private final boolean outputLayer;
+
+    private double[] weights;
+    private double[] previousWeights;
+    private double[] biases;
+    private double[] previousBiases;
+
+    private final double[] outputs;
+    private final double[] deltas;
+
+    // Used in the case of Batch Processing. The weight and bias changes of a mini-batch are added to running sums as the
+    // batch is processed, rather than being stored for every sample, so they only need as much memory as the weights.
+    private double[] weightChangeSums;
+    private double[] biasChangeSums;
+
+    /**
+     * Constructor creates a layer with random starting weights and biases
+     *
+     * @param numberOfInputs     the number of inputs to the layer, which is the number of nodes in the previous layer
+     * @param numberOfNodes      the number of nodes in the layer
+     * @param activationFunction the activation function to be used by every node in the layer
+     * @param random             the random number generator used to generate the starting weights and biases
+     * @param outputLayer        true if the layer is the network's output layer, whose weight changes are calculated in
+     *                           the same order as the original network calculated them
+     */
+    DenseLayer(int numberOfInputs, int numberOfNodes, ActivationFunctions activationFunction, SplittableRandom random, boolean outputLayer) {
+        this.numberOfInputs = numberOfInputs;
+        this.numberOfNodes = numberOfNodes;
+        this.activationFunction = activationFunction;
+        this.outputLayer = outputLayer;
+
+        // The weights are generated input by input, followed by the biases, so that the same random sequence produces the
+        // same starting network regardless of the storage layout
+        this.weights = new double[numberOfNodes * numberOfInputs];
+        for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                this.weights[nodeNum * numberOfInputs + inputNum] = randomNumber(random, numberOfInputs);
+            }
+        }
+        this.biases = new double[numberOfNodes];
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            this.biases[nodeNum] = randomNumber(random, numberOfInputs);
+        }
+
+        this.previousWeights = new double[numberOfNodes * numberOfInputs];
+        this.previousBiases = new double[numberOfNodes];
+        this.outputs = new double[numberOfNodes];
+        this.deltas = new double[numberOfNodes];
+    }
+
+
+    /**
+     * Returns the number of inputs to the layer
+     *
+     * @return the number of inputs to the layer
+     */
+    int getNumberOfInputs() {
+        return numberOfInputs;
+    }
+
+
+    /**
+     * Returns the number of nodes in the layer
+     *
+     * @return the number of nodes in the layer
+     */
+    int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+
+    /**
+     * Returns a copy of the layer's current weights
+     *
+     * @return a new row-major array of the layer's weights, with one row per node
+     */
+    double[] copyWeights() {
+        return weights.clone();
+    }
+
+
+    /**
+     * Returns a copy of the layer's current biases
+     *
+     * @return a new array of the biases of the layer's nodes
+     */
+    double[] copyBiases() {
+        return biases.clone();
+    }
+
+
+    /**
+     * Returns a copy of the layer's weights before the most recent update
+     *
+     * @return a new row-major array of the layer's previous weights, with one row per node
+     */
+    double[] copyPreviousWeights() {
+        return previousWeights.clone();
+    }
+
+
+    /**
+     * Returns a copy of the layer's biases before the most recent update
+     *
+     * @return a new array of the previous biases of the layer's nodes
+     */
+    double[] copyPreviousBiases() {
+        return previousBiases.clone();
+    }
+
+
+    /**
+     * Replaces the layer's current and previous weights and biases, such as with those saved in a checkpoint
+     *
+     * @param weights         the row-major weights of the layer, with one row per node
+     * @param previousWeights the row-major weights of the layer before the most recent update
+     * @param biases          the biases of the layer's nodes
+     * @param previousBiases  the biases of the layer's nodes before the most recent update
+     * @throws IllegalArgumentException if any of the arrays is the wrong length for the layer
+     */
+    void restoreWeightsAndBiases(double[] weights, double[] previousWeights, double[] biases, double[] previousBiases) {
+        if (weights.length != this.weights.length || previousWeights.length != this.weights.length
+                || biases.length != numberOfNodes || previousBiases.length != numberOfNodes) {
+            throw new IllegalArgumentException("Expected " + this.weights.length + " weights and " + numberOfNodes + " biases for the layer");
+        }
+        System.arraycopy(weights, 0, this.weights, 0, weights.length);
+        System.arraycopy(previousWeights, 0, this.previousWeights, 0, previousWeights.length);
+        System.arraycopy(biases, 0, this.biases, 0, biases.length);
+        System.arraycopy(previousBiases, 0, this.previousBiases, 0, previousBiases.length);
+    }
+
+
+    /**
+     * Copies the layer's current weights and biases into arrays allocated by the caller, such as to keep the best weights
+     * found so far without allocating
+     *
+     * @param weights the array to copy the row-major weights of the layer into
+     * @param biases  the array to copy the biases of the layer's nodes into
+     */
+    void copyWeightsAndBiasesInto(double[] weights, double[] biases) {
+        System.arraycopy(this.weights, 0, weights, 0, this.weights.length);
+        System.arraycopy(this.biases, 0, biases, 0, this.biases.length);
+    }
+
+
+    /**
+     * Replaces the layer's current weights and biases, such as with the best weights found so far, leaving the previous
+     * weights and biases as they are
+     *
+     * @param weights the row-major weights of the layer, with one row per node
+     * @param biases  the biases of the layer's nodes
+     * @throws IllegalArgumentException if either of the arrays is the wrong length for the layer
+     */
+    void restoreWeightsAndBiases(double[] weights, double[] biases) {
+        if (weights.length != this.weights.length || biases.length != numberOfNodes) {
+            throw new IllegalArgumentException("Expected " + this.weights.length + " weights and " + numberOfNodes + " biases for the layer");
+        }
+        System.arraycopy(weights, 0, this.weights, 0, weights.length);
+        System.arraycopy(biases, 0, this.biases, 0, biases.length);
+    }
+
+
+    /**
+     * Returns the layer's array for the values of its nodes for a single catchment area
+     *
+     * @return the outputs of the layer's nodes
+     */
+    double[] getOutputs() {
+        return outputs;
+    }
+
+
+    /**
+     * Returns the layer's array for the delta values of its nodes for a single catchment area
+     *
+     * @return the deltas of the layer's nodes
+     */
+    double[] getDeltas() {
+        return deltas;
+    }
+
+
+    /**
+     * Calculates the output values of the layer's nodes for a number of samples, by applying the activation function to
+     * the weighted sum of each node's inputs
+     *
+     * @param inputs          the row-major inputs to the layer, with one row per sample
+     * @param outputs         the array to write the row-major outputs of the layer into, with one row per sample
+     * @param numberOfSamples the number of samples
+     */
+    void calculateOutputs(double[] inputs, double[] outputs, int numberOfSamples) {
+        calculateOutputs(weights, biases, activationFunction, inputs, outputs, numberOfSamples, numberOfNodes, numberOfInputs);
+    }
+
+
+    /**
+     * Calculates the output values of a layer's nodes for a number of samples, given the layer's weights and biases, so
+     * that a layer which has been copied out of a network, such as in an InferenceModel, gives exactly the same outputs
+     *
+     * @param weights            the row-major weights of the layer, with one row per node
+     * @param biases             the biases of the layer's nodes
+     * @param activationFunction the activation function used by every node in the layer
+     * @param inputs             the row-major inputs to the layer, with one row per sample
+     * @param outputs            the array to write the row-major outputs of the layer into, with one row per sample
+     * @param numberOfSamples    the number of samples
+     * @param numberOfNodes      the number of nodes in the layer
+     * @param numberOfInputs     the number of inputs to the layer
+     */
+    static void calculateOutputs(double[] weights, double[] biases, ActivationFunctions activationFunction, double[] inputs, double[] outputs,
+                                 int numberOfSamples, int numberOfNodes, int numberOfInputs) {
+        KERNELS.batchWeightedSums(weights, biases, inputs, outputs, numberOfSamples, numberOfNodes, numberOfInputs);
+        KERNELS.activate(activationFunction, outputs, 0, numberOfSamples * numberOfNodes);
+    }
+
+
+    /**
+     * Calculates the Delta values of the layer's nodes for a number of samples, where the layer is the output layer
+     *
+     * @param outputs         the row-major outputs of the layer, with one row per sample
+     * @param expectedValues  the row-major values expected to be produced by the layer, with one row per sample
+     * @param deltas          the array to write the row-major deltas of the layer into, with one row per sample
+     * @param numberOfSamples the number of samples
+     */
+    void calculateOutputLayerDeltas(double[] outputs, double[] expectedValues, double[] deltas, int numberOfSamples) {
+        // Calculate the first derivative of every output at once, storing them in the deltas array
+        KERNELS.firstDerivative(activationFunction, outputs, deltas, 0, numberOfSamples * numberOfNodes);
+
+        for (int valueNum = 0; valueNum < numberOfSamples * numberOfNodes; valueNum++) {
+            double error = expectedValues[valueNum] - outputs[valueNum];
+            deltas[valueNum] = error * deltas[valueNum];
+        }
+    }
+
+
+    /**
+     * Calculates the Delta values of the layer's nodes for a number of samples, where the layer is a hidden layer, by
+     * propagating the deltas of the next layer back through the next layer's weights
+     *
+     * @param outputs         the row-major outputs of the layer, with one row per sample
+     * @param deltas          the array to write the row-major deltas of the layer into, with one row per sample
+     * @param nextLayer       the layer which takes the outputs of this layer as its inputs
+     * @param nextDeltas      the row-major deltas of the next layer, with one row per sample
+     * @param numberOfSamples the number of samples
+     */
+    void calculateHiddenLayerDeltas(double[] outputs, double[] deltas, DenseLayer nextLayer, double[] nextDeltas, int numberOfSamples) {
+        // Calculate the first derivative for every node at once, storing them in the deltas array
+        KERNELS.firstDerivative(activationFunction, outputs, deltas, 0, numberOfSamples * numberOfNodes);
+
+        double[] nextWeights = nextLayer.weights;
+        int numberOfNextNodes = nextLayer.numberOfNodes;
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int rowOffset = sampleNum * numberOfNodes;
+            int nextRowOffset = sampleNum * numberOfNextNodes;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                double weightedDeltaSum = 0.0;
+                for (int nextNodeNum = 0; nextNodeNum < numberOfNextNodes; nextNodeNum++) {
+                    weightedDeltaSum = weightedDeltaSum + (nextWeights[nextNodeNum * numberOfNodes + nodeNum] * nextDeltas[nextRowOffset + nextNodeNum]);
+                }
+                double firstDerivative = deltas[rowOffset + nodeNum];
+                deltas[rowOffset + nodeNum] = weightedDeltaSum * firstDerivative;
+            }
+        }
+    }
+
+
+    /**
+     * Updates the layer's weights and biases for a single catchment area. The new values are written into the previous
+     * buffers, and the buffers are then swapped.
+     *
+     * @param inputs       the inputs to the layer for the catchment area
+     * @param deltas       the deltas of the layer's nodes for the catchment area
+     * @param learningRate the learning rate to scale each change by
+     * @param useMomentum  true if momentum should be applied to each change
+     * @param momentumTerm the proportion of each change to add again when using momentum
+     */
+    void updateWeightsAndBiases(double[] inputs, double[] deltas, double learningRate, boolean useMomentum, double momentumTerm) {
+        KERNELS.updateWeights(weights, previousWeights, deltas, inputs, numberOfNodes, numberOfInputs, learningRate, useMomentum, momentumTerm, outputLayer);
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            previousBiases[nodeNum] = updatedValue(biases[nodeNum], learningRate * deltas[nodeNum] * 1, useMomentum, momentumTerm);
+        }
+        swapWeightsAndBiases();
+    }
+
+
+    /**
+     * Updates the layer's weights and biases for a single catchment area in place, without keeping the previous values -
+     * used in the case of Hogwild, where several threads update the same weights and biases without any locking
+     *
+     * @param inputs       the inputs to the layer for the catchment area
+     * @param deltas       the deltas of the layer's nodes for the catchment area
+     * @param learningRate the learning rate to scale each change by
+     * @param useMomentum  true if momentum should be applied to each change
+     * @param momentumTerm the proportion of each change to add again when using momentum
+     */
+    void updateWeightsAndBiasesInPlace(double[] inputs, double[] deltas, double learningRate, boolean useMomentum, double momentumTerm) {
+        double[] weights = this.weights;
+        double[] biases = this.biases;
+        KERNELS.updateWeights(weights, weights, deltas, inputs, numberOfNodes, numberOfInputs, learningRate, useMomentum, momentumTerm, outputLayer);
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            biases[nodeNum] = updatedValue(biases[nodeNum], learningRate * deltas[nodeNum] * 1, useMomentum, momentumTerm);
+        }
+    }
+
+
+    /**
+     * Allocates the running sums of the weight and bias changes - used in the case of Batch Processing
+     */
+    void allocateWeightChangeSums() {
+        this.weightChangeSums = new double[numberOfNodes * numberOfInputs];
+        this.biasChangeSums = new double[numberOfNodes];
+    }
+
+
+    /**
+     * Adds what the weight and bias changes would be for a number of samples to a set of running sums - used in the case
+     * of Batch Processing
+     *
+     * @param inputs           the row-major inputs to the layer, with one row per sample
+     * @param deltas           the row-major deltas of the layer, with one row per sample
+     * @param weightChangeSums the row-major running sums of the weight changes, with one row per node
+     * @param biasChangeSums   the running sums of the bias changes
+     * @param numberOfSamples  the number of samples
+     */
+    void accumulateWeightChanges(double[] inputs, double[] deltas, double[] weightChangeSums, double[] biasChangeSums, int numberOfSamples) {
+        KERNELS.accumulateWeightChanges(deltas, inputs, weightChangeSums, numberOfSamples, numberOfNodes, numberOfInputs);
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int rowOffset = sampleNum * numberOfNodes;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                biasChangeSums[nodeNum] = biasChangeSums[nodeNum] + (deltas[rowOffset + nodeNum] * 1);
+            }
+        }
+    }
+
+
+    /**
+     * Adds a set of running sums of the weight and bias changes to the layer's sums for the mini-batch, and then resets
+     * them - used in the case of Batch Processing
+     *
+     * @param weightChangeSums the row-major sums of the weight changes to add, with one row per node
+     * @param biasChangeSums   the sums of the bias changes to add
+     */
+    void addWeightChanges(double[] weightChangeSums, double[] biasChangeSums) {
+        for (int weightNum = 0; weightNum < weightChangeSums.length; weightNum++) {
+            this.weightChangeSums[weightNum] = this.weightChangeSums[weightNum] + weightChangeSums[weightNum];
+            weightChangeSums[weightNum] = 0;
+        }
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            this.biasChangeSums[nodeNum] = this.biasChangeSums[nodeNum] + biasChangeSums[nodeNum];
+            biasChangeSums[nodeNum] = 0;
+        }
+    }
+
+
+    /**
+     * Updates the layer's weights and biases with the average change over a mini-batch, and then resets the layer's sums
+     * of the weight and bias changes - used in the case of Batch Processing. The new values are written into the previous
+     * buffers, and the buffers are then swapped.
+     *
+     * @param batchSize    the number of samples in the mini-batch
+     * @param learningRate the learning rate to scale each change by
+     * @param useMomentum  true if momentum should be applied to each change
+     * @param momentumTerm the proportion of each change to add again when using momentum
+     */
+    void updateWeightsAndBiasesFromBatch(int batchSize, double learningRate, boolean useMomentum, double momentumTerm) {
+        for (int weightNum = 0; weightNum < weights.length; weightNum++) {
+            double averageWeightChange = weightChangeSums[weightNum] / batchSize;
+            weightChangeSums[weightNum] = 0;
+            previousWeights[weightNum] = updatedValue(weights[weightNum], learningRate * averageWeightChange, useMomentum, momentumTerm);
+        }
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            double averageBiasChange = biasChangeSums[nodeNum] / batchSize;
+            biasChangeSums[nodeNum] = 0;
+            previousBiases[nodeNum] = updatedValue(biases[nodeNum], learningRate * averageBiasChange, useMomentum, momentumTerm);
+        }
+        swapWeightsAndBiases();
+    }
+
+
+    /**
+     * Copies the current weights and biases into the previous buffers, so that changes made in place can be undone - used
+     * in the case of Hogwild
+     */
+    void copyWeightsAndBiasesToPrevious() {
+        System.arraycopy(weights, 0, previousWeights, 0, weights.length);
+        System.arraycopy(biases, 0, previousBiases, 0, biases.length);
+    }
+
+
+    /**
+     * Swaps the current weights and biases with the previous ones. After an update this makes the new values current, and
+     * calling it again undoes the update - used in the case of Bold Driver.
+     */
+    void swapWeightsAndBiases() {
+        double[] swappedWeights = this.weights;
+        this.weights = this.previousWeights;
+        this.previousWeights = swappedWeights;
+
+        double[] swappedBiases = this.biases;
+        this.biases = this.previousBiases;
+        this.previousBiases = swappedBiases;
+    }
+
+
+    /**
+     * Calculates the new value of a weight or bias after a change, applying momentum if it is to be used
+     *
+     * @param value        the current value of the weight or bias
+     * @param change       the change to the weight or bias, already scaled by the learning rate
+     * @param useMomentum  true if momentum should be applied to the change
+     * @param momentumTerm the proportion of the change to add again when using momentum
+     * @return the new value of the weight or bias
+     */
+    private static double updatedValue(double value, double change, boolean useMomentum, double momentumTerm) {
+        double newValue = value + change;
+
+        // If Momentum is to be used, calculate the new value with momentum, and add this to the value
+        if (useMomentum) {
+            double valueDifference = newValue - value;
+            newValue = newValue + (momentumTerm * valueDifference);
+        }
+        return newValue;
+    }
+
+
+    /**
+     * Generates a random number, to be used as a starting weight or bias. The range is based on the number of inputs to
+     * the layer, between -2/n and 2/n.
+     *
+     * @param random the random number generator to use
+     * @param extent the number of inputs to the layer
+     * @return a random number between -2/extent and 2/extent
+     */
+    private static double randomNumber(SplittableRandom random, double extent) {
+        double min = -2 / extent;
+        double max = 2 / extent;
+        return min + (max - min) * random.nextDouble();
+    }
+}
@@ -0,0 +1,258 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * EarlyStoppingMonitor is responsible for tracking the validation results of a single training run against an
+ * EarlyStoppingPolicy, and deciding when training is to stop.
+ * <p>
+ * The monitor keeps the best validation RMSE so far, the validation RMSE of the most recent improvement of at least the
+ * minimum delta, the number of validations since that improvement, and the best validation RMSE after each of the most
+ * recent validations, in a ring buffer, to detect a plateau. If the best weights are to be restored, it also keeps a
+ * copy of the weights and biases of every layer at the best validation RMSE so far. The arrays for the copy are allocated
+ * once, and each new best is copied into them, so that the copy is never affected by further training and validating
+ * allocates nothing.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class EarlyStoppingMonitor {
+
+    private final EarlyStoppingPolicy policy;
+    private final DenseLayer[] layers;
+
+    private double bestRootMeanSquaredError = Double.MAX_VALUE;
+
+    // Only moves when the validation RMSE falls by at least the minimum delta, so that many small falls which each fall
+    // short of the minimum delta still add up to an improvement
+    private double improvedRootMeanSquaredError = Double.MAX_VALUE;
+    private int validationsWithoutImprovement;
+
+    // The best validation RMSE after each of the most recent validations, oldest first from bestHistoryStart, with one
+    // more value than the plateau window so that the improvement over the whole window can be measured
+    private final double[] bestHistory;
+    private int bestHistoryStart;
+    private int bestHistoryLength;
+
+    // The weights and biases of each layer at the best validation RMSE so far - used if the best weights are restored
+    private final double[][] bestWeights;
+    private final double[][] bestBiases;
+    private boolean bestWeightsAvailable;
+
+    /**
+     * Constructor creates a monitor for a training run of the network with the given layers
+     *
+     * @param policy the policy to follow
+     * @param layers the layers of the network, ending with the output layer
+     */
+    EarlyStoppingMonitor(EarlyStoppingPolicy policy, DenseLayer[] layers) {
+        this.policy = policy;
+        this.layers = layers;
+        this.bestHistory = new double[policy.getPlateauWindow() + 1];
+        if (policy.isRestoreBestWeights()) {
+            this.bestWeights = new double[layers.length][];
+            this.bestBiases = new double[layers.length][];
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                this.bestWeights[layerNum] = new double[layers[layerNum].getNumberOfNodes() * layers[layerNum].getNumberOfInputs()];
+                this.bestBiases[layerNum] = new double[layers[layerNum].getNumberOfNodes()];
+            }
+        } else {
+            this.bestWeights = null;
+            this.bestBiases = null;
+        }
+    }
+
+
+    /**
+     * Records the validation RMSE of a set of weights and biases, copying them aside if they are the best so far and the
+     * best weights are to be restored
+     *
+     * @param rootMeanSquaredError the validation RMSE
+     * @param validatedModel       the snapshot of the weights and biases which were validated, or null if the network's
+     *                             current weights and biases were validated
+     * @return true if training which stops automatically is to stop
+     */
+    boolean recordValidation(double rootMeanSquaredError, InferenceModel validatedModel) {
+        // Only a fall of at least the minimum delta counts as an improvement, but any fall gives a new best
+        if (rootMeanSquaredError <= improvedRootMeanSquaredError - policy.getMinDelta()) {
+            improvedRootMeanSquaredError = rootMeanSquaredError;
+            validationsWithoutImprovement = 0;
+        } else {
+            validationsWithoutImprovement++;
+        }
+        if (rootMeanSquaredError <= bestRootMeanSquaredError) {
+            bestRootMeanSquaredError = rootMeanSquaredError;
+            if (bestWeights != null) {
+                for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                    if (validatedModel == null) {
+                        layers[layerNum].copyWeightsAndBiasesInto(bestWeights[layerNum], bestBiases[layerNum]);
+                    } else {
+                        System.arraycopy(validatedModel.getLayerWeights(layerNum), 0, bestWeights[layerNum], 0, bestWeights[layerNum].length);
+                        System.arraycopy(validatedModel.getLayerBiases(layerNum), 0, bestBiases[layerNum], 0, bestBiases[layerNum].length);
+                    }
+                }
+                bestWeightsAvailable = true;
+            }
+        }
+        addToBestHistory(bestRootMeanSquaredError);
+
+        return validationsWithoutImprovement > policy.getPatience() || isPlateaued();
+    }
+
+
+    /**
+     * Copies the weights and biases with the best validation RMSE back into the network, if the best weights are to be
+     * restored and are better than the network's current weights
+     *
+     * @param currentRootMeanSquaredError the validation RMSE of the network's current weights and biases
+     * @return true if the best weights and biases were restored
+     */
+    boolean restoreBestWeights(double currentRootMeanSquaredError) {
+        if (!bestWeightsAvailable || bestRootMeanSquaredError >= currentRootMeanSquaredError) {
+            return false;
+        }
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            layers[layerNum].restoreWeightsAndBiases(bestWeights[layerNum], bestBiases[layerNum]);
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the best validation RMSE so far
+     *
+     * @return the best validation RMSE, or Double.MAX_VALUE if the network has not been validated
+     */
+    double getBestRootMeanSquaredError() {
+        return bestRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the validation RMSE of the most recent improvement of at least the minimum delta
+     *
+     * @return the validation RMSE of the most recent improvement, or Double.MAX_VALUE if the network has not been validated
+     */
+    double getImprovedRootMeanSquaredError() {
+        return improvedRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the number of validations in a row without an improvement of at least the minimum delta
+     *
+     * @return the number of validations without an improvement
+     */
+    int getValidationsWithoutImprovement() {
+        return validationsWithoutImprovement;
+    }
+
+
+    /**
+     * Returns the best validation RMSE after each of the most recent validations, for a checkpoint
+     *
+     * @return a new array of the best validation RMSEs, oldest first
+     */
+    double[] copyBestHistory() {
+        double[] history = new double[bestHistoryLength];
+        for (int historyNum = 0; historyNum < bestHistoryLength; historyNum++) {
+            history[historyNum] = bestHistory[(bestHistoryStart + historyNum) % bestHistory.length];
+        }
+        return history;
+    }
+
+
+    /**
+     * Returns a copy of the weights of each layer at the best validation RMSE, for a checkpoint
+     *
+     * @return a new array of the row-major weights of each layer, or null if there are no best weights
+     */
+    double[][] copyBestWeights() {
+        return bestWeightsAvailable ? copy(bestWeights) : null;
+    }
+
+
+    /**
+     * Returns a copy of the biases of each layer at the best validation RMSE, for a checkpoint
+     *
+     * @return a new array of the biases of each layer, or null if there are no best weights
+     */
+    double[][] copyBestBiases() {
+        return bestWeightsAvailable ? copy(bestBiases) : null;
+    }
+
+
+    /**
+     * Restores the state of the monitor saved in a checkpoint, so that training resumed from it stops when it would have
+     * done. If the policy keeps a shorter history than the checkpoint, only the most recent values are kept, and if the
+     * policy does not restore the best weights, the best weights in the checkpoint are ignored.
+     *
+     * @param bestRootMeanSquaredError      the best validation RMSE so far
+     * @param improvedRootMeanSquaredError  the validation RMSE of the most recent improvement of at least the minimum delta
+     * @param validationsWithoutImprovement the number of validations in a row without an improvement
+     * @param history                       the best validation RMSE after each of the most recent validations, oldest first
+     * @param weights                       the weights of each layer at the best validation RMSE, or null if there are none
+     * @param biases                        the biases of each layer at the best validation RMSE, or null if there are none
+     */
+    void restore(double bestRootMeanSquaredError, double improvedRootMeanSquaredError, int validationsWithoutImprovement, double[] history, double[][] weights, double[][] biases) {
+        this.bestRootMeanSquaredError = bestRootMeanSquaredError;
+        this.improvedRootMeanSquaredError = improvedRootMeanSquaredError;
+        this.validationsWithoutImprovement = validationsWithoutImprovement;
+        this.bestHistoryStart = 0;
+        this.bestHistoryLength = 0;
+        for (int historyNum = Math.max(0, history.length - bestHistory.length); historyNum < history.length; historyNum++) {
+            addToBestHistory(history[historyNum]);
+        }
+        if (bestWeights != null && weights != null) {
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                System.arraycopy(weights[layerNum], 0, bestWeights[layerNum], 0, bestWeights[layerNum].length);
+                System.arraycopy(biases[layerNum], 0, bestBiases[layerNum], 0, bestBiases[layerNum].length);
+            }
+            bestWeightsAvailable = true;
+        }
+    }
+
+
+    /**
+     * Adds a best validation RMSE to the ring buffer, replacing the oldest value once it is full
+     *
+     * @param rootMeanSquaredError the best validation RMSE after the most recent validation
+     */
+    private void addToBestHistory(double rootMeanSquaredError) {
+        if (bestHistoryLength < bestHistory.length) {
+            bestHistory[(bestHistoryStart + bestHistoryLength) % bestHistory.length] = rootMeanSquaredError;
+            bestHistoryLength++;
+        } else {
+            bestHistory[bestHistoryStart] = rootMeanSquaredError;
+            bestHistoryStart = (bestHistoryStart + 1) % bestHistory.length;
+        }
+    }
+
+
+    /**
+     * Works out whether the best validation RMSE has fallen by less than the plateau tolerance over the plateau window
+     *
+     * @return true if plateaus are being detected and the best validation RMSE has plateaued
+     */
+    private boolean isPlateaued() {
+        if (policy.getPlateauWindow() == 0 || bestHistoryLength < bestHistory.length) {
+            return false;
+        }
+        double oldestBest = bestHistory[bestHistoryStart];
+        return oldestBest - bestRootMeanSquaredError < policy.getPlateauTolerance() * oldestBest;
+    }
+
+
+    /**
+     * Copies an array of arrays of doubles
+     *
+     * @param values the arrays to copy
+     * @return a new array of copies of each array
+     */
+    private static double[][] copy(double[][] values) {
+        double[][] copy = new double[values.length][];
+        for (int arrayNum = 0; arrayNum < values.length; arrayNum++) {
+            copy[arrayNum] = values[arrayNum].clone();
+        }
+        return copy;
+    }
+}
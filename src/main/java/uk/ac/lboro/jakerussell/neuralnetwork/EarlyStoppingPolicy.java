@@ -0,0 +1,271 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EarlyStoppingPolicy is responsible for describing how often a NeuralNetwork is validated during training, and when
+ * training which stops automatically is to be stopped.
+ * <p>
+ * The network is validated either every given number of epochs or every given length of time. If the network trains
+ * for a fixed number of epochs, the policy only sets how often it is validated. Otherwise, training stops once the
+ * validation RMSE has failed to improve by at least the minimum delta for more than the patience number of validations
+ * in a row, or once the best validation RMSE has improved by less than the plateau tolerance over the plateau window. If
+ * the best weights are to be restored, the weights and biases with the lowest validation RMSE are copied aside as
+ * training goes, and copied back into the network once training stops.
+ * <p>
+ * The default policy validates every 500 epochs with a patience of 0 and a minimum delta of 0, which stops training the
+ * first time the validation RMSE increases, exactly as the network always has. A policy is immutable, so each with
+ * method returns a new policy.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class EarlyStoppingPolicy {
+
+    /**
+     * The number of epochs between validations in the default policy
+     */
+    public static final int DEFAULT_VALIDATION_INTERVAL = 500;
+
+    /**
+     * The policy the network uses unless another is set, which validates every 500 epochs and stops training the first
+     * time the validation RMSE increases
+     */
+    public static final EarlyStoppingPolicy DEFAULT = everyEpochs(DEFAULT_VALIDATION_INTERVAL);
+
+    private final int validationIntervalEpochs;
+    private final long validationIntervalNanos;
+    private final int patience;
+    private final double minDelta;
+    private final boolean restoreBestWeights;
+    private final int plateauWindow;
+    private final double plateauTolerance;
+
+    private EarlyStoppingPolicy(int validationIntervalEpochs, long validationIntervalNanos, int patience, double minDelta,
+                                boolean restoreBestWeights, int plateauWindow, double plateauTolerance) {
+        this.validationIntervalEpochs = validationIntervalEpochs;
+        this.validationIntervalNanos = validationIntervalNanos;
+        this.patience = patience;
+        this.minDelta = minDelta;
+        this.restoreBestWeights = restoreBestWeights;
+        this.plateauWindow = plateauWindow;
+        this.plateauTolerance = plateauTolerance;
+    }
+
+
+    /**
+     * Creates a policy which validates the network every given number of epochs, and stops training the first time the
+     * validation RMSE increases
+     *
+     * @param epochs the number of epochs between validations, which must be at least 1
+     * @return the policy
+     */
+    public static EarlyStoppingPolicy everyEpochs(int epochs) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("Validation interval must be at least 1 epoch, but was " + epochs);
+        }
+        return new EarlyStoppingPolicy(epochs, 0, 0, 0.0, false, 0, 0.0);
+    }
+
+
+    /**
+     * Creates a policy which validates the network once at least the given length of time has been spent training since
+     * the last validation, and stops training the first time the validation RMSE increases. Validation only happens at
+     * the end of an epoch, and the network is always validated after the final epoch when training for a fixed number of
+     * epochs.
+     *
+     * @param duration the length of time between validations, which must be greater than 0
+     * @param unit     the unit of the length of time
+     * @return the policy
+     */
+    public static EarlyStoppingPolicy every(long duration, TimeUnit unit) {
+        long nanos = unit.toNanos(duration);
+        if (nanos <= 0) {
+            throw new IllegalArgumentException("Validation interval must be greater than 0, but was " + duration + " " + unit);
+        }
+        return new EarlyStoppingPolicy(0, nanos, 0, 0.0, false, 0, 0.0);
+    }
+
+
+    /**
+     * Returns a copy of the policy with the given patience
+     *
+     * @param patience the number of validations in a row without an improvement to allow before stopping, which must be
+     *                 at least 0
+     * @return the new policy
+     */
+    public EarlyStoppingPolicy withPatience(int patience) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("Patience must be at least 0, but was " + patience);
+        }
+        return new EarlyStoppingPolicy(validationIntervalEpochs, validationIntervalNanos, patience, minDelta, restoreBestWeights,
+                plateauWindow, plateauTolerance);
+    }
+
+
+    /**
+     * Returns a copy of the policy with the given minimum delta
+     *
+     * @param minDelta the amount the validation RMSE must fall below the best validation RMSE by to count as an
+     *                 improvement, which must be at least 0
+     * @return the new policy
+     */
+    public EarlyStoppingPolicy withMinDelta(double minDelta) {
+        if (!(minDelta >= 0)) {
+            throw new IllegalArgumentException("Minimum delta must be at least 0, but was " + minDelta);
+        }
+        return new EarlyStoppingPolicy(validationIntervalEpochs, validationIntervalNanos, patience, minDelta, restoreBestWeights,
+                plateauWindow, plateauTolerance);
+    }
+
+
+    /**
+     * Returns a copy of the policy which does or does not restore the best weights and biases once training stops
+     *
+     * @param restoreBestWeights true if the weights and biases with the lowest validation RMSE are to be restored
+     * @return the new policy
+     */
+    public EarlyStoppingPolicy withBestWeightsRestored(boolean restoreBestWeights) {
+        return new EarlyStoppingPolicy(validationIntervalEpochs, validationIntervalNanos, patience, minDelta, restoreBestWeights,
+                plateauWindow, plateauTolerance);
+    }
+
+
+    /**
+     * Returns a copy of the policy which stops training once the best validation RMSE has plateaued, meaning it has fallen
+     * by less than the given fraction of itself over the given number of validations
+     *
+     * @param window    the number of validations to measure the improvement over, or 0 to not detect plateaus
+     * @param tolerance the fraction of the best validation RMSE it must fall by over the window, which must be at least 0
+     * @return the new policy
+     */
+    public EarlyStoppingPolicy withPlateauDetection(int window, double tolerance) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Plateau window must be at least 0, but was " + window);
+        }
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("Plateau tolerance must be at least 0, but was " + tolerance);
+        }
+        return new EarlyStoppingPolicy(validationIntervalEpochs, validationIntervalNanos, patience, minDelta, restoreBestWeights,
+                window, tolerance);
+    }
+
+
+    /**
+     * Returns whether the network is validated every given length of time rather than every given number of epochs
+     *
+     * @return true if validation is based on time
+     */
+    public boolean isTimeBased() {
+        return validationIntervalNanos != 0;
+    }
+
+
+    /**
+     * Returns the number of epochs between validations
+     *
+     * @return the validation interval in epochs, or 0 if validation is based on time
+     */
+    public int getValidationIntervalEpochs() {
+        return validationIntervalEpochs;
+    }
+
+
+    /**
+     * Returns the length of time between validations
+     *
+     * @return the validation interval in nanoseconds, or 0 if validation is based on epochs
+     */
+    public long getValidationIntervalNanos() {
+        return validationIntervalNanos;
+    }
+
+
+    /**
+     * Returns the number of validations in a row without an improvement allowed before training stops
+     *
+     * @return the patience
+     */
+    public int getPatience() {
+        return patience;
+    }
+
+
+    /**
+     * Returns the amount the validation RMSE must fall below the best validation RMSE by to count as an improvement
+     *
+     * @return the minimum delta
+     */
+    public double getMinDelta() {
+        return minDelta;
+    }
+
+
+    /**
+     * Returns whether the weights and biases with the lowest validation RMSE are restored once training stops
+     *
+     * @return true if the best weights and biases are restored
+     */
+    public boolean isRestoreBestWeights() {
+        return restoreBestWeights;
+    }
+
+
+    /**
+     * Returns the number of validations the improvement of the best validation RMSE is measured over to detect a plateau
+     *
+     * @return the plateau window, or 0 if plateaus are not detected
+     */
+    public int getPlateauWindow() {
+        return plateauWindow;
+    }
+
+
+    /**
+     * Returns the fraction of the best validation RMSE it must fall by over the plateau window
+     *
+     * @return the plateau tolerance
+     */
+    public double getPlateauTolerance() {
+        return plateauTolerance;
+    }
+
+
+    /**
+     * Returns whether the network is to be validated after the given epoch
+     *
+     * @param epochCount               the number of epochs trained for so far
+     * @param nanosSinceLastValidation the time spent since the last validation, or since training started
+     * @return true if the network is to be validated
+     */
+    boolean isValidationDue(int epochCount, long nanosSinceLastValidation) {
+        if (isTimeBased()) {
+            return nanosSinceLastValidation >= validationIntervalNanos;
+        }
+        // Validating on multiples of the interval, rather than every interval since training started, keeps training
+        // resumed from a checkpoint validating at the same epochs as it would have done
+        return epochCount % validationIntervalEpochs == 0;
+    }
+
+
+    /**
+     * Returns a description of the policy, for the training summary
+     *
+     * @return a description of the policy
+     */
+    @Override
+    public String toString() {
+        String description = isTimeBased()
+                ? "every " + TimeUnit.NANOSECONDS.toMillis(validationIntervalNanos) + " ms"
+                : "every " + validationIntervalEpochs + " epochs";
+        description = description + ", patience " + patience + ", min delta " + minDelta;
+        if (plateauWindow > 0) {
+            description = description + ", plateau " + plateauTolerance + " over " + plateauWindow;
+        }
+        if (restoreBestWeights) {
+            description = description + ", best weights restored";
+        }
+        return description;
+    }
+}
@@ -11,5 +11,6 @@ public enum Improvements {
     MOMENTUM,
     BOLD_DRIVER,
     ANNEALING,
-    BATCH_PROCESSING
+    BATCH_PROCESSING,
+    HOGWILD
 }
@@ -0,0 +1,476 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * InferenceModel is responsible for predicting with a trained network, separately from the state used to train it.
+ * <p>
+ * A model is a frozen copy of a NeuralNetwork's weights and biases, taken when training finishes, and it can never be
+ * changed. Every value the model calculates while predicting is written into the buffers of a Context rather than into
+ * the model, so one model can predict on any number of threads at once, without any locking. A caller can create a
+ * Context for each thread with newContext() and pass it in, or use the methods without a Context, which use a Context
+ * belonging to the calling thread.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class InferenceModel {
+
+    // The number of samples passed forwards through the layers at once when predicting a batch
+    private static final int PREDICTION_TILE_SIZE = 256;
+
+    private final int numberOfInputs;
+    private final int[] layerSizes;
+    private final int numberOfOutputs;
+    private final ActivationFunctions activationFunction;
+
+    // The row-major weights of each layer, with one row per node, and the biases of each layer, in the same layout as
+    // DenseLayer
+    private final double[][] weights;
+    private final double[][] biases;
+
+    private final ThreadLocal<Context> threadContexts = ThreadLocal.withInitial(this::newContext);
+
+    /**
+     * Context holds the buffers a model needs to pass samples forwards through its layers. A Context must only be used by
+     * one thread at a time, but can be reused for any number of predictions, so predicting does not allocate any memory.
+     */
+    public static final class Context {
+        private final int numberOfInputs;
+        private final int[] layerSizes;
+        private final double[] inputs;
+        private final double[][] outputs;
+
+        /**
+         * Constructor creates the buffers for a tile of samples of a network topology
+         *
+         * @param numberOfInputs the number of inputs to the network
+         * @param layerSizes     the number of nodes in each layer, ending with the output layer
+         */
+        private Context(int numberOfInputs, int[] layerSizes) {
+            this.numberOfInputs = numberOfInputs;
+            this.layerSizes = layerSizes;
+            this.inputs = new double[PREDICTION_TILE_SIZE * numberOfInputs];
+            this.outputs = new double[layerSizes.length][];
+            for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+                this.outputs[layerNum] = new double[PREDICTION_TILE_SIZE * layerSizes[layerNum]];
+            }
+        }
+    }
+
+    /**
+     * Constructor creates a model from the weights and biases of each layer of a network, which are copied so that the
+     * model cannot be changed through them
+     *
+     * @param numberOfInputs     the number of inputs to the network
+     * @param activationFunction the activation function used by every node
+     * @param weights            the row-major weights of each layer, with one row per node
+     * @param biases             the biases of each layer, ending with the output layer
+     * @throws IllegalArgumentException if the weights and biases of the layers do not fit together
+     */
+    InferenceModel(int numberOfInputs, ActivationFunctions activationFunction, double[][] weights, double[][] biases) {
+        if (weights.length == 0 || weights.length != biases.length) {
+            throw new IllegalArgumentException("Expected weights and biases for the same number of layers, but was given "
+                    + weights.length + " and " + biases.length);
+        }
+        this.numberOfInputs = numberOfInputs;
+        this.activationFunction = activationFunction;
+        this.layerSizes = new int[biases.length];
+        this.weights = new double[weights.length][];
+        this.biases = new double[biases.length][];
+
+        int numberOfLayerInputs = numberOfInputs;
+        for (int layerNum = 0; layerNum < weights.length; layerNum++) {
+            int numberOfNodes = biases[layerNum].length;
+            if (weights[layerNum].length != numberOfNodes * numberOfLayerInputs) {
+                throw new IllegalArgumentException("Layer " + layerNum + " has " + numberOfNodes + " nodes and " + numberOfLayerInputs
+                        + " inputs, but was given " + weights[layerNum].length + " weights");
+            }
+            this.layerSizes[layerNum] = numberOfNodes;
+            this.weights[layerNum] = weights[layerNum].clone();
+            this.biases[layerNum] = biases[layerNum].clone();
+            numberOfLayerInputs = numberOfNodes;
+        }
+        this.numberOfOutputs = layerSizes[layerSizes.length - 1];
+    }
+
+
+    /**
+     * Creates a new set of buffers for predicting with the model, to be used by a single thread
+     *
+     * @return a new context for the model
+     */
+    public Context newContext() {
+        return new Context(numberOfInputs, layerSizes);
+    }
+
+
+    /**
+     * Returns the number of inputs to the model
+     *
+     * @return the number of inputs
+     */
+    public int getNumberOfInputs() {
+        return numberOfInputs;
+    }
+
+
+    /**
+     * Returns the number of values the model predicts for each sample
+     *
+     * @return the number of outputs
+     */
+    public int getNumberOfOutputs() {
+        return numberOfOutputs;
+    }
+
+
+    /**
+     * Returns the number of nodes in each hidden layer of the model
+     *
+     * @return a new array of the size of each hidden layer, in order
+     */
+    public int[] getHiddenLayerSizes() {
+        int[] hiddenLayerSizes = new int[layerSizes.length - 1];
+        System.arraycopy(layerSizes, 0, hiddenLayerSizes, 0, hiddenLayerSizes.length);
+        return hiddenLayerSizes;
+    }
+
+
+    /**
+     * Returns the activation function used by every node of the model
+     *
+     * @return the activation function
+     */
+    public ActivationFunctions getActivationFunction() {
+        return activationFunction;
+    }
+
+
+    /**
+     * Returns the number of layers of the model, which are the hidden layers followed by the output layer
+     *
+     * @return the number of layers
+     */
+    int getNumberOfLayers() {
+        return layerSizes.length;
+    }
+
+
+    /**
+     * Returns the number of nodes in a layer of the model
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the number of nodes in the layer
+     */
+    int getLayerSize(int layerNum) {
+        return layerSizes[layerNum];
+    }
+
+
+    /**
+     * Returns the weights of a layer of the model. The array belongs to the model, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the row-major weights of the layer, with one row per node
+     */
+    double[] getLayerWeights(int layerNum) {
+        return weights[layerNum];
+    }
+
+
+    /**
+     * Returns the biases of a layer of the model. The array belongs to the model, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the biases of the layer's nodes
+     */
+    double[] getLayerBiases(int layerNum) {
+        return biases[layerNum];
+    }
+
+
+    /**
+     * Predicts the index flood, given a catchment area, using the calling thread's context
+     *
+     * @param catchmentArea the catchment area for which the index flood should be predicted
+     * @return the predicted index flood for the given catchment area
+     * @throws IllegalArgumentException if the model does not have an input for each feature of a catchment area
+     */
+    public double predict(CatchmentArea catchmentArea) {
+        return predict(threadContexts.get(), catchmentArea);
+    }
+
+
+    /**
+     * Predicts the index flood, given a catchment area
+     *
+     * @param context       the buffers to predict with, which must not be in use by another thread
+     * @param catchmentArea the catchment area for which the index flood should be predicted
+     * @return the predicted index flood for the given catchment area
+     * @throws IllegalArgumentException if the context was created for a different topology, or the model does not have an
+     *                                  input for each feature of a catchment area
+     */
+    public double predict(Context context, CatchmentArea catchmentArea) {
+        validateContext(context);
+        if (numberOfInputs != CatchmentArea.NUMBER_OF_FEATURES) {
+            throw new IllegalArgumentException("The model has " + numberOfInputs + " inputs, but a catchment area has "
+                    + CatchmentArea.NUMBER_OF_FEATURES + " features");
+        }
+        catchmentArea.copyFeatures(context.inputs, 0);
+        return calculateTileOutputs(context, 1)[0];
+    }
+
+
+    /**
+     * Predicts the index flood for a sample of a dataset, using the calling thread's context
+     *
+     * @param dataset   the dataset containing the sample
+     * @param sampleNum the index of the sample in the dataset
+     * @return the predicted index flood for the sample
+     * @throws IllegalArgumentException if the dataset has the wrong number of features
+     */
+    public double predict(Dataset dataset, int sampleNum) {
+        return predict(threadContexts.get(), dataset, sampleNum);
+    }
+
+
+    /**
+     * Predicts the index flood for a sample of a dataset
+     *
+     * @param context   the buffers to predict with, which must not be in use by another thread
+     * @param dataset   the dataset containing the sample
+     * @param sampleNum the index of the sample in the dataset
+     * @return the predicted index flood for the sample
+     * @throws IllegalArgumentException if the context was created for a different topology, or the dataset has the wrong
+     *                                  number of features
+     */
+    public double predict(Context context, Dataset dataset, int sampleNum) {
+        validateContext(context);
+        validateDataset(dataset);
+        dataset.copyFeatures(sampleNum, 1, context.inputs, 0);
+        return calculateTileOutputs(context, 1)[0];
+    }
+
+
+    /**
+     * Predicts every output of the model for a catchment area, using the calling thread's context
+     *
+     * @param catchmentArea the catchment area for which the outputs should be predicted
+     * @return a new array of the predicted values for the given catchment area, where value 0 is the index flood
+     * @throws IllegalArgumentException if the model does not have an input for each feature of a catchment area
+     */
+    public double[] predictAll(CatchmentArea catchmentArea) {
+        Context context = threadContexts.get();
+        predict(context, catchmentArea);
+        double[] predictions = new double[numberOfOutputs];
+        System.arraycopy(context.outputs[layerSizes.length - 1], 0, predictions, 0, numberOfOutputs);
+        return predictions;
+    }
+
+
+    /**
+     * Predicts every output of the model for a batch of samples, given their packed features, using the calling thread's
+     * context
+     *
+     * @param features        the row-major features of the samples, with one row of a value for each input per sample
+     * @param numberOfSamples the number of samples to predict
+     * @param predictions     the array to write the row-major predictions into, with one row of a value for each output
+     *                        per sample
+     * @throws IllegalArgumentException if either array is too small for the number of samples
+     */
+    public void predictBatch(double[] features, int numberOfSamples, double[] predictions) {
+        predictBatch(threadContexts.get(), features, 0, numberOfSamples, predictions, 0);
+    }
+
+
+    /**
+     * Predicts every output of the model for a batch of samples, given their packed features. The samples are passed
+     * forwards through the layers a tile at a time, and no memory is allocated.
+     *
+     * @param context           the buffers to predict with, which must not be in use by another thread
+     * @param features          the row-major features of the samples, with one row of a value for each input per sample
+     * @param featuresOffset    the position in the features array of the first feature of the first sample
+     * @param numberOfSamples   the number of samples to predict
+     * @param predictions       the array to write the row-major predictions into, with one row of a value for each output
+     *                          per sample
+     * @param predictionsOffset the position in the predictions array to write the first prediction to
+     * @throws IllegalArgumentException if the context was created for a different topology, or either array is too small
+     *                                  for the number of samples
+     */
+    public void predictBatch(Context context, double[] features, int featuresOffset, int numberOfSamples, double[] predictions, int predictionsOffset) {
+        validateContext(context);
+        if (numberOfSamples < 0 || featuresOffset < 0 || (long) featuresOffset + (long) numberOfSamples * numberOfInputs > features.length) {
+            throw new IllegalArgumentException("The features array does not hold " + numberOfSamples + " samples of "
+                    + numberOfInputs + " features from position " + featuresOffset);
+        }
+        validatePredictionsArray(numberOfSamples, predictions, predictionsOffset);
+
+        for (int tileStart = 0; tileStart < numberOfSamples; tileStart += PREDICTION_TILE_SIZE) {
+            int numberOfTileSamples = Math.min(PREDICTION_TILE_SIZE, numberOfSamples - tileStart);
+            System.arraycopy(features, featuresOffset + tileStart * numberOfInputs, context.inputs, 0, numberOfTileSamples * numberOfInputs);
+            double[] tileOutputs = calculateTileOutputs(context, numberOfTileSamples);
+            System.arraycopy(tileOutputs, 0, predictions, predictionsOffset + tileStart * numberOfOutputs, numberOfTileSamples * numberOfOutputs);
+        }
+    }
+
+
+    /**
+     * Predicts every output of the model for a range of consecutive samples of a dataset, using the calling thread's
+     * context
+     *
+     * @param dataset           the dataset containing the samples
+     * @param first             the index in the dataset of the first sample to predict
+     * @param numberOfSamples   the number of samples to predict
+     * @param predictions       the array to write the row-major predictions into, with one row of a value for each output
+     *                          per sample
+     * @param predictionsOffset the position in the predictions array to write the first prediction to
+     * @throws IllegalArgumentException if the dataset has the wrong number of features or too few samples, or the
+     *                                  predictions array is too small for the number of samples
+     */
+    public void predictBatch(Dataset dataset, int first, int numberOfSamples, double[] predictions, int predictionsOffset) {
+        predictBatch(threadContexts.get(), dataset, first, numberOfSamples, predictions, predictionsOffset);
+    }
+
+
+    /**
+     * Predicts every output of the model for a range of consecutive samples of a dataset, a tile at a time
+     *
+     * @param context           the buffers to predict with, which must not be in use by another thread
+     * @param dataset           the dataset containing the samples
+     * @param first             the index in the dataset of the first sample to predict
+     * @param numberOfSamples   the number of samples to predict
+     * @param predictions       the array to write the row-major predictions into, with one row of a value for each output
+     *                          per sample
+     * @param predictionsOffset the position in the predictions array to write the first prediction to
+     * @throws IllegalArgumentException if the context was created for a different topology, the dataset has the wrong
+     *                                  number of features or too few samples, or the predictions array is too small for
+     *                                  the number of samples
+     */
+    public void predictBatch(Context context, Dataset dataset, int first, int numberOfSamples, double[] predictions, int predictionsOffset) {
+        validateContext(context);
+        validateDataset(dataset);
+        if (numberOfSamples < 0 || first < 0 || first + numberOfSamples > dataset.size()) {
+            throw new IllegalArgumentException("The dataset does not hold " + numberOfSamples + " samples from sample " + first);
+        }
+        validatePredictionsArray(numberOfSamples, predictions, predictionsOffset);
+
+        for (int tileStart = 0; tileStart < numberOfSamples; tileStart += PREDICTION_TILE_SIZE) {
+            int numberOfTileSamples = Math.min(PREDICTION_TILE_SIZE, numberOfSamples - tileStart);
+            dataset.copyFeatures(first + tileStart, numberOfTileSamples, context.inputs, 0);
+            double[] tileOutputs = calculateTileOutputs(context, numberOfTileSamples);
+            System.arraycopy(tileOutputs, 0, predictions, predictionsOffset + tileStart * numberOfOutputs, numberOfTileSamples * numberOfOutputs);
+        }
+    }
+
+
+    /**
+     * Calculates the root mean squared error of the model's predictions for a dataset which is split into chunks, a tile
+     * at a time. The squared errors are added up in the same order as NeuralNetwork adds them up, so with the scalar
+     * kernels the result is exactly the validation RMSE the network calculates with the same weights and biases. The vector
+     * kernels apply the activation function to a tile of samples at once, but to the network's values one sample at a
+     * time, so different values fall outside the whole vectors, and the two results can differ in the last few bits.
+     *
+     * @param context the buffers to predict with, which must not be in use by another thread
+     * @param chunks  the chunks of a dataset to calculate the error for
+     * @return the root mean squared error of the model's predictions
+     * @throws IllegalArgumentException if the context was created for a different topology, or a chunk has the wrong
+     *                                  number of features or too few targets
+     */
+    double calculateRootMeanSquaredError(Context context, Iterable<Dataset> chunks) {
+        validateContext(context);
+        double squaredError = 0.0;
+        long numberOfSamples = 0;
+        Iterator<Dataset> chunkIterator = chunks.iterator();
+        try {
+            while (chunkIterator.hasNext()) {
+                Dataset dataset = chunkIterator.next();
+                validateDataset(dataset);
+                if (dataset.getNumberOfTargets() < numberOfOutputs) {
+                    throw new IllegalArgumentException("The model has " + numberOfOutputs + " outputs, but the dataset only has "
+                            + dataset.getNumberOfTargets() + " targets");
+                }
+                for (int tileStart = 0; tileStart < dataset.size(); tileStart += PREDICTION_TILE_SIZE) {
+                    int numberOfTileSamples = Math.min(PREDICTION_TILE_SIZE, dataset.size() - tileStart);
+                    dataset.copyFeatures(tileStart, numberOfTileSamples, context.inputs, 0);
+                    double[] tileOutputs = calculateTileOutputs(context, numberOfTileSamples);
+                    for (int sampleNum = 0; sampleNum < numberOfTileSamples; sampleNum++) {
+                        for (int outputNum = 0; outputNum < numberOfOutputs; outputNum++) {
+                            double error = dataset.getTarget(tileStart + sampleNum, outputNum) - tileOutputs[sampleNum * numberOfOutputs + outputNum];
+                            squaredError = squaredError + Math.pow(error, 2);
+                        }
+                    }
+                }
+                numberOfSamples = numberOfSamples + dataset.size();
+            }
+        } finally {
+            PrefetchingIterator.closeIfPrefetching(chunkIterator);
+        }
+        return Math.sqrt(squaredError / (numberOfSamples * numberOfOutputs));
+    }
+
+
+    /**
+     * Passes a tile of samples, already copied into a context's input buffer, forwards through every layer at once
+     *
+     * @param context         the buffers to predict with
+     * @param numberOfSamples the number of samples in the tile
+     * @return the context's buffer of the row-major outputs of the output layer, with one row per sample
+     */
+    private double[] calculateTileOutputs(Context context, int numberOfSamples) {
+        double[] layerInputs = context.inputs;
+        int numberOfLayerInputs = numberOfInputs;
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            DenseLayer.calculateOutputs(weights[layerNum], biases[layerNum], activationFunction, layerInputs, context.outputs[layerNum],
+                    numberOfSamples, layerSizes[layerNum], numberOfLayerInputs);
+            layerInputs = context.outputs[layerNum];
+            numberOfLayerInputs = layerSizes[layerNum];
+        }
+        return layerInputs;
+    }
+
+
+    /**
+     * Checks that a context has buffers of the right sizes for the model
+     *
+     * @param context the context to check
+     * @throws IllegalArgumentException if the context was created for a model with a different topology
+     */
+    private void validateContext(Context context) {
+        if (context.numberOfInputs != numberOfInputs || !Arrays.equals(context.layerSizes, layerSizes)) {
+            throw new IllegalArgumentException("The context was created for a model with a different topology");
+        }
+    }
+
+
+    /**
+     * Checks that a dataset has a feature for each input of the model
+     *
+     * @param dataset the dataset to check
+     * @throws IllegalArgumentException if the dataset has the wrong number of features
+     */
+    private void validateDataset(Dataset dataset) {
+        if (dataset.getNumberOfFeatures() != numberOfInputs) {
+            throw new IllegalArgumentException("The model has " + numberOfInputs + " inputs, but the dataset has "
+                    + dataset.getNumberOfFeatures() + " features");
+        }
+    }
+
+
+    /**
+     * Checks that an array has room for the predictions of a number of samples from a position
+     *
+     * @param numberOfSamples   the number of samples to be predicted
+     * @param predictions       the array the predictions are to be written into
+     * @param predictionsOffset the position in the array the first prediction is to be written to
+     * @throws IllegalArgumentException if the array is too small for the number of samples
+     */
+    private void validatePredictionsArray(int numberOfSamples, double[] predictions, int predictionsOffset) {
+        if (numberOfSamples < 0 || predictionsOffset < 0 || (long) predictionsOffset + (long) numberOfSamples * numberOfOutputs > predictions.length) {
+            throw new IllegalArgumentException("The predictions array does not have room for " + numberOfSamples + " samples of "
+                    + numberOfOutputs + " outputs from position " + predictionsOffset);
+        }
+    }
+}
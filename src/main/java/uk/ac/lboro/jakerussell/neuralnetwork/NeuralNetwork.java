@@ -1,15 +1,29 @@
 package uk.ac.lboro.jakerussell.neuralnetwork;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * NeuralNetwork is responsible for creating a Neural Network, given a network configuration.
  * It is also responsible for training a network, and using it to predict an Index Flood
+ * <p>
+ * The network is a stack of dense layers, made up of any number of hidden layers followed by an output layer with a
+ * node for each value to be predicted. Every layer uses the same activation function. By default the only output is the
+ * index flood, but a wider output layer can predict further flood statistics of each catchment area from the same
+ * hidden layers in a single forwards pass.
  *
  * @author Jake Russell
  * @version 1.0
@@ -17,68 +31,415 @@ import java.util.Random;
  */
 public class NeuralNetwork {
 
-    private static final Random RANDOM = new Random();
+    private static final int DEFAULT_BATCH_SIZE = 171;
+
+    // The number of samples passed forwards through the network at once by predictBatch()
+    private static final int PREDICTION_TILE_SIZE = 256;
+
+    // Every network has its own random number generator, so that networks can be created concurrently without contending
+    // on a shared generator, and any network can be reproduced exactly from its seed
+    private final long seed;
+    private final SplittableRandom random;
 
     private int numberOfInputs;
-    private int numberOfHiddenNodes;
+    private int[] hiddenLayerSizes;
+    private int numberOfOutputs;
     private double learningRate;
     private double momentumTerm = 0.9;
     private ActivationFunctions activationFunction;
     private List<Improvements> improvements;
     private int numberOfEpochsToTrainFor;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Used in the case of Batch Processing. If a pool has been given, each mini-batch is split into chunks of a fixed size
+    // which are processed in parallel. Otherwise, each mini-batch is processed as a single chunk on the calling thread.
+    private ForkJoinPool dataParallelPool;
+    private int dataParallelChunkSize;
+    private BatchChunk[] batchChunks;
+
+    // Used in the case of Hogwild. Each epoch is split between a number of workers, which update the shared weights and
+    // biases in place without any locking.
+    private int numberOfHogwildThreads = Runtime.getRuntime().availableProcessors();
+    private ForkJoinPool hogwildPool;
+    private HogwildWorker[] hogwildWorkers;
+
+    // The training throughput and the validation error of the most recent call to train()
+    private double samplesPerSecond;
+    private double validationRootMeanSquaredError;
+
+    // The improvements are resolved once when the network is configured, rather than searching the list of improvements
+    // for every weight and every sample during training
+    private final boolean useMomentum;
+    private final boolean useBoldDriver;
+    private final boolean useAnnealing;
+    private final boolean useBatchProcessing;
+    private final boolean useHogwild;
+
+    // The hidden layers in order, followed by the output layer
+    private final DenseLayer[] layers;
+    private final DenseLayer outputLayer;
+
+    private final double[] inputValues;
+    private final double[] expectedValues;
+
+    private boolean previousWeightsAndBiasesAvailable;
+
+    // Used by predictBatch(). The inputs and the values of every node are stored for a tile of samples, in flat row-major
+    // arrays with one row per sample. They are allocated the first time a batch is predicted, and reused after that.
+    private double[] predictionInputs;
+    private double[][] predictionOutputs;
+
+    // Decides how often the network is validated during training, and when training which stops automatically stops
+    private EarlyStoppingPolicy earlyStoppingPolicy = EarlyStoppingPolicy.DEFAULT;
+
+    // Set by setAsynchronousValidation(). The validation thread, and its buffers for passing samples through a snapshot of
+    // the network, are created the first time a validation is started on it, and the thread is shut down after training.
+    private boolean asynchronousValidation;
+    private ExecutorService validationExecutor;
+    private InferenceModel.Context validationContext;
+
+    // Receives the results of each validation during training. By default, they are written to the CSV files in the CSV
+    // directory that the coursework graphs are plotted from.
+    private TrainingMetricsSink metricsSink = new CsvMetricsWriter(Paths.get("CSV"), "");
+
+    // Times the phases of training, if instrumentation has been switched on with the neuralnetwork.instrumentation system
+    // property, and null otherwise
+    private final TrainingInstrumentation instrumentation = TrainingInstrumentation.ENABLED ? new TrainingInstrumentation() : null;
+
+    // Set by setCheckpointing(). A checkpoint is handed to the writer every checkpointInterval epochs during training.
+    private CheckpointWriter checkpointWriter;
+    private int checkpointInterval;
+
+    // Set by resume() to the checkpoint the next call to train() carries on from, and cleared once training starts
+    private TrainingCheckpoint resumeCheckpoint;
 
-    private Double[][] inputsToHiddenLayerWeighting;
-    private Double[][] previousInputsToHiddenLayerWeighting;
-    private Double[][][] batchProcessingInputsToHiddenLayerWeighting;
+    /**
+     * Constructor takes the network configuration as input, and configures a network with a single hidden layer to match
+     * this configuration. A random seed is chosen for the network, which can be retrieved with getSeed() to reproduce the
+     * network.
+     *
+     * @param numberOfInputs           the number of inputs for the network
+     * @param numberOfHiddenNodes      the number of hidden nodes in the network
+     * @param learningRate             the learning rate to be used during network training
+     * @param activationFunction       the activation function to be used in the network
+     * @param improvements             a list of improvements to be used in the network
+     * @param numberOfEpochsToTrainFor the number of epochs the network will train for, or 0 if network training should be terminated automatically
+     */
+    public NeuralNetwork(Integer numberOfInputs, Integer numberOfHiddenNodes, Double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor) {
+        this(numberOfInputs, numberOfHiddenNodes, learningRate, activationFunction, improvements, numberOfEpochsToTrainFor, ThreadLocalRandom.current().nextLong());
+    }
 
-    private Double[] hiddenLayerBiases;
-    private Double[] previousHiddenLayerBiases;
-    private Double[][] batchProcessingHiddenLayerBiases;
 
-    private Double[] hiddenLayerToOutputWeighting;
-    private Double[] previousHiddenLayerToOutputWeighting;
-    private Double[][] batchProcessingHiddenLayerToOutputWeighting;
+    /**
+     * Constructor takes the network configuration as input, and configures a network with a single hidden layer to match
+     * this configuration, using a given seed to generate the random starting weights and biases so that the network can
+     * be reproduced exactly
+     *
+     * @param numberOfInputs           the number of inputs for the network
+     * @param numberOfHiddenNodes      the number of hidden nodes in the network
+     * @param learningRate             the learning rate to be used during network training
+     * @param activationFunction       the activation function to be used in the network
+     * @param improvements             a list of improvements to be used in the network
+     * @param numberOfEpochsToTrainFor the number of epochs the network will train for, or 0 if network training should be terminated automatically
+     * @param seed                     the seed used to generate the random starting weights and biases
+     */
+    public NeuralNetwork(int numberOfInputs, int numberOfHiddenNodes, double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor, long seed) {
+        this(numberOfInputs, new int[]{numberOfHiddenNodes}, learningRate, activationFunction, improvements, numberOfEpochsToTrainFor, seed);
+    }
 
-    private Double[] hiddenLayerOutputs;
-    private Double[] hiddenLayerDeltas;
 
-    private Double outputLayerBias;
-    private Double previousOutputLayerBias;
-    private Double[] batchProcessingOutputLayerBias;
+    /**
+     * Constructor takes the network configuration as input, and configures a network with any number of hidden layers to
+     * match this configuration. A random seed is chosen for the network, which can be retrieved with getSeed() to
+     * reproduce the network.
+     *
+     * @param numberOfInputs           the number of inputs for the network
+     * @param hiddenLayerSizes         the number of nodes in each hidden layer, in order from the inputs to the output
+     * @param learningRate             the learning rate to be used during network training
+     * @param activationFunction       the activation function to be used in the network
+     * @param improvements             a list of improvements to be used in the network
+     * @param numberOfEpochsToTrainFor the number of epochs the network will train for, or 0 if network training should be terminated automatically
+     */
+    public NeuralNetwork(int numberOfInputs, int[] hiddenLayerSizes, double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor) {
+        this(numberOfInputs, hiddenLayerSizes, learningRate, activationFunction, improvements, numberOfEpochsToTrainFor, ThreadLocalRandom.current().nextLong());
+    }
 
-    private Double output;
-    private Double outputDelta;
 
     /**
-     * Constructor takes the network configuration as input, and configures a network to match this configuration
+     * Constructor takes the network configuration as input, and configures a network with any number of hidden layers to
+     * match this configuration, using a given seed to generate the random starting weights and biases so that the network
+     * can be reproduced exactly
      *
      * @param numberOfInputs           the number of inputs for the network
-     * @param numberOfHiddenNodes      the number of hidden nodes in the network
+     * @param hiddenLayerSizes         the number of nodes in each hidden layer, in order from the inputs to the output
      * @param learningRate             the learning rate to be used during network training
      * @param activationFunction       the activation function to be used in the network
      * @param improvements             a list of improvements to be used in the network
      * @param numberOfEpochsToTrainFor the number of epochs the network will train for, or 0 if network training should be terminated automatically
+     * @param seed                     the seed used to generate the random starting weights and biases
      */
-    public NeuralNetwork(Integer numberOfInputs, Integer numberOfHiddenNodes, Double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor) {
+    public NeuralNetwork(int numberOfInputs, int[] hiddenLayerSizes, double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor, long seed) {
+        this(numberOfInputs, hiddenLayerSizes, 1, learningRate, activationFunction, improvements, numberOfEpochsToTrainFor, seed);
+    }
+
+
+    /**
+     * Constructor takes the network configuration as input, and configures a network with any number of hidden layers and
+     * any number of outputs to match this configuration, using a given seed to generate the random starting weights and
+     * biases so that the network can be reproduced exactly. Output n of the network is trained to predict target n of
+     * each catchment area, where target 0 is the index flood.
+     *
+     * @param numberOfInputs           the number of inputs for the network
+     * @param hiddenLayerSizes         the number of nodes in each hidden layer, in order from the inputs to the output
+     * @param numberOfOutputs          the number of values the network predicts for each catchment area
+     * @param learningRate             the learning rate to be used during network training
+     * @param activationFunction       the activation function to be used in the network
+     * @param improvements             a list of improvements to be used in the network
+     * @param numberOfEpochsToTrainFor the number of epochs the network will train for, or 0 if network training should be terminated automatically
+     * @param seed                     the seed used to generate the random starting weights and biases
+     */
+    public NeuralNetwork(int numberOfInputs, int[] hiddenLayerSizes, int numberOfOutputs, double learningRate, ActivationFunctions activationFunction, List<Improvements> improvements, int numberOfEpochsToTrainFor, long seed) {
+        if (hiddenLayerSizes.length == 0) {
+            throw new IllegalArgumentException("A network must have at least 1 hidden layer");
+        }
+        if (numberOfOutputs < 1) {
+            throw new IllegalArgumentException("A network must have at least 1 output, but was " + numberOfOutputs);
+        }
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
         this.numberOfInputs = numberOfInputs;
-        this.numberOfHiddenNodes = numberOfHiddenNodes;
+        this.hiddenLayerSizes = hiddenLayerSizes.clone();
+        this.numberOfOutputs = numberOfOutputs;
         this.learningRate = learningRate;
         this.activationFunction = activationFunction;
         this.improvements = improvements;
         this.numberOfEpochsToTrainFor = numberOfEpochsToTrainFor;
 
-        this.inputsToHiddenLayerWeighting = generateRandomStartingInputsToHiddenLayerWeighting();
-        this.previousInputsToHiddenLayerWeighting = new Double[numberOfInputs][numberOfHiddenNodes];
+        this.useMomentum = improvements.contains(Improvements.MOMENTUM);
+        this.useBoldDriver = improvements.contains(Improvements.BOLD_DRIVER);
+        this.useAnnealing = improvements.contains(Improvements.ANNEALING);
+        this.useBatchProcessing = improvements.contains(Improvements.BATCH_PROCESSING);
+
+        // Hogwild parallelises the online weight updates, so it is not used if Batch Processing is also selected
+        this.useHogwild = improvements.contains(Improvements.HOGWILD) && !this.useBatchProcessing;
+
+        // Each layer takes the outputs of the previous layer as its inputs, and the layers are created in order so that
+        // their random starting weights and biases are generated in order
+        this.layers = new DenseLayer[hiddenLayerSizes.length + 1];
+        int numberOfLayerInputs = numberOfInputs;
+        for (int layerNum = 0; layerNum < hiddenLayerSizes.length; layerNum++) {
+            this.layers[layerNum] = new DenseLayer(numberOfLayerInputs, hiddenLayerSizes[layerNum], activationFunction, random, false);
+            numberOfLayerInputs = hiddenLayerSizes[layerNum];
+        }
+        this.outputLayer = new DenseLayer(numberOfLayerInputs, numberOfOutputs, activationFunction, random, true);
+        this.layers[hiddenLayerSizes.length] = this.outputLayer;
+
+        this.inputValues = new double[numberOfInputs];
+        this.expectedValues = new double[numberOfOutputs];
+
+        // Initialising arrays required for Batch Processing
+        if (this.useBatchProcessing) {
+            for (DenseLayer layer : this.layers) {
+                layer.allocateWeightChangeSums();
+            }
+            allocateBatchChunks();
+        }
+    }
+
+
+    /**
+     * Returns the seed used to generate the random starting weights and biases of the network, which can be passed to
+     * the constructor to reproduce the network exactly
+     *
+     * @return the seed of the network
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+
+    /**
+     * Returns the number of catchment areas in each mini-batch - used in the case of Batch Processing
+     *
+     * @return the batch size of the network
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+
+    /**
+     * Sets the number of catchment areas in each mini-batch - used in the case of Batch Processing. The weights and biases
+     * are updated with the average change over each mini-batch, and any catchment areas left over at the end of an epoch
+     * form a smaller final mini-batch.
+     *
+     * @param batchSize the number of catchment areas in each mini-batch, which must be at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        if (this.useBatchProcessing) {
+            allocateBatchChunks();
+        }
+    }
+
+
+    /**
+     * Sets a pool of threads to use to process each mini-batch in parallel - used in the case of Batch Processing. Each
+     * mini-batch is split into chunks of a fixed size, and the weight changes of each chunk are summed separately and then
+     * added together in the order of the chunks. The results therefore depend on the chunk size, but not on the number of
+     * threads in the pool, and are the same as without a pool if the chunk size is at least the batch size.
+     *
+     * @param pool      the pool of threads to process the chunks with, or null to process each mini-batch on the calling thread
+     * @param chunkSize the number of catchment areas in each chunk, which must be at least 1
+     */
+    public void setDataParallelism(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, but was " + chunkSize);
+        }
+        this.dataParallelPool = pool;
+        this.dataParallelChunkSize = chunkSize;
+        if (this.useBatchProcessing) {
+            allocateBatchChunks();
+        }
+    }
+
+
+    /**
+     * Sets the number of threads to train with - used in the case of Hogwild. Each thread trains on an equal share of the
+     * training dataset, reading and updating the network's weights and biases without any locking, so the results vary
+     * from run to run when more than one thread is used.
+     *
+     * @param numberOfHogwildThreads the number of threads to train with, which must be at least 1
+     */
+    public void setHogwildThreads(int numberOfHogwildThreads) {
+        if (numberOfHogwildThreads < 1) {
+            throw new IllegalArgumentException("Number of Hogwild threads must be at least 1, but was " + numberOfHogwildThreads);
+        }
+        this.numberOfHogwildThreads = numberOfHogwildThreads;
+        shutdownHogwildPool();
+    }
+
+
+    /**
+     * Sets how often the network is validated during training, and when training stops if the network was configured to
+     * train for 0 epochs, meaning training stops automatically. By default, the network is validated every 500 epochs,
+     * and training stops the first time the validation RMSE increases.
+     *
+     * @param earlyStoppingPolicy the policy to train with
+     */
+    public void setEarlyStoppingPolicy(EarlyStoppingPolicy earlyStoppingPolicy) {
+        if (earlyStoppingPolicy == null) {
+            throw new IllegalArgumentException("Early stopping policy must not be null");
+        }
+        this.earlyStoppingPolicy = earlyStoppingPolicy;
+    }
+
 
-        this.hiddenLayerBiases = generateRandomStartingHiddenLayerBiases();
-        this.previousHiddenLayerBiases = new Double[numberOfHiddenNodes];
-        this.hiddenLayerToOutputWeighting = generateRandomStartingHiddenLayerToOutputWeighting();
-        this.previousHiddenLayerToOutputWeighting = new Double[numberOfHiddenNodes];
+    /**
+     * Sets whether the network is validated on a separate thread during training. When it is, the weights and biases
+     * are copied into an immutable snapshot at each validation epoch, and the snapshot is validated on the validation
+     * thread while training carries on. The result is applied at the next validation epoch, when the early stopping
+     * policy and Bold Driver act on it as they would have done at the epoch it was started, except that training has
+     * moved on by one validation interval. Annealing depends only on the number of epochs, so it changes the learning
+     * rate at every validation epoch exactly as it would have done without asynchronous validation. If Bold Driver
+     * rejects the result, undoing the most recent update would not undo the interval, so the network goes back to the
+     * weights and biases Bold Driver last accepted, discarding the training done since. With the vector kernels, the
+     * RMSE of a snapshot can differ in the last few bits from the RMSE the network would have calculated, so the policy
+     * and Bold Driver may act slightly differently. The network is still validated on the training thread after the
+     * final epoch, and wherever a checkpoint is due, so training resumed from a checkpoint carries on as it would have
+     * done. By default, the network is validated on the training thread.
+     *
+     * @param asynchronousValidation true to validate the network on a separate thread while training carries on
+     */
+    public void setAsynchronousValidation(boolean asynchronousValidation) {
+        this.asynchronousValidation = asynchronousValidation;
+    }
 
-        this.outputLayerBias = generateRandomStartingOutputLayerBias();
 
-        this.hiddenLayerOutputs = new Double[numberOfHiddenNodes];
-        this.hiddenLayerDeltas = new Double[numberOfHiddenNodes];
+    /**
+     * Sets the sink which receives the results of each validation during training. By default, they are written to
+     * RMSE_Validation_Dataset.csv, RMSE_Training_Dataset.csv and Learning_Rate_Change.csv in the CSV directory, which
+     * networks trained at the same time would overwrite, so each should be given its own sink, such as a CsvMetricsWriter
+     * with its own run name, or NoOpMetricsSink.INSTANCE.
+     *
+     * @param metricsSink the sink to pass the results of each validation to
+     */
+    public void setMetricsSink(TrainingMetricsSink metricsSink) {
+        if (metricsSink == null) {
+            throw new IllegalArgumentException("Metrics sink must not be null");
+        }
+        this.metricsSink = metricsSink;
+    }
+
+
+    /**
+     * Sets a file to save checkpoints of the network to during training, so that training can be resumed with resume() if
+     * it is stopped. Every given number of epochs, a snapshot of the network is taken on the training thread and written
+     * to the file on a background thread, replacing the previous checkpoint, so training does not wait for the disk.
+     *
+     * @param file          the file to save checkpoints to, or null to stop saving checkpoints
+     * @param epochInterval the number of epochs between checkpoints, which must be at least 1
+     */
+    public void setCheckpointing(Path file, int epochInterval) {
+        if (epochInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1 epoch, but was " + epochInterval);
+        }
+        this.checkpointWriter = file == null ? null : new CheckpointWriter(file);
+        this.checkpointInterval = epochInterval;
+    }
+
+
+    /**
+     * Creates a network from a checkpoint saved during training, with the same configuration, weights, biases and learning
+     * rate as when the checkpoint was taken. The next call to train() carries on from the epoch the checkpoint was taken
+     * at, so given the same data, training continues exactly as it would have done had it not been stopped. Only the
+     * validation results from after the checkpoint are written to the CSV files.
+     * <p>
+     * The network does not save checkpoints itself until setCheckpointing() is called.
+     *
+     * @param file the checkpoint file to read
+     * @return the network, ready to carry on training
+     * @throws IOException if the file cannot be read, or is not a valid checkpoint file
+     */
+    public static NeuralNetwork resume(Path file) throws IOException {
+        TrainingCheckpoint checkpoint = TrainingCheckpoint.read(file);
+        NeuralNetwork network = new NeuralNetwork(checkpoint.getNumberOfInputs(), checkpoint.getHiddenLayerSizes(), checkpoint.getNumberOfOutputs(),
+                checkpoint.getLearningRate(), checkpoint.getActivationFunction(), new ArrayList<>(checkpoint.getImprovements()),
+                checkpoint.getNumberOfEpochsToTrainFor(), checkpoint.getSeed());
+        network.setBatchSize(checkpoint.getBatchSize());
+
+        for (int layerNum = 0; layerNum < network.layers.length; layerNum++) {
+            network.layers[layerNum].restoreWeightsAndBiases(checkpoint.getWeights(layerNum), checkpoint.getPreviousWeights(layerNum),
+                    checkpoint.getBiases(layerNum), checkpoint.getPreviousBiases(layerNum));
+        }
+        network.previousWeightsAndBiasesAvailable = checkpoint.isPreviousWeightsAndBiasesAvailable();
+        network.validationRootMeanSquaredError = checkpoint.getValidationRootMeanSquaredError();
+        network.resumeCheckpoint = checkpoint;
+        return network;
+    }
+
+
+    /**
+     * Returns the number of catchment areas trained on per second during the most recent call to train(), excluding the
+     * time spent validating the network
+     *
+     * @return the training throughput in samples per second
+     */
+    public double getSamplesPerSecond() {
+        return samplesPerSecond;
+    }
+
+
+    /**
+     * Returns the root mean squared error of the validation dataset when it was last calculated by train()
+     *
+     * @return the most recent root mean squared error of the validation dataset
+     */
+    public double getValidationRootMeanSquaredError() {
+        return validationRootMeanSquaredError;
     }
 
 
@@ -89,34 +450,163 @@ public class NeuralNetwork {
      * @return the predicted index flood for the given catchment area
      */
     public double predict(CatchmentArea testData) {
-        calculateOutput(new Double[]{testData.getArea(), testData.getBaseFlowIndex(), testData.getFloodAttenuation(), testData.getFloodPlainExtent(),
-                testData.getLongestDrainagePath(), testData.getProportionWetDays(), testData.getMedianAnnualMax1DayRainfall(), testData.getStandardAnnualAverageRainfall()});
-        return output;
+        return calculateOutput(loadInputValues(testData));
+    }
+
+
+    /**
+     * Predicts the index flood for a sample of a dataset
+     *
+     * @param dataset   the dataset containing the sample
+     * @param sampleNum the index of the sample in the dataset
+     * @return the predicted index flood for the sample
+     */
+    public double predict(Dataset dataset, int sampleNum) {
+        dataset.copyFeatures(sampleNum, 1, inputValues, 0);
+        return calculateOutput(inputValues);
+    }
+
+
+    /**
+     * Predicts every output of the network in a single forwards pass, given a catchment area
+     *
+     * @param testData the catchment area for which the outputs should be predicted
+     * @return a new array of the predicted values for the given catchment area, where value 0 is the index flood
+     */
+    public double[] predictAll(CatchmentArea testData) {
+        calculateOutput(loadInputValues(testData));
+        return outputLayer.getOutputs().clone();
     }
 
 
     /**
-     * Trains the network using the backpropagation algorithm, given 2 lists of catchment area
+     * Predicts every output of the network for a batch of samples, given their packed features. The samples are passed
+     * forwards through the network a tile at a time, so that each layer's weights are applied to many samples at once,
+     * and no memory is allocated once the first batch has been predicted.
+     * <p>
+     * Like predict(), this uses buffers belonging to the network, so a network must not predict on more than one thread
+     * at a time. To predict on several threads, use the InferenceModel returned by train() or freeze() instead.
+     *
+     * @param features        the row-major features of the samples, with one row of a value for each input per sample
+     * @param numberOfSamples the number of samples to predict
+     * @param predictions     the array to write the row-major predictions into, with one row of a value for each output
+     *                        per sample
+     * @throws IllegalArgumentException if either array is too small for the number of samples
+     */
+    public void predictBatch(double[] features, int numberOfSamples, double[] predictions) {
+        predictBatch(features, 0, numberOfSamples, predictions, 0);
+    }
+
+
+    /**
+     * Predicts every output of the network for a batch of samples, given their packed features, reading the features and
+     * writing the predictions from a position in each array
+     *
+     * @param features          the row-major features of the samples, with one row of a value for each input per sample
+     * @param featuresOffset    the position in the features array of the first feature of the first sample
+     * @param numberOfSamples   the number of samples to predict
+     * @param predictions       the array to write the row-major predictions into, with one row of a value for each output
+     *                          per sample
+     * @param predictionsOffset the position in the predictions array to write the first prediction to
+     * @throws IllegalArgumentException if either array is too small for the number of samples
+     */
+    public void predictBatch(double[] features, int featuresOffset, int numberOfSamples, double[] predictions, int predictionsOffset) {
+        if (numberOfSamples < 0 || featuresOffset < 0 || (long) featuresOffset + (long) numberOfSamples * numberOfInputs > features.length) {
+            throw new IllegalArgumentException("The features array does not hold " + numberOfSamples + " samples of "
+                    + numberOfInputs + " features from position " + featuresOffset);
+        }
+        validatePredictionsArray(numberOfSamples, predictions, predictionsOffset);
+
+        allocatePredictionBuffers();
+        for (int tileStart = 0; tileStart < numberOfSamples; tileStart += PREDICTION_TILE_SIZE) {
+            int numberOfTileSamples = Math.min(PREDICTION_TILE_SIZE, numberOfSamples - tileStart);
+            System.arraycopy(features, featuresOffset + tileStart * numberOfInputs, predictionInputs, 0, numberOfTileSamples * numberOfInputs);
+            predictTile(numberOfTileSamples, predictions, predictionsOffset + tileStart * numberOfOutputs);
+        }
+    }
+
+
+    /**
+     * Predicts every output of the network for a range of consecutive samples of a dataset, a tile at a time
+     *
+     * @param dataset           the dataset containing the samples
+     * @param first             the index in the dataset of the first sample to predict
+     * @param numberOfSamples   the number of samples to predict
+     * @param predictions       the array to write the row-major predictions into, with one row of a value for each output
+     *                          per sample
+     * @param predictionsOffset the position in the predictions array to write the first prediction to
+     * @throws IllegalArgumentException if the dataset has the wrong number of features or too few samples, or the
+     *                                  predictions array is too small for the number of samples
+     */
+    public void predictBatch(Dataset dataset, int first, int numberOfSamples, double[] predictions, int predictionsOffset) {
+        if (dataset.getNumberOfFeatures() != numberOfInputs) {
+            throw new IllegalArgumentException("The network has " + numberOfInputs + " inputs, but the dataset has "
+                    + dataset.getNumberOfFeatures() + " features");
+        }
+        if (numberOfSamples < 0 || first < 0 || first + numberOfSamples > dataset.size()) {
+            throw new IllegalArgumentException("The dataset does not hold " + numberOfSamples + " samples from sample " + first);
+        }
+        validatePredictionsArray(numberOfSamples, predictions, predictionsOffset);
+
+        allocatePredictionBuffers();
+        for (int tileStart = 0; tileStart < numberOfSamples; tileStart += PREDICTION_TILE_SIZE) {
+            int numberOfTileSamples = Math.min(PREDICTION_TILE_SIZE, numberOfSamples - tileStart);
+            dataset.copyFeatures(first + tileStart, numberOfTileSamples, predictionInputs, 0);
+            predictTile(numberOfTileSamples, predictions, predictionsOffset + tileStart * numberOfOutputs);
+        }
+    }
+
+
+    /**
+     * Returns the number of values the network predicts for each catchment area
+     *
+     * @return the number of outputs of the network
+     */
+    public int getNumberOfOutputs() {
+        return numberOfOutputs;
+    }
+
+
+    /**
+     * Trains the network using the backpropagation algorithm, given 2 lists of catchment area. The lists are copied into
+     * datasets once before training, so that no catchment area is read during training.
      *
      * @param trainingDataList   a list of catchment area to train the network on
      * @param validationDataList a list of catchment area to validate the network on to prevent over-training
+     * @return an immutable model of the trained network, which can predict on any number of threads at once
      */
-    public void train(List<CatchmentArea> trainingDataList, List<CatchmentArea> validationDataList) {
-        int epochCount = 0;
+    public InferenceModel train(List<CatchmentArea> trainingDataList, List<CatchmentArea> validationDataList) {
+        return train(Dataset.fromCatchmentAreas(trainingDataList, numberOfOutputs), Dataset.fromCatchmentAreas(validationDataList, numberOfOutputs));
+    }
+
+
+    /**
+     * Trains the network using the backpropagation algorithm, given 2 datasets
+     *
+     * @param trainingData   a dataset to train the network on
+     * @param validationData a dataset to validate the network on to prevent over-training
+     * @return an immutable model of the trained network, which can predict on any number of threads at once
+     */
+    public InferenceModel train(Dataset trainingData, Dataset validationData) {
+        return train(Collections.singletonList(trainingData), Collections.singletonList(validationData));
+    }
 
-        // Initialising Lists to store data in during network training. This is used for CSV File Writes so that graphs can
-        // be plotted.
-        List<Double> rootMeanSquaredErrorValidationDataset = new ArrayList<>();
-        List<Double> rootMeanSquaredErrorTrainingDataset = new ArrayList<>();
-        List<Integer> epochNumberData = new ArrayList<>();
-        List<Double> learningRateData = new ArrayList<>();
 
-        // Initialising Lists required for Batch Processing
-        int batchSize = 171;
-        this.batchProcessingInputsToHiddenLayerWeighting = new Double[numberOfInputs][numberOfHiddenNodes][batchSize];
-        this.batchProcessingHiddenLayerToOutputWeighting = new Double[numberOfHiddenNodes][batchSize];
-        this.batchProcessingHiddenLayerBiases = new Double[numberOfHiddenNodes][batchSize];
-        this.batchProcessingOutputLayerBias = new Double[batchSize];
+    /**
+     * Trains the network using the backpropagation algorithm, given 2 datasets which are each split into chunks. Every
+     * epoch iterates over the training chunks again, and trains on each chunk in turn, so the datasets can be streamed
+     * from a source that is too large to be held in memory, such as StreamingCatchmentData.
+     * <p>
+     * If Batch Processing is used, no mini-batch spans 2 chunks, so the chunk size should be a multiple of the batch size
+     * for the network to be trained exactly as if the dataset were in a single chunk.
+     *
+     * @param trainingChunks   the chunks of a dataset to train the network on, which can be iterated over more than once
+     * @param validationChunks the chunks of a dataset to validate the network on to prevent over-training, which can be
+     *                         iterated over more than once
+     * @return an immutable model of the trained network, which can predict on any number of threads at once
+     */
+    public InferenceModel train(Iterable<Dataset> trainingChunks, Iterable<Dataset> validationChunks) {
+        int epochCount = 0;
 
         // Initialising Learning Rate bounds for Annealing
         double startingLearningRate = this.learningRate;
@@ -126,6 +616,7 @@ public class NeuralNetwork {
         double previousRootMeanSquaredError = Double.MAX_VALUE;
 
         boolean carryOnTraining = true;
+        EarlyStoppingMonitor earlyStoppingMonitor = new EarlyStoppingMonitor(this.earlyStoppingPolicy, layers);
 
         // If the network has been configured with a number of epochs to train for of 0, then this means training should be
         // stopped automatically when the error of the validation dataset increases. Hence, if it is not 0, then we can disregard
@@ -135,611 +626,1049 @@ public class NeuralNetwork {
             carryOnTraining = false;
         }
 
+        // If the network was resumed from a checkpoint, carry on from the epoch, starting learning rate and previous RMSE
+        // that the checkpoint was taken with, rather than starting training afresh
+        if (this.resumeCheckpoint != null) {
+            epochCount = this.resumeCheckpoint.getEpochCount();
+            startingLearningRate = this.resumeCheckpoint.getStartingLearningRate();
+            previousRootMeanSquaredError = this.resumeCheckpoint.getBestValidationRootMeanSquaredError();
+            carryOnTraining = this.resumeCheckpoint.isCarryOnTraining();
+            earlyStoppingMonitor.restore(this.resumeCheckpoint.getEarlyStoppingBestRootMeanSquaredError(), this.resumeCheckpoint.getImprovedRootMeanSquaredError(),
+                    this.resumeCheckpoint.getValidationsWithoutImprovement(), this.resumeCheckpoint.getEarlyStoppingHistory(),
+                    this.resumeCheckpoint.getBestWeights(), this.resumeCheckpoint.getBestBiases());
+            this.resumeCheckpoint = null;
+        }
+
+        // The epochs trained before the network was resumed are not part of this run's training time
+        int startingEpochCount = epochCount;
+
         double squaredErrorTraining = 0.0;
+        long numberOfTrainingSamples = 0;
+        long trainingTime = 0;
+        long lastValidationTime = System.nanoTime();
+        int lastValidationEpoch = epochCount;
+        PendingValidation pendingValidation = null;
+        // With asynchronous validation, Bold Driver rejects weights and biases a validation interval after they were
+        // validated, so the weights and biases it last accepted are kept to go back to
+        InferenceModel lastAcceptedModel = this.asynchronousValidation && this.useBoldDriver ? freeze() : null;
+        if (TrainingInstrumentation.ENABLED) {
+            instrumentation.trainingStarted(epochCount, this.learningRate);
+        }
 
-        // Carry on training and validating the network while either:
-        //     1 - The error on the validation dataset has not increased (if training is to be terminated automatically)
-        //     2 - The number of epochs trained for has not reached the specified number to train for
-        while (carryOnTraining || epochCount < this.numberOfEpochsToTrainFor) {
-
-            // Train the network for 500 epochs before validating it
-            for (int i = 0; i < 500; i++) {
-                epochCount++;
-                squaredErrorTraining = 0.0;
-                int trainingDataNumber = 0;
-                // Do a forwards and backwards pass for every catchment area in the training dataset (1 forwards and backwards pass
-                // through all data in the training dataset is 1 epoch)
-                for (CatchmentArea trainingData : trainingDataList) {
-
-                    // Perform a forwards pass through the network and calculate the output
-                    calculateOutput(new Double[]{trainingData.getArea(), trainingData.getBaseFlowIndex(), trainingData.getFloodAttenuation(), trainingData.getFloodPlainExtent(),
-                            trainingData.getLongestDrainagePath(), trainingData.getProportionWetDays(), trainingData.getMedianAnnualMax1DayRainfall(), trainingData.getStandardAnnualAverageRainfall()});
-                    squaredErrorTraining = squaredErrorTraining + Math.pow(trainingData.getIndexFlood() - output, 2);
-
-                    // Perform a backwards pass through the network
-                    calculateOutputDelta(trainingData.getIndexFlood());
-                    calculateHiddenLayerDeltas();
-
-                    // If Batch Processing is to be used, then calculate the weight changes and add these to the corresponding Batch Processing list.
-                    // Otherwise, calculate the weight changes and perform them.
-                    if (improvements.contains(Improvements.BATCH_PROCESSING)) {
-                        appendWeightChanges(new Double[]{trainingData.getArea(), trainingData.getBaseFlowIndex(), trainingData.getFloodAttenuation(), trainingData.getFloodPlainExtent(),
-                                trainingData.getLongestDrainagePath(), trainingData.getProportionWetDays(), trainingData.getMedianAnnualMax1DayRainfall(), trainingData.getStandardAnnualAverageRainfall()}, trainingDataNumber);
-                    } else {
-                        this.inputsToHiddenLayerWeighting = recalculateInputsToHiddenLayerWeighting(new Double[]{trainingData.getArea(), trainingData.getBaseFlowIndex(), trainingData.getFloodAttenuation(),
-                                trainingData.getFloodPlainExtent(), trainingData.getLongestDrainagePath(), trainingData.getProportionWetDays(), trainingData.getMedianAnnualMax1DayRainfall(),
-                                trainingData.getStandardAnnualAverageRainfall()}, trainingDataList.size());
-                        this.hiddenLayerBiases = recalculateHiddenLayerBiases(trainingDataList.size());
-                        this.hiddenLayerToOutputWeighting = recalculateHiddenLayerToOutputWeighting(trainingDataList.size());
-                        this.outputLayerBias = recalculateOutputLayerBias(trainingDataList.size());
+        // The threads and instrumentation are shut down even if training fails, so that no threads are left running and the
+        // network is not left registered with JMX
+        try {
+            // Carry on training and validating the network while either:
+            //     1 - The early stopping policy has not stopped training (if training is to be terminated automatically)
+            //     2 - The number of epochs trained for has not reached the specified number to train for
+            while (carryOnTraining || epochCount < this.numberOfEpochsToTrainFor) {
+
+                // Train the network until the early stopping policy says it is due to be validated. If the policy is based on
+                // time, the network is also validated after the final epoch, so that training for a fixed number of epochs
+                // does not go past it.
+                long trainingStartTime = System.nanoTime();
+                boolean validationDue = false;
+                while (!validationDue) {
+                    epochCount++;
+                    squaredErrorTraining = 0.0;
+                    numberOfTrainingSamples = 0;
+                    // If the chunks are being streamed, the iterator is closed even if training fails part-way through the
+                    // pass, so that the chunks are not left being read in the background
+                    Iterator<Dataset> trainingChunkIterator = trainingChunks.iterator();
+                    try {
+                        while (trainingChunkIterator.hasNext()) {
+                            Dataset trainingData = trainingChunkIterator.next();
+                            validateDataset(trainingData);
+                            squaredErrorTraining = squaredErrorTraining + trainEpoch(trainingData);
+                            numberOfTrainingSamples = numberOfTrainingSamples + trainingData.size();
+                        }
+                    } finally {
+                        PrefetchingIterator.closeIfPrefetching(trainingChunkIterator);
+                    }
+                    if (TrainingInstrumentation.ENABLED) {
+                        instrumentation.epochFinished(epochCount, numberOfTrainingSamples, Math.sqrt(squaredErrorTraining / (numberOfTrainingSamples * numberOfOutputs)), this.learningRate);
                     }
 
-                    // If the batch size limit has been reached, then calculate the average weight changes and perform them.
-                    if (trainingDataNumber == batchSize - 1 && improvements.contains(Improvements.BATCH_PROCESSING)) {
-                        this.inputsToHiddenLayerWeighting = recalculateInputsToHiddenLayerWeighting(new Double[]{trainingData.getArea(), trainingData.getBaseFlowIndex(), trainingData.getFloodAttenuation(),
-                                trainingData.getFloodPlainExtent(), trainingData.getLongestDrainagePath(), trainingData.getProportionWetDays(), trainingData.getMedianAnnualMax1DayRainfall(),
-                                trainingData.getStandardAnnualAverageRainfall()}, batchSize);
-                        this.hiddenLayerBiases = recalculateHiddenLayerBiases(batchSize);
-                        this.hiddenLayerToOutputWeighting = recalculateHiddenLayerToOutputWeighting(batchSize);
-                        this.outputLayerBias = recalculateOutputLayerBias(batchSize);
+                    validationDue = this.earlyStoppingPolicy.isValidationDue(epochCount, System.nanoTime() - lastValidationTime)
+                            || (this.earlyStoppingPolicy.isTimeBased() && epochCount == this.numberOfEpochsToTrainFor);
+
+                    // A checkpoint due after an epoch the network is validated after is taken after validating, below, so that
+                    // resuming from it does not skip the validation. With asynchronous validation, checkpoints are only taken
+                    // after validating, below, so that no validation is still running when one is taken.
+                    if (!validationDue && !this.asynchronousValidation) {
+                        checkpointIfDue(epochCount, startingLearningRate, previousRootMeanSquaredError, carryOnTraining, earlyStoppingMonitor);
                     }
+                }
+                trainingTime = trainingTime + (System.nanoTime() - trainingStartTime);
+                // Calculate the RMSE for the training data
+                double rootMeanSquaredErrorTraining = Math.sqrt(squaredErrorTraining / (numberOfTrainingSamples * numberOfOutputs));
+
+                // With asynchronous validation, a checkpoint is taken at the first validation at or after the epoch it is due
+                boolean checkpointDue = this.asynchronousValidation && this.checkpointWriter != null
+                        && epochCount / this.checkpointInterval > lastValidationEpoch / this.checkpointInterval;
+
+                // If Annealing is to be used, then recalculate the Learning Rate. It depends only on the number of epochs, so it is
+                // recalculated at every validation epoch, whether or not a result is ready, and follows the same schedule with
+                // asynchronous validation.
+                if (this.useAnnealing) {
+                    this.learningRate = endingLearningRate + (startingLearningRate - endingLearningRate) * (1 - (1 / (1 + Math.exp(10 - ((20 * epochCount) / numberOfEpochsToTrainFor)))));
+                }
 
-                    if (trainingDataNumber == batchSize - 1) {
-                        trainingDataNumber = 0;
+                // With asynchronous validation, the result of the validation started at the previous validation epoch is applied
+                // first, and then the current weights and biases are validated on the validation thread while training carries
+                // on. The current weights and biases are validated on this thread instead if training is about to finish, or a
+                // checkpoint is due, so that training always finishes and checkpoints are always taken with nothing pending.
+                boolean currentWeightsValidated = false;
+                while (!currentWeightsValidated) {
+                    double rootMeanSquaredError;
+                    InferenceModel validatedModel;
+                    int validatedEpochCount;
+                    double validatedTrainingRootMeanSquaredError;
+                    if (pendingValidation != null) {
+                        rootMeanSquaredError = pendingValidation.awaitRootMeanSquaredError();
+                        validatedModel = pendingValidation.model;
+                        validatedEpochCount = pendingValidation.epochCount;
+                        validatedTrainingRootMeanSquaredError = pendingValidation.trainingRootMeanSquaredError;
+                        pendingValidation = null;
+                    } else if (this.asynchronousValidation && !checkpointDue && (carryOnTraining || epochCount < this.numberOfEpochsToTrainFor)) {
+                        pendingValidation = startValidation(validationChunks, epochCount, rootMeanSquaredErrorTraining);
+                        break;
                     } else {
-                        trainingDataNumber++;
+                        // Now do a forwards pass only for every catchment area in the validation dataset
+                        long validationStartTime = TrainingInstrumentation.ENABLED ? System.nanoTime() : 0;
+                        rootMeanSquaredError = calculateRootMeanSquaredError(validationChunks);
+                        if (TrainingInstrumentation.ENABLED) {
+                            instrumentation.recordValidation(validationStartTime);
+                        }
+                        validatedModel = null;
+                        validatedEpochCount = epochCount;
+                        validatedTrainingRootMeanSquaredError = rootMeanSquaredErrorTraining;
+                        currentWeightsValidated = true;
                     }
-                }
-            }
-            // Calculate the RMSE for the training data, and add this to the corresponding list
-            double rootMeanSquaredErrorTraining = Math.sqrt(squaredErrorTraining / trainingDataList.size());
-            rootMeanSquaredErrorTrainingDataset.add(rootMeanSquaredErrorTraining);
+                    this.validationRootMeanSquaredError = rootMeanSquaredError;
 
+                    // Pass the results of the validation to the metrics sink, so that graphs can be plotted
+                    this.metricsSink.recordValidation(validatedEpochCount, validatedTrainingRootMeanSquaredError, rootMeanSquaredError, this.learningRate);
+                    if (TrainingInstrumentation.ENABLED) {
+                        instrumentation.validationFinished(rootMeanSquaredError);
+                    }
 
-            double squaredError = 0.0;
-            // Now do a forwards pass only for every catchment area in the validation dataset, calculating the error after
-            // each forward pass.
-            for (CatchmentArea validationData : validationDataList) {
+                    // If the calculated RMSE is greater than the previous RMSE, then this is an indication that we may be over-training
+                    // the network on the test dataset, so the early stopping policy decides whether training should be terminated.
+                    boolean weightAndBiasChangesRejected = false;
+                    if (rootMeanSquaredError > previousRootMeanSquaredError) {
+                        double rootMeanSquaredErrorDifference = rootMeanSquaredError - previousRootMeanSquaredError;
+                        double rootMeanSquaredErrorPercentageIncrease = (rootMeanSquaredErrorDifference / previousRootMeanSquaredError) * 100;
+
+                        // If Bold Driver is to be used, the RMSE has increased by more than 2%, and updating the learning rate will
+                        // not take it lower than 0.01, then undo the weight change, and update the value of the learning rate. If
+                        // the weights and biases were validated on the validation thread, training has moved on since, so the
+                        // weights and biases last accepted are restored instead.
+                        if (this.useBoldDriver && rootMeanSquaredErrorPercentageIncrease > 2 && this.learningRate * 0.7 > 0.01) {
+                            if (validatedModel != null) {
+                                this.restoreWeightsAndBiases(lastAcceptedModel);
+                            } else {
+                                this.undoWeightAndBiasChanges();
+                            }
+                            this.learningRate = this.learningRate * 0.7;
+                            weightAndBiasChangesRejected = true;
+                        } else if (earlyStoppingMonitor.recordValidation(rootMeanSquaredError, validatedModel)) {
+                            carryOnTraining = false;
+                        }
+                    } else {
+                        if (earlyStoppingMonitor.recordValidation(rootMeanSquaredError, validatedModel)) {
+                            carryOnTraining = false;
+                        }
+                        previousRootMeanSquaredError = rootMeanSquaredError;
+                        // If Bold Driver is to be used, the RMSE has not increased, and updating the learning rate will not take it
+                        // higher than 0.5, then accept the weight change, and update the value of the learning rate
+                        if (this.useBoldDriver && this.learningRate * 1.05 < 0.5) {
+                            // If using Bold Driver and changing the learning rate will not take it higher than 0.5
+                            this.learningRate = this.learningRate * 1.05;
+                        }
+                    }
 
-                // Perform a forwards pass through the network and calculate the output
-                calculateOutput(new Double[]{validationData.getArea(), validationData.getBaseFlowIndex(), validationData.getFloodAttenuation(), validationData.getFloodPlainExtent(),
-                        validationData.getLongestDrainagePath(), validationData.getProportionWetDays(), validationData.getMedianAnnualMax1DayRainfall(), validationData.getStandardAnnualAverageRainfall()});
-                squaredError = squaredError + Math.pow(validationData.getIndexFlood() - output, 2);
+                    // Keep the weights and biases to go back to if Bold Driver rejects the next asynchronous result. After
+                    // validating on this thread, these are the weights and biases training carries on from, which are also
+                    // those saved in a checkpoint, so a resumed network starts from the same ones.
+                    if (lastAcceptedModel != null) {
+                        if (validatedModel == null) {
+                            lastAcceptedModel = freeze();
+                        } else if (!weightAndBiasChangesRejected) {
+                            lastAcceptedModel = validatedModel;
+                        }
+                    }
+                }
+                lastValidationTime = System.nanoTime();
+                lastValidationEpoch = epochCount;
+                if (checkpointDue) {
+                    saveCheckpoint(epochCount, startingLearningRate, previousRootMeanSquaredError, carryOnTraining, earlyStoppingMonitor);
+                } else {
+                    checkpointIfDue(epochCount, startingLearningRate, previousRootMeanSquaredError, carryOnTraining, earlyStoppingMonitor);
+                }
             }
 
-            // Calculate the RMSE for the validation data, and add this to the corresponding list
-            double rootMeanSquaredError = Math.sqrt(squaredError / validationDataList.size());
-            rootMeanSquaredErrorValidationDataset.add(rootMeanSquaredError);
-            epochNumberData.add(epochCount);
-
-            // If Annealing is to be used, then recalculate the Learning Rate, and add this to the corresponding list
-            if (improvements.contains(Improvements.ANNEALING)) {
-                this.learningRate = endingLearningRate + (startingLearningRate - endingLearningRate) * (1 - (1 / (1 + Math.exp(10 - ((20 * epochCount) / numberOfEpochsToTrainFor)))));
+            // If the early stopping policy restores the best weights, and the network has moved on from them, put them back.
+            // The previous weights no longer come before the current weights, so the change cannot be undone.
+            if (this.earlyStoppingPolicy.isRestoreBestWeights() && earlyStoppingMonitor.restoreBestWeights(this.validationRootMeanSquaredError)) {
+                this.previousWeightsAndBiasesAvailable = false;
+                this.validationRootMeanSquaredError = earlyStoppingMonitor.getBestRootMeanSquaredError();
             }
-            learningRateData.add(this.learningRate);
-
-            // If the calculated RMSE is greater than the previous RMSE, then this is an indication that training should be
-            // terminated as we may be over-training the network on the test dataset.
-            if (rootMeanSquaredError > previousRootMeanSquaredError) {
-                double rootMeanSquaredErrorDifference = rootMeanSquaredError - previousRootMeanSquaredError;
-                double rootMeanSquaredErrorPercentageIncrease = (rootMeanSquaredErrorDifference / previousRootMeanSquaredError) * 100;
-
-                // If Bold Driver is to be used, the RMSE has increased by more than 2%, and updating the learning rate will
-                // not take it lower than 0.01, then undo the weight change, and update the value of the learning rate
-                if (improvements.contains(Improvements.BOLD_DRIVER) && rootMeanSquaredErrorPercentageIncrease > 2 && this.learningRate * 0.7 > 0.01) {
-                    this.undoWeightAndBiasChanges();
-                    this.learningRate = this.learningRate * 0.7;
-                } else {
-                    carryOnTraining = false;
-                }
-            } else {
-                previousRootMeanSquaredError = rootMeanSquaredError;
-                // If Bold Driver is to be used, the RMSE has not increased, and updating the learning rate will not take it
-                // higher than 0.5, then accept the weight change, and update the value of the learning rate
-                if (improvements.contains(Improvements.BOLD_DRIVER) && this.learningRate * 1.05 < 0.5) {
-                    // If using Bold Driver and changing the learning rate will not take it higher than 0.5
-                    this.learningRate = this.learningRate * 1.05;
-                }
+
+            awaitCheckpointWrites();
+        } finally {
+            shutdownHogwildPool();
+            shutdownValidationExecutor();
+            if (TrainingInstrumentation.ENABLED) {
+                instrumentation.trainingFinished();
             }
         }
 
-        System.out.print("\nFinished training using:" +
-                "\n  - Hidden Layers = " + this.numberOfHiddenNodes +
+        this.samplesPerSecond = (double) (epochCount - startingEpochCount) * numberOfTrainingSamples / (trainingTime / 1e9);
+
+        // The summary is built up and printed in one go, so that it is not interleaved with the output of networks being
+        // trained on other threads
+        StringBuilder trainingSummary = new StringBuilder("\nFinished training using:" +
+                "\n  - Hidden Layers = " + hiddenLayerSizesDescription() +
+                "\n  - Outputs = " + this.numberOfOutputs +
                 "\n  - Learning Rate = " + this.learningRate +
                 "\n  - Number of Epochs = " + epochCount +
                 "\n  - Activation Function = " + this.activationFunction.toString() +
+                "\n  - Seed = " + this.seed +
+                "\n  - Samples per Second = " + Math.round(this.samplesPerSecond) +
                 "\n  - Improvements = ");
         for (int improvementNumber = 0; improvementNumber < this.improvements.size(); improvementNumber++) {
             if (improvementNumber != this.improvements.size() - 1) {
-                System.out.print(this.improvements.get(improvementNumber).toString() + ", ");
+                trainingSummary.append(this.improvements.get(improvementNumber).toString()).append(", ");
             } else {
-                System.out.println(this.improvements.get(improvementNumber).toString());
+                trainingSummary.append(this.improvements.get(improvementNumber).toString()).append("\n");
             }
         }
+        System.out.print(trainingSummary);
 
-        // Write to CSV Files for Graphs
-        try {
-            File csvFile = new File("CSV/RMSE_Validation_Dataset.csv");
-            File csvFileTraining = new File("CSV/RMSE_Training_Dataset.csv");
-            File csvFileLearningRate = new File("CSV/Learning_Rate_Change.csv");
-            PrintWriter out = new PrintWriter(csvFile);
-            PrintWriter outTraining = new PrintWriter(csvFileTraining);
-            PrintWriter outLearningRate = new PrintWriter(csvFileLearningRate);
-
-            for (int i = 0; i < rootMeanSquaredErrorValidationDataset.size(); i++) {
-                out.println(epochNumberData.get(i) + ", " + rootMeanSquaredErrorValidationDataset.get(i));
-            }
-            out.close();
-
-            for (int i = 0; i < rootMeanSquaredErrorTrainingDataset.size(); i++) {
-                outTraining.println(epochNumberData.get(i) + ", " + rootMeanSquaredErrorTrainingDataset.get(i));
-            }
-            outTraining.close();
+        // Wait for the metrics sink to finish off the results, such as writing the CSV files for graphs
+        this.metricsSink.trainingFinished();
+        return freeze();
+    }
 
-            for (int i = 0; i < learningRateData.size(); i++) {
-                outLearningRate.println(epochNumberData.get(i) + ", " + learningRateData.get(i));
-            }
-            outLearningRate.close();
 
-        } catch (FileNotFoundException e) {
-            System.out.println("File not found");
+    /**
+     * Hands a checkpoint of the network to the checkpoint writer, if checkpoints are being saved and one is due after the
+     * given epoch
+     *
+     * @param epochCount                         the number of epochs trained for so far
+     * @param startingLearningRate               the learning rate at the start of training
+     * @param bestValidationRootMeanSquaredError the validation RMSE that the next validation RMSE will be compared against
+     * @param carryOnTraining                    true if training is to carry on until the early stopping policy stops it
+     * @param earlyStoppingMonitor               the monitor tracking the validation results of the training run
+     */
+    private void checkpointIfDue(int epochCount, double startingLearningRate, double bestValidationRootMeanSquaredError, boolean carryOnTraining,
+                                 EarlyStoppingMonitor earlyStoppingMonitor) {
+        if (checkpointWriter == null || epochCount % checkpointInterval != 0) {
+            return;
         }
+        saveCheckpoint(epochCount, startingLearningRate, bestValidationRootMeanSquaredError, carryOnTraining, earlyStoppingMonitor);
     }
 
 
     /**
-     * Recalculates the weighting for the connections between the input nodes and hidden layer nodes
+     * Hands a checkpoint of the network to the checkpoint writer, which must have been set
      *
-     * @param inputValues an array of the input values for the current catchment area
-     * @param batchSize   the batch size to be used in the case of batch processing
-     * @return a 2D array of the updated weights for the connections between the input nodes and hidden layer nodes
+     * @param epochCount                         the number of epochs trained for so far
+     * @param startingLearningRate               the learning rate at the start of training
+     * @param bestValidationRootMeanSquaredError the validation RMSE that the next validation RMSE will be compared against
+     * @param carryOnTraining                    true if training is to carry on until the early stopping policy stops it
+     * @param earlyStoppingMonitor               the monitor tracking the validation results of the training run
      */
-    private Double[][] recalculateInputsToHiddenLayerWeighting(Double[] inputValues, int batchSize) {
-        Double[][] inputsToHiddenLayerWeighting = new Double[numberOfInputs][numberOfHiddenNodes];
+    private void saveCheckpoint(int epochCount, double startingLearningRate, double bestValidationRootMeanSquaredError, boolean carryOnTraining,
+                                EarlyStoppingMonitor earlyStoppingMonitor) {
+        // The weights and biases are copied on the training thread, so the checkpoint is not affected by further training
+        double[][] weights = new double[layers.length][];
+        double[][] previousWeights = new double[layers.length][];
+        double[][] biases = new double[layers.length][];
+        double[][] previousBiases = new double[layers.length][];
+        int[] layerSizes = new int[layers.length];
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            weights[layerNum] = layers[layerNum].copyWeights();
+            previousWeights[layerNum] = layers[layerNum].copyPreviousWeights();
+            biases[layerNum] = layers[layerNum].copyBiases();
+            previousBiases[layerNum] = layers[layerNum].copyPreviousBiases();
+            layerSizes[layerNum] = layers[layerNum].getNumberOfNodes();
+        }
+        checkpointWriter.submit(new TrainingCheckpoint(numberOfInputs, layerSizes, activationFunction, improvements, numberOfEpochsToTrainFor,
+                batchSize, seed, epochCount, learningRate, startingLearningRate, bestValidationRootMeanSquaredError, validationRootMeanSquaredError,
+                previousWeightsAndBiasesAvailable, carryOnTraining, weights, previousWeights, biases, previousBiases,
+                earlyStoppingMonitor.getBestRootMeanSquaredError(), earlyStoppingMonitor.getImprovedRootMeanSquaredError(),
+                earlyStoppingMonitor.getValidationsWithoutImprovement(),
+                earlyStoppingMonitor.copyBestHistory(), earlyStoppingMonitor.copyBestWeights(), earlyStoppingMonitor.copyBestBiases()));
+    }
 
-        // For each connection from every input node to every hidden layer node
-        for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
-            for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-                double newWeight;
 
-                // If Batch Processing is to be used, calculate the average of each weight to be updated and update the weight
-                // Otherwise, just update the weight
-                if (improvements.contains(Improvements.BATCH_PROCESSING)) {
-                    double weightChangeSum = 0;
-                    for (int iterationCount = 0; iterationCount < batchSize; iterationCount++) {
-                        weightChangeSum = weightChangeSum + this.batchProcessingInputsToHiddenLayerWeighting[inputNum][hiddenLayerNum][iterationCount];
-                    }
-                    double averageWeightChange = weightChangeSum / batchSize;
-                    newWeight = this.inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum] + (learningRate * averageWeightChange);
-                } else {
-                    newWeight = this.inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum] + (learningRate * (hiddenLayerDeltas[hiddenLayerNum] * inputValues[inputNum]));
-                }
+    /**
+     * Waits for the most recent checkpoint to be written, if checkpoints are being saved, so that the checkpoint file is
+     * up to date when training finishes
+     */
+    private void awaitCheckpointWrites() {
+        if (checkpointWriter == null) {
+            return;
+        }
+        try {
+            checkpointWriter.awaitWrites();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                // If Momentum is to be used, calculate the new weight value with momentum, and add this to the weight
-                if (improvements.contains(Improvements.MOMENTUM)) {
-                    double weightDifference = newWeight - this.inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum];
-                    newWeight = newWeight + (momentumTerm * weightDifference);
-                }
 
-                // Set the previous weight to the current weight, and then update the current weight
-                this.previousInputsToHiddenLayerWeighting[inputNum][hiddenLayerNum] = this.inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum];
-                inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum] = newWeight;
-            }
+    /**
+     * Creates an immutable model of the network's current weights and biases, which is separate from the state used to
+     * train the network. The model is unaffected by any further training, and can predict on any number of threads at
+     * once, unlike the network itself.
+     *
+     * @return a new model of the network
+     */
+    public InferenceModel freeze() {
+        double[][] weights = new double[layers.length][];
+        double[][] biases = new double[layers.length][];
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            weights[layerNum] = layers[layerNum].copyWeights();
+            biases[layerNum] = layers[layerNum].copyBiases();
         }
-        return inputsToHiddenLayerWeighting;
+        return new InferenceModel(numberOfInputs, activationFunction, weights, biases);
     }
 
 
     /**
-     * Recalculates the weighting for the connections between the hidden layer nodes and the output node
+     * Performs a single epoch of training, which is a forwards and backwards pass for every catchment area in the training
+     * dataset
      *
-     * @param batchSize the batch size to be used in the case of batch processing
-     * @return an array of the updated weights for the connections between the input nodes and hidden layer nodes
+     * @param trainingData a dataset to train the network on
+     * @return the sum of the squared errors of the network's outputs for the training dataset during the epoch
      */
-    private Double[] recalculateHiddenLayerToOutputWeighting(int batchSize) {
-        Double[] hiddenLayerToOutputWeighting = new Double[numberOfHiddenNodes];
-
-        // For each connection from the hidden layer nodes to the output node
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            double newWeight;
+    double trainEpoch(Dataset trainingData) {
+        // If Batch Processing is to be used, then train on a whole mini-batch at a time
+        if (this.useBatchProcessing) {
+            return trainEpochInBatches(trainingData);
+        }
 
-            // If Batch Processing is to be used, calculate the average of each weight to be updated and update the weight
-            // Otherwise, just update the weight
-            if (improvements.contains(Improvements.BATCH_PROCESSING)) {
-                double weightChangeSum = 0;
-                for (int iterationCount = 0; iterationCount < batchSize; iterationCount++) {
-                    weightChangeSum = weightChangeSum + this.batchProcessingHiddenLayerToOutputWeighting[hiddenLayerNum][iterationCount];
-                }
-                double averageWeightChange = weightChangeSum / batchSize;
-                newWeight = this.hiddenLayerToOutputWeighting[hiddenLayerNum] + (learningRate * averageWeightChange);
+        // If Hogwild is to be used, then train on the catchment areas with several threads at once
+        if (this.useHogwild) {
+            return trainEpochHogwild(trainingData);
+        }
 
-            } else {
-                newWeight = this.hiddenLayerToOutputWeighting[hiddenLayerNum] + (learningRate * outputDelta * hiddenLayerOutputs[hiddenLayerNum]);
+        double squaredErrorTraining = 0.0;
+        for (int trainingDataIndex = 0; trainingDataIndex < trainingData.size(); trainingDataIndex++) {
+            // Perform a forwards pass through the network and calculate the outputs
+            trainingData.copyFeatures(trainingDataIndex, 1, inputValues, 0);
+            trainingData.copyTargets(trainingDataIndex, 1, numberOfOutputs, expectedValues, 0);
+
+            // If instrumentation is switched on, time each phase for one catchment area in every sampling interval
+            boolean timed = TrainingInstrumentation.ENABLED && (trainingDataIndex & TrainingInstrumentation.SAMPLING_MASK) == 0;
+            long phaseStartTime = timed ? System.nanoTime() : 0;
+            calculateOutput(inputValues);
+            if (timed) {
+                phaseStartTime = instrumentation.recordForwardPass(phaseStartTime);
             }
+            squaredErrorTraining = addSquaredErrors(squaredErrorTraining, expectedValues, outputLayer.getOutputs(), numberOfOutputs);
 
-            // If Momentum is to be used, calculate the new weight value with momentum, and add this to the weight
-            if (improvements.contains(Improvements.MOMENTUM)) {
-                double weightDifference = newWeight - this.hiddenLayerToOutputWeighting[hiddenLayerNum];
-                newWeight = newWeight + (momentumTerm * weightDifference);
+            // Perform a backwards pass through the network, then calculate the weight changes and perform them
+            if (timed) {
+                phaseStartTime = System.nanoTime();
+            }
+            calculateDeltas();
+            if (timed) {
+                phaseStartTime = instrumentation.recordBackwardPass(phaseStartTime);
+            }
+            recalculateWeightsAndBiases();
+            if (timed) {
+                instrumentation.recordWeightUpdate(phaseStartTime);
             }
-
-            // Set the previous weight to the current weight, and then update the current weight
-            previousHiddenLayerToOutputWeighting[hiddenLayerNum] = this.hiddenLayerToOutputWeighting[hiddenLayerNum];
-            hiddenLayerToOutputWeighting[hiddenLayerNum] = newWeight;
         }
-        return hiddenLayerToOutputWeighting;
+        return squaredErrorTraining;
     }
 
 
     /**
-     * Recalculates the biases for the hidden layer nodes
+     * Performs a single epoch of training using Batch Processing. The training dataset is split into mini-batches, and for
+     * each mini-batch the forwards and backwards passes are done for every catchment area at once, before the weights and
+     * biases are updated with the average change over the mini-batch.
      *
-     * @param batchSize the batch size to be used in the case of batch processing
-     * @return an array of the updated biases for the hidden layer nodes
+     * @param trainingData a dataset to train the network on
+     * @return the sum of the squared errors of the network's outputs for the training dataset during the epoch
      */
-    private Double[] recalculateHiddenLayerBiases(int batchSize) {
-        Double[] hiddenLayerBiases = new Double[numberOfHiddenNodes];
-
-        // For each node in the hidden layer
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            double newBias;
-
-            // If Batch Processing is to be used, calculate the average of each bias to be updated and update the bias
-            // Otherwise, just update the bias
-            if (improvements.contains(Improvements.BATCH_PROCESSING)) {
-                double biasChangeSum = 0;
-                for (int iterationCount = 0; iterationCount < batchSize; iterationCount++) {
-                    biasChangeSum = biasChangeSum + this.batchProcessingHiddenLayerBiases[hiddenLayerNum][iterationCount];
-                }
-                double averageBiasChange = biasChangeSum / batchSize;
-                newBias = this.hiddenLayerBiases[hiddenLayerNum] + (learningRate * averageBiasChange);
-            } else {
-                newBias = this.hiddenLayerBiases[hiddenLayerNum] + (learningRate * this.hiddenLayerDeltas[hiddenLayerNum] * 1);
+    private double trainEpochInBatches(Dataset trainingData) {
+        double squaredErrorTraining = 0.0;
+        for (int batchStart = 0; batchStart < trainingData.size(); batchStart += batchSize) {
+            int numberOfSamples = Math.min(batchSize, trainingData.size() - batchStart);
+
+            // Perform a forwards and backwards pass through the network for every chunk of the mini-batch
+            int numberOfChunks = processBatchChunks(trainingData, batchStart, numberOfSamples);
+
+            // Add up the squared errors and the weight changes of each chunk in order, so that the results do not depend
+            // on which thread processed each chunk, and then perform the average weight changes
+            long updateStartTime = TrainingInstrumentation.ENABLED ? System.nanoTime() : 0;
+            for (int chunkNum = 0; chunkNum < numberOfChunks; chunkNum++) {
+                BatchChunk batchChunk = batchChunks[chunkNum];
+                squaredErrorTraining = batchChunk.addSquaredErrors(squaredErrorTraining);
+                batchChunk.addWeightChanges();
             }
-
-            // If Momentum is to be used, calculate the new bias value with momentum, and add this to the bias
-            if (improvements.contains(Improvements.MOMENTUM)) {
-                double biasDifference = newBias - this.hiddenLayerBiases[hiddenLayerNum];
-                newBias = newBias + (momentumTerm * biasDifference);
+            for (DenseLayer layer : layers) {
+                layer.updateWeightsAndBiasesFromBatch(numberOfSamples, learningRate, useMomentum, momentumTerm);
+            }
+            this.previousWeightsAndBiasesAvailable = true;
+            if (TrainingInstrumentation.ENABLED) {
+                instrumentation.recordWeightUpdate(updateStartTime);
             }
-
-            // Set the previous bias to the current bias, and then update the current bias
-            this.previousHiddenLayerBiases[hiddenLayerNum] = this.hiddenLayerBiases[hiddenLayerNum];
-            hiddenLayerBiases[hiddenLayerNum] = newBias;
         }
-        return hiddenLayerBiases;
+        return squaredErrorTraining;
     }
 
 
     /**
-     * Recalculates the bias for the output node
+     * Performs a single epoch of training using Hogwild. The training dataset is shared between several workers, each of
+     * which performs a forwards and backwards pass and updates the weights and biases for one catchment area at a time,
+     * exactly as without Hogwild. The workers update the shared weights and biases in place without any locking, so an
+     * update may occasionally be lost or based on slightly stale values, which has little effect on training.
+     * <p>
+     * As the weights and biases are updated by several threads, the change made by a single catchment area cannot be
+     * undone. Instead, Bold Driver undoes the whole of the most recent epoch.
      *
-     * @param batchSize the batch size to be used in the case of batch processing
-     * @return the updated bias for the output node
+     * @param trainingData a dataset to train the network on
+     * @return the sum of the squared errors of the network's outputs for the training dataset during the epoch
      */
-    private Double recalculateOutputLayerBias(int batchSize) {
-        double newBias;
+    private double trainEpochHogwild(Dataset trainingData) {
+        // If Bold Driver is to be used, keep a copy of the weights and biases before the epoch so it can be undone
+        if (this.useBoldDriver) {
+            for (DenseLayer layer : layers) {
+                layer.copyWeightsAndBiasesToPrevious();
+            }
+            previousWeightsAndBiasesAvailable = true;
+        }
 
-        // If Batch Processing is to be used, calculate the average of the output bias and update it
-        // Otherwise, just update the bias
-        if (improvements.contains(Improvements.BATCH_PROCESSING)) {
-            double biasChangeSum = 0;
-            for (int iterationCount = 0; iterationCount < batchSize; iterationCount++) {
-                biasChangeSum = biasChangeSum + this.batchProcessingOutputLayerBias[iterationCount];
+        if (hogwildPool == null) {
+            hogwildPool = new ForkJoinPool(numberOfHogwildThreads);
+            hogwildWorkers = new HogwildWorker[numberOfHogwildThreads];
+            for (int workerNum = 0; workerNum < numberOfHogwildThreads; workerNum++) {
+                hogwildWorkers[workerNum] = new HogwildWorker(workerNum);
             }
-            double averageBiasChange = biasChangeSum / batchSize;
-            newBias = outputLayerBias + (learningRate * averageBiasChange);
-        } else {
-            newBias = outputLayerBias + (learningRate * outputDelta * 1);
         }
 
-        // If Momentum is to be used, calculate the new bias value with momentum, and add this to the bias
-        if (improvements.contains(Improvements.MOMENTUM)) {
-            double biasDifference = newBias - this.outputLayerBias;
-            newBias = newBias + (momentumTerm * biasDifference);
+        // The first worker trains on the calling thread while the others are run by the pool
+        for (HogwildWorker hogwildWorker : hogwildWorkers) {
+            hogwildWorker.prepare(trainingData);
+        }
+        for (int workerNum = 1; workerNum < hogwildWorkers.length; workerNum++) {
+            hogwildPool.execute(hogwildWorkers[workerNum]);
         }
+        hogwildWorkers[0].compute();
+
+        double squaredErrorTraining = hogwildWorkers[0].squaredError;
+        for (int workerNum = 1; workerNum < hogwildWorkers.length; workerNum++) {
+            hogwildWorkers[workerNum].join();
+            squaredErrorTraining = squaredErrorTraining + hogwildWorkers[workerNum].squaredError;
+        }
+        return squaredErrorTraining;
+    }
 
-        // Set the previous bias to the current bias
-        this.previousOutputLayerBias = this.outputLayerBias;
 
-        return newBias;
+    /**
+     * Shuts down the pool of threads used by Hogwild, if there is one, so that a new pool is created when it is next needed
+     */
+    private void shutdownHogwildPool() {
+        if (hogwildPool != null) {
+            hogwildPool.shutdown();
+            hogwildPool = null;
+            hogwildWorkers = null;
+        }
     }
 
 
     /**
-     * Adds the new weight changes in a batch to their corresponding Lists - used in the case of Batch Processing
+     * Starts validating a snapshot of the network's current weights and biases on the validation thread - used in the case
+     * of asynchronous validation
      *
-     * @param inputValues    an array of the input values for the current catchment area
-     * @param iterationCount the current progress through the batch
+     * @param validationChunks             the chunks of the validation dataset
+     * @param epochCount                   the number of epochs trained for so far
+     * @param trainingRootMeanSquaredError the RMSE for the training data during the most recent epoch
+     * @return the validation, which holds the snapshot and the result once it is ready
      */
-    private void appendWeightChanges(Double[] inputValues, int iterationCount) {
-        // For each connection from every input node to every hidden layer node, calculate what the weight change would be
-        // and append this to the corresponding batch processing array
-        for (int inputNum = 0; inputNum < this.numberOfInputs; inputNum++) {
-            for (int hiddenLayerNum = 0; hiddenLayerNum < this.numberOfHiddenNodes; hiddenLayerNum++) {
-                this.batchProcessingInputsToHiddenLayerWeighting[inputNum][hiddenLayerNum][iterationCount] = (this.hiddenLayerDeltas[hiddenLayerNum] * inputValues[inputNum]);
+    private PendingValidation startValidation(Iterable<Dataset> validationChunks, int epochCount, double trainingRootMeanSquaredError) {
+        if (validationExecutor == null) {
+            validationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "validation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        InferenceModel model = freeze();
+        if (validationContext == null) {
+            validationContext = model.newContext();
+        }
+        InferenceModel.Context context = validationContext;
+        Future<Double> result = validationExecutor.submit(() -> {
+            long validationStartTime = TrainingInstrumentation.ENABLED ? System.nanoTime() : 0;
+            double rootMeanSquaredError = model.calculateRootMeanSquaredError(context, validationChunks);
+            if (TrainingInstrumentation.ENABLED) {
+                instrumentation.recordValidation(validationStartTime);
             }
+            return rootMeanSquaredError;
+        });
+        return new PendingValidation(model, epochCount, trainingRootMeanSquaredError, result);
+    }
+
+
+    /**
+     * Shuts down the validation thread, if there is one, so that a new thread is created when it is next needed
+     */
+    private void shutdownValidationExecutor() {
+        if (validationExecutor != null) {
+            validationExecutor.shutdown();
+            validationExecutor = null;
         }
+    }
 
-        // For each hidden layer node, calculate what the weight and bias changes would be, and append these to their
-        // corresponding batch processing arrays
-        for (int hiddenLayerNum = 0; hiddenLayerNum < this.numberOfHiddenNodes; hiddenLayerNum++) {
-            this.batchProcessingHiddenLayerBiases[hiddenLayerNum][iterationCount] = (this.hiddenLayerDeltas[hiddenLayerNum] * 1);
-            this.batchProcessingHiddenLayerToOutputWeighting[hiddenLayerNum][iterationCount] = (this.outputDelta * this.hiddenLayerOutputs[hiddenLayerNum]);
+
+    /**
+     * Performs a forwards and backwards pass through the network for every catchment area in a mini-batch, split into
+     * chunks which are processed in parallel if a pool of threads has been given - used in the case of Batch Processing
+     *
+     * @param dataset         a dataset containing the mini-batch
+     * @param batchStart      the index in the dataset of the first catchment area in the mini-batch
+     * @param numberOfSamples the number of catchment areas in the mini-batch
+     * @return the number of chunks the mini-batch was split into
+     */
+    private int processBatchChunks(Dataset dataset, int batchStart, int numberOfSamples) {
+        int chunkCapacity = batchChunks[0].capacity;
+        int numberOfChunks = (numberOfSamples + chunkCapacity - 1) / chunkCapacity;
+        for (int chunkNum = 0; chunkNum < numberOfChunks; chunkNum++) {
+            int chunkStart = chunkNum * chunkCapacity;
+            batchChunks[chunkNum].prepare(dataset, batchStart + chunkStart, Math.min(chunkCapacity, numberOfSamples - chunkStart));
         }
 
-        // Calculate what the bias change for the output node would be, and append this to the corresponding batch processing
-        // array
-        this.batchProcessingOutputLayerBias[iterationCount] = (this.outputDelta * 1);
+        // The first chunk is processed on the calling thread while the others are processed by the pool
+        for (int chunkNum = 1; chunkNum < numberOfChunks; chunkNum++) {
+            dataParallelPool.execute(batchChunks[chunkNum]);
+        }
+        batchChunks[0].compute();
+        for (int chunkNum = 1; chunkNum < numberOfChunks; chunkNum++) {
+            batchChunks[chunkNum].join();
+        }
+        return numberOfChunks;
     }
 
 
     /**
-     * Undoes the previous weight and bias change by reinstating their previous values - used in the case of Bold Driver
+     * Calculates the root mean squared error of the network's predictions for a dataset, doing a forwards pass only
+     *
+     * @param dataset a dataset to calculate the error for
+     * @return the root mean squared error of the network's predictions
      */
-    private void undoWeightAndBiasChanges() {
-        this.inputsToHiddenLayerWeighting = this.previousInputsToHiddenLayerWeighting;
-        this.hiddenLayerBiases = this.previousHiddenLayerBiases;
-        this.hiddenLayerToOutputWeighting = this.previousHiddenLayerToOutputWeighting;
-        this.outputLayerBias = this.previousOutputLayerBias;
+    double calculateRootMeanSquaredError(Dataset dataset) {
+        return calculateRootMeanSquaredError(Collections.singletonList(dataset));
     }
 
 
     /**
-     * Calculates the Output Delta value, based on the activation function being used
+     * Calculates the root mean squared error of the network's predictions for a dataset which is split into chunks, doing
+     * a forwards pass only
      *
-     * @param expectedValue the index flood expected to be produced by the neural network model
+     * @param chunks the chunks of a dataset to calculate the error for
+     * @return the root mean squared error of the network's predictions
      */
-    private void calculateOutputDelta(double expectedValue) {
-        Double firstDerivative;
-        switch (this.activationFunction) {
-            case TANH:
-                firstDerivative = firstDerivativeTanH(output);
-                break;
-            case RELU:
-                firstDerivative = firstDerivativeRelu(output);
-                break;
-            default:
-                firstDerivative = firstDerivativeSigmoid(output);
+    double calculateRootMeanSquaredError(Iterable<Dataset> chunks) {
+        double squaredError = 0.0;
+        long numberOfSamples = 0;
+        Iterator<Dataset> chunkIterator = chunks.iterator();
+        try {
+            while (chunkIterator.hasNext()) {
+                Dataset dataset = chunkIterator.next();
+                validateDataset(dataset);
+                for (int dataIndex = 0; dataIndex < dataset.size(); dataIndex++) {
+                    // Perform a forwards pass through the network and calculate the outputs
+                    dataset.copyFeatures(dataIndex, 1, inputValues, 0);
+                    dataset.copyTargets(dataIndex, 1, numberOfOutputs, expectedValues, 0);
+                    calculateOutput(inputValues);
+                    squaredError = addSquaredErrors(squaredError, expectedValues, outputLayer.getOutputs(), numberOfOutputs);
+                }
+                numberOfSamples = numberOfSamples + dataset.size();
+            }
+        } finally {
+            PrefetchingIterator.closeIfPrefetching(chunkIterator);
         }
-        double error = expectedValue - this.output;
-        outputDelta = error * firstDerivative;
+        return Math.sqrt(squaredError / (numberOfSamples * numberOfOutputs));
     }
 
 
     /**
-     * Calculates the Delta values for each node in the Hidden Layer by applying the correct first derivative, based on the
-     * activation function being used
+     * Copies the input values of a catchment area into the network's input buffer, so that no new array is needed for
+     * each forwards pass
+     *
+     * @param catchmentArea the catchment area to read the input values from
+     * @return the network's input buffer, populated with the input values of the catchment area
+     * @throws IllegalArgumentException if the network does not have an input for each feature of a catchment area
      */
-    private void calculateHiddenLayerDeltas() {
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            Double firstDerivative;
-            switch (this.activationFunction) {
-                case TANH:
-                    firstDerivative = firstDerivativeTanH(hiddenLayerOutputs[hiddenLayerNum]);
-                    break;
-                case RELU:
-                    firstDerivative = firstDerivativeRelu(hiddenLayerOutputs[hiddenLayerNum]);
-                    break;
-                default:
-                    firstDerivative = firstDerivativeSigmoid(hiddenLayerOutputs[hiddenLayerNum]);
-            }
-            Double delta = hiddenLayerToOutputWeighting[hiddenLayerNum] * outputDelta * firstDerivative;
-            hiddenLayerDeltas[hiddenLayerNum] = delta;
+    private double[] loadInputValues(CatchmentArea catchmentArea) {
+        if (numberOfInputs != CatchmentArea.NUMBER_OF_FEATURES) {
+            throw new IllegalArgumentException("The network has " + numberOfInputs + " inputs, but a catchment area has "
+                    + CatchmentArea.NUMBER_OF_FEATURES + " features");
         }
+        catchmentArea.copyFeatures(inputValues, 0);
+        return inputValues;
     }
 
 
     /**
-     * Calculates the output of the network, which is the predicted index flood
+     * Adds the squared error of each of a number of the network's outputs to a running total
      *
-     * @param inputs an array of all inputs to the neural network for the current catchment area
+     * @param squaredError   the running total of the squared errors
+     * @param expectedValues the values expected to be produced by the network
+     * @param outputs        the values produced by the network
+     * @param numberOfValues the number of values to add the squared errors of
+     * @return the running total with the squared errors added
      */
-    private void calculateOutput(Double[] inputs) {
+    private static double addSquaredErrors(double squaredError, double[] expectedValues, double[] outputs, int numberOfValues) {
+        for (int valueNum = 0; valueNum < numberOfValues; valueNum++) {
+            squaredError = squaredError + Math.pow(expectedValues[valueNum] - outputs[valueNum], 2);
+        }
+        return squaredError;
+    }
 
-        calculateHiddenLayerValues(inputs);
 
-        Double weightedSum = 0.0;
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            weightedSum = weightedSum + (hiddenLayerOutputs[hiddenLayerNum] * hiddenLayerToOutputWeighting[hiddenLayerNum]);
+    /**
+     * Checks that a dataset has a feature for each input of the network and a target for each output of the network
+     *
+     * @param dataset the dataset to check
+     * @throws IllegalArgumentException if the dataset has the wrong number of features or too few targets
+     */
+    private void validateDataset(Dataset dataset) {
+        if (dataset.getNumberOfFeatures() != numberOfInputs) {
+            throw new IllegalArgumentException("The network has " + numberOfInputs + " inputs, but the dataset has "
+                    + dataset.getNumberOfFeatures() + " features");
+        }
+        if (dataset.getNumberOfTargets() < numberOfOutputs) {
+            throw new IllegalArgumentException("The network has " + numberOfOutputs + " outputs, but the dataset only has "
+                    + dataset.getNumberOfTargets() + " targets");
         }
-        weightedSum = weightedSum + outputLayerBias;
+    }
+
 
-        switch (this.activationFunction) {
-            case TANH:
-                output = tanHFunction(weightedSum);
-                break;
-            case RELU:
-                output = reluFunction(weightedSum);
-                break;
-            default:
-                output = sigmoidFunction(weightedSum);
+    /**
+     * Allocates the chunks used to process each mini-batch, each with their own arrays for the values of every node and
+     * the sums of the weight changes - used in the case of Batch Processing
+     */
+    private void allocateBatchChunks() {
+        int chunkCapacity = this.dataParallelPool == null ? batchSize : Math.min(dataParallelChunkSize, batchSize);
+        this.batchChunks = new BatchChunk[(batchSize + chunkCapacity - 1) / chunkCapacity];
+        for (int chunkNum = 0; chunkNum < this.batchChunks.length; chunkNum++) {
+            this.batchChunks[chunkNum] = new BatchChunk(chunkCapacity);
         }
     }
 
 
     /**
-     * Calculates the output values from the hidden layer nodes
+     * Describes the number of nodes in each hidden layer, for the training summary
      *
-     * @param inputs an array of all inputs to the neural network for the current catchment area
+     * @return the number of nodes in each hidden layer, separated by commas
      */
-    private void calculateHiddenLayerValues(Double[] inputs) {
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-
-            Double weightedSum = 0.0;
-            for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
-                weightedSum = weightedSum + (inputs[inputNum] * inputsToHiddenLayerWeighting[inputNum][hiddenLayerNum]);
-            }
-            weightedSum = weightedSum + hiddenLayerBiases[hiddenLayerNum];
-
-            switch (this.activationFunction) {
-                case TANH:
-                    hiddenLayerOutputs[hiddenLayerNum] = tanHFunction(weightedSum);
-                    break;
-                case RELU:
-                    hiddenLayerOutputs[hiddenLayerNum] = reluFunction(weightedSum);
-                    break;
-                default:
-                    hiddenLayerOutputs[hiddenLayerNum] = sigmoidFunction(weightedSum);
+    private String hiddenLayerSizesDescription() {
+        StringBuilder description = new StringBuilder();
+        for (int layerNum = 0; layerNum < hiddenLayerSizes.length; layerNum++) {
+            if (layerNum != 0) {
+                description.append(", ");
             }
+            description.append(hiddenLayerSizes[layerNum]);
         }
+        return description.toString();
     }
 
 
     /**
-     * Applies the sigmoid function to a given value
-     *
-     * @param weightedSum the value to apply the sigmoid function to
-     * @return the original value with the sigmoid function applied
+     * Recalculates all weights and biases in the network for the catchment area of the most recent forwards and backwards
+     * pass, keeping a copy of their values before the update so that the change can be undone
      */
-    private Double sigmoidFunction(Double weightedSum) {
-        return 1 / (1 + Math.exp(weightedSum * -1));
+    private void recalculateWeightsAndBiases() {
+        double[] layerInputs = inputValues;
+        for (DenseLayer layer : layers) {
+            layer.updateWeightsAndBiases(layerInputs, layer.getDeltas(), learningRate, useMomentum, momentumTerm);
+            layerInputs = layer.getOutputs();
+        }
+        this.previousWeightsAndBiasesAvailable = true;
     }
 
 
     /**
-     * Calculates the first derivative of the sigmoid function
-     *
-     * @param value the value to be used in calculating the first derivative of the sigmoid function
-     * @return the first derivative of the sigmoid function
+     * Undoes the previous weight and bias change by swapping the previous buffers back in - used in the case of Bold Driver.
+     * Only the most recent change can be undone, so undoing twice without an update in between has no further effect.
      */
-    private Double firstDerivativeSigmoid(Double value) {
-        return value * (1 - value);
+    private void undoWeightAndBiasChanges() {
+        if (!this.previousWeightsAndBiasesAvailable) {
+            return;
+        }
+
+        for (DenseLayer layer : layers) {
+            layer.swapWeightsAndBiases();
+        }
+        this.previousWeightsAndBiasesAvailable = false;
     }
 
 
     /**
-     * Applies the tanh function to a given value
+     * Replaces the weights and biases of every layer with those of a snapshot of the network - used in the case of Bold
+     * Driver with asynchronous validation. The previous weights and biases no longer come before the current ones, so the
+     * change cannot then be undone.
      *
-     * @param weightedSum the value to apply the tanh function to
-     * @return the original value with the tanh function applied
+     * @param model the snapshot to restore the weights and biases from
      */
-    private Double tanHFunction(Double weightedSum) {
-        return (Math.exp(weightedSum) - Math.exp(weightedSum * -1)) / (Math.exp(weightedSum) + Math.exp(weightedSum * -1));
+    private void restoreWeightsAndBiases(InferenceModel model) {
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            layers[layerNum].restoreWeightsAndBiases(model.getLayerWeights(layerNum), model.getLayerBiases(layerNum));
+        }
+        this.previousWeightsAndBiasesAvailable = false;
     }
 
 
     /**
-     * Calculates the first derivative of the tanh function
+     * Calculates the Delta values for each node in every layer, working backwards from the output layer, based on the
+     * activation function being used
      *
-     * @param value the value to be used in calculating the first derivative of the tanh function
-     * @return the first derivative of the tanh function
+     * The values expected to be produced by the network must already have been loaded into the expected values buffer.
      */
-    private Double firstDerivativeTanH(Double value) {
-        return 1 - Math.pow(value, 2);
+    private void calculateDeltas() {
+        outputLayer.calculateOutputLayerDeltas(outputLayer.getOutputs(), expectedValues, outputLayer.getDeltas(), 1);
+        for (int layerNum = layers.length - 2; layerNum >= 0; layerNum--) {
+            DenseLayer layer = layers[layerNum];
+            DenseLayer nextLayer = layers[layerNum + 1];
+            layer.calculateHiddenLayerDeltas(layer.getOutputs(), layer.getDeltas(), nextLayer, nextLayer.getDeltas(), 1);
+        }
     }
 
 
     /**
-     * Applies the ReLU function to a given value
+     * Calculates the outputs of the network by passing the inputs forwards through every layer in turn. Every output is
+     * left in the output layer's buffer, and the first, which is the predicted index flood, is returned.
      *
-     * @param weightedSum the value to apply the ReLU function to
-     * @return the original value with the ReLU function applied
+     * @param inputs an array of all inputs to the neural network for the current catchment area
+     * @return the first output of the network
      */
-    private Double reluFunction(Double weightedSum) {
-        return Math.max(weightedSum, 0.01 * weightedSum);
-        // Returns weightedSum if weightedSum >= 0
-        // Returns 0.01 * weightedSum if weightedSum < 0
+    private double calculateOutput(double[] inputs) {
+        double[] layerInputs = inputs;
+        for (DenseLayer layer : layers) {
+            layer.calculateOutputs(layerInputs, layer.getOutputs(), 1);
+            layerInputs = layer.getOutputs();
+        }
+        return outputLayer.getOutputs()[0];
     }
 
 
     /**
-     * Calculates the first derivative of the ReLU function
+     * Passes a tile of samples, already copied into the prediction input buffer, forwards through every layer at once, and
+     * copies the outputs of the output layer into the predictions
      *
-     * @param value the value to be used in calculating the first derivative of the ReLU function
-     * @return the first derivative of the ReLU function
+     * @param numberOfSamples   the number of samples in the tile
+     * @param predictions       the array to write the row-major predictions into
+     * @param predictionsOffset the position in the predictions array to write the first prediction of the tile to
      */
-    private Double firstDerivativeRelu(Double value) {
-        if (value <= 0) {
-            return 0.01;
-        } else {
-            return 1.00;
+    private void predictTile(int numberOfSamples, double[] predictions, int predictionsOffset) {
+        double[] layerInputs = predictionInputs;
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            layers[layerNum].calculateOutputs(layerInputs, predictionOutputs[layerNum], numberOfSamples);
+            layerInputs = predictionOutputs[layerNum];
         }
+        System.arraycopy(layerInputs, 0, predictions, predictionsOffset, numberOfSamples * numberOfOutputs);
     }
 
 
     /**
-     * Generates a 2D array of random starting weights for the connections between the input nodes and hidden layer nodes
-     *
-     * @return a 2D array of random starting weights for the connections between the input nodes and hidden layer nodes
+     * Allocates the buffers used to pass a tile of samples forwards through the network, if they have not been already
      */
-    private Double[][] generateRandomStartingInputsToHiddenLayerWeighting() {
-        Double[][] inputsToHiddenLayerWeighting = new Double[numberOfInputs][numberOfHiddenNodes];
-
-        for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
-            inputsToHiddenLayerWeighting[inputNum] = randomWeightings();
+    private void allocatePredictionBuffers() {
+        if (this.predictionInputs != null) {
+            return;
+        }
+        this.predictionInputs = new double[PREDICTION_TILE_SIZE * numberOfInputs];
+        this.predictionOutputs = new double[layers.length][];
+        for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+            this.predictionOutputs[layerNum] = new double[PREDICTION_TILE_SIZE * layers[layerNum].getNumberOfNodes()];
         }
-        return inputsToHiddenLayerWeighting;
     }
 
 
     /**
-     * Generates an array of random starting weights for the connections between the hidden layer nodes and the output node
+     * Checks that an array has room for the predictions of a number of samples from a position
      *
-     * @return an array of random starting weights for the connections between the hidden layer nodes and the output node
+     * @param numberOfSamples   the number of samples to be predicted
+     * @param predictions       the array the predictions are to be written into
+     * @param predictionsOffset the position in the array the first prediction is to be written to
+     * @throws IllegalArgumentException if the array is too small for the number of samples
      */
-    private Double[] generateRandomStartingHiddenLayerToOutputWeighting() {
-        Double[] hiddenLayerToOutputWeighting = new Double[numberOfHiddenNodes];
-
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            hiddenLayerToOutputWeighting[hiddenLayerNum] = randomNumber(numberOfHiddenNodes);
+    private void validatePredictionsArray(int numberOfSamples, double[] predictions, int predictionsOffset) {
+        if (numberOfSamples < 0 || predictionsOffset < 0 || (long) predictionsOffset + (long) numberOfSamples * numberOfOutputs > predictions.length) {
+            throw new IllegalArgumentException("The predictions array does not have room for " + numberOfSamples + " samples of "
+                    + numberOfOutputs + " outputs from position " + predictionsOffset);
         }
-
-        return hiddenLayerToOutputWeighting;
     }
 
 
     /**
-     * Generates an array of random starting biases for each node in the hidden layer
-     *
-     * @return an array of random starting biases for each node in the hidden layer
+     * BatchChunk performs the forwards and backwards passes for a chunk of a mini-batch, adding up the weight and bias
+     * changes of its catchment areas - used in the case of Batch Processing. Each chunk has its own arrays, so chunks can
+     * be processed in parallel while only reading the network's weights and biases.
      */
-    private Double[] generateRandomStartingHiddenLayerBiases() {
-        Double[] hiddenLayerBiases = new Double[numberOfHiddenNodes];
+    private final class BatchChunk extends RecursiveAction {
+        private final int capacity;
+
+        // The values of every node are stored for each catchment area in the chunk, in flat row-major arrays with one row
+        // per catchment area, and one array per layer
+        private final double[] inputValues;
+        private final double[] expectedValues;
+        private final double[][] outputs;
+        private final double[][] deltas;
+
+        private final double[][] weightChangeSums;
+        private final double[][] biasChangeSums;
+
+        private Dataset dataset;
+        private int chunkStart;
+        private int numberOfSamples;
+
+        private BatchChunk(int capacity) {
+            this.capacity = capacity;
+            this.inputValues = new double[capacity * numberOfInputs];
+            this.expectedValues = new double[capacity * numberOfOutputs];
+            this.outputs = new double[layers.length][];
+            this.deltas = new double[layers.length][];
+            this.weightChangeSums = new double[layers.length][];
+            this.biasChangeSums = new double[layers.length][];
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                DenseLayer layer = layers[layerNum];
+                this.outputs[layerNum] = new double[capacity * layer.getNumberOfNodes()];
+                this.deltas[layerNum] = new double[capacity * layer.getNumberOfNodes()];
+                this.weightChangeSums[layerNum] = new double[layer.getNumberOfNodes() * layer.getNumberOfInputs()];
+                this.biasChangeSums[layerNum] = new double[layer.getNumberOfNodes()];
+            }
+        }
 
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            hiddenLayerBiases[hiddenLayerNum] = randomNumber(numberOfInputs);
+
+        /**
+         * Sets the catchment areas to be processed by the chunk, so that the chunk can be processed again
+         *
+         * @param dataset         a dataset containing the chunk
+         * @param chunkStart      the index in the dataset of the first catchment area in the chunk
+         * @param numberOfSamples the number of catchment areas in the chunk
+         */
+        private void prepare(Dataset dataset, int chunkStart, int numberOfSamples) {
+            reinitialize();
+            this.dataset = dataset;
+            this.chunkStart = chunkStart;
+            this.numberOfSamples = numberOfSamples;
         }
 
-        return hiddenLayerBiases;
-    }
 
+        /**
+         * Performs a forwards and backwards pass through the network for every catchment area in the chunk, and adds what
+         * the weight and bias changes would be to the chunk's sums
+         */
+        @Override
+        protected void compute() {
+            // The rows of the chunk are stored consecutively in the dataset, so they are copied in one go
+            dataset.copyFeatures(chunkStart, numberOfSamples, inputValues, 0);
+            dataset.copyTargets(chunkStart, numberOfSamples, numberOfOutputs, expectedValues, 0);
+
+            // Perform a forwards pass through every layer for the whole chunk at once
+            long phaseStartTime = TrainingInstrumentation.ENABLED ? System.nanoTime() : 0;
+            double[] layerInputs = inputValues;
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                layers[layerNum].calculateOutputs(layerInputs, outputs[layerNum], numberOfSamples);
+                layerInputs = outputs[layerNum];
+            }
+            if (TrainingInstrumentation.ENABLED) {
+                phaseStartTime = instrumentation.recordForwardPass(phaseStartTime);
+            }
+
+            // Perform a backwards pass through every layer for the whole chunk at once
+            int outputLayerNum = layers.length - 1;
+            outputLayer.calculateOutputLayerDeltas(outputs[outputLayerNum], expectedValues, deltas[outputLayerNum], numberOfSamples);
+            for (int layerNum = outputLayerNum - 1; layerNum >= 0; layerNum--) {
+                layers[layerNum].calculateHiddenLayerDeltas(outputs[layerNum], deltas[layerNum], layers[layerNum + 1], deltas[layerNum + 1], numberOfSamples);
+            }
 
-    /**
-     * Generates a random starting bias for the output node
-     *
-     * @return a random starting bias for the output node
-     */
-    private Double generateRandomStartingOutputLayerBias() {
-        return randomNumber(numberOfHiddenNodes);
+            // For each layer, add what the weight and bias changes would be for each catchment area to the sums. These are
+            // the gradients, so they are timed as part of the backwards pass.
+            layerInputs = inputValues;
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                layers[layerNum].accumulateWeightChanges(layerInputs, deltas[layerNum], weightChangeSums[layerNum], biasChangeSums[layerNum], numberOfSamples);
+                layerInputs = outputs[layerNum];
+            }
+            if (TrainingInstrumentation.ENABLED) {
+                instrumentation.recordBackwardPass(phaseStartTime);
+            }
+        }
+
+
+        /**
+         * Adds the squared error of every output of the network for every catchment area in the chunk to a running total
+         *
+         * @param squaredError the running total of the squared errors
+         * @return the running total with the squared errors of the chunk added
+         */
+        private double addSquaredErrors(double squaredError) {
+            return NeuralNetwork.addSquaredErrors(squaredError, expectedValues, outputs[layers.length - 1], numberOfSamples * numberOfOutputs);
+        }
+
+
+        /**
+         * Adds the chunk's sums of the weight and bias changes to the sums of each layer for the mini-batch, and then
+         * resets the chunk's sums
+         */
+        private void addWeightChanges() {
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                layers[layerNum].addWeightChanges(weightChangeSums[layerNum], biasChangeSums[layerNum]);
+            }
+        }
     }
 
 
     /**
-     * Used to help generate the starting weights for the connections between the input nodes and hidden layer nodes
-     *
-     * @return an array of random starting weights for the connections from a single input node to each hidden layer node
+     * HogwildWorker trains the network on its share of the training dataset - used in the case of Hogwild. Each worker
+     * has its own arrays for the values of every node, but reads and updates the network's weights and biases directly.
      */
-    private Double[] randomWeightings() {
-        Double[] randomWeightings = new Double[numberOfHiddenNodes];
+    private final class HogwildWorker extends RecursiveAction {
+        private final int workerNum;
+
+        private final double[] inputValues;
+        private final double[] expectedValues;
+        private final double[][] outputs;
+        private final double[][] deltas;
+
+        private Dataset trainingData;
+        private double squaredError;
+
+        private HogwildWorker(int workerNum) {
+            this.workerNum = workerNum;
+            this.inputValues = new double[numberOfInputs];
+            this.expectedValues = new double[numberOfOutputs];
+            this.outputs = new double[layers.length][];
+            this.deltas = new double[layers.length][];
+            for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                this.outputs[layerNum] = new double[layers[layerNum].getNumberOfNodes()];
+                this.deltas[layerNum] = new double[layers[layerNum].getNumberOfNodes()];
+            }
+        }
+
 
-        for (int hiddenLayerNum = 0; hiddenLayerNum < numberOfHiddenNodes; hiddenLayerNum++) {
-            randomWeightings[hiddenLayerNum] = randomNumber(numberOfInputs);
+        /**
+         * Sets the training dataset to train on, so that the worker can be run again
+         *
+         * @param trainingData a dataset to train the network on
+         */
+        private void prepare(Dataset trainingData) {
+            reinitialize();
+            this.trainingData = trainingData;
+            this.squaredError = 0.0;
         }
 
-        return randomWeightings;
+
+        /**
+         * Performs a forwards and backwards pass through the network and updates the weights and biases for every
+         * catchment area in the worker's share of the training dataset, which is every n-th catchment area for n workers
+         */
+        @Override
+        protected void compute() {
+            int numberOfWorkers = hogwildWorkers.length;
+            int outputLayerNum = layers.length - 1;
+
+            for (int trainingDataIndex = workerNum; trainingDataIndex < trainingData.size(); trainingDataIndex += numberOfWorkers) {
+                // Perform a forwards pass through the network and calculate the outputs
+                trainingData.copyFeatures(trainingDataIndex, 1, inputValues, 0);
+                trainingData.copyTargets(trainingDataIndex, 1, numberOfOutputs, expectedValues, 0);
+
+                // If instrumentation is switched on, time each phase for one of the worker's catchment areas in every
+                // sampling interval
+                boolean timed = TrainingInstrumentation.ENABLED && ((trainingDataIndex / numberOfWorkers) & TrainingInstrumentation.SAMPLING_MASK) == 0;
+                long phaseStartTime = timed ? System.nanoTime() : 0;
+                double[] layerInputs = inputValues;
+                for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                    layers[layerNum].calculateOutputs(layerInputs, outputs[layerNum], 1);
+                    layerInputs = outputs[layerNum];
+                }
+                if (timed) {
+                    phaseStartTime = instrumentation.recordForwardPass(phaseStartTime);
+                }
+                squaredError = addSquaredErrors(squaredError, expectedValues, outputs[outputLayerNum], numberOfOutputs);
+
+                // Perform a backwards pass through the network
+                if (timed) {
+                    phaseStartTime = System.nanoTime();
+                }
+                outputLayer.calculateOutputLayerDeltas(outputs[outputLayerNum], expectedValues, deltas[outputLayerNum], 1);
+                for (int layerNum = outputLayerNum - 1; layerNum >= 0; layerNum--) {
+                    layers[layerNum].calculateHiddenLayerDeltas(outputs[layerNum], deltas[layerNum], layers[layerNum + 1], deltas[layerNum + 1], 1);
+                }
+                if (timed) {
+                    phaseStartTime = instrumentation.recordBackwardPass(phaseStartTime);
+                }
+
+                // Update the weights and biases in place, in the same order as without Hogwild
+                layerInputs = inputValues;
+                for (int layerNum = 0; layerNum < layers.length; layerNum++) {
+                    layers[layerNum].updateWeightsAndBiasesInPlace(layerInputs, deltas[layerNum], learningRate, useMomentum, momentumTerm);
+                    layerInputs = outputs[layerNum];
+                }
+                if (timed) {
+                    instrumentation.recordWeightUpdate(phaseStartTime);
+                }
+            }
+        }
     }
 
 
     /**
-     * Generates a random number based on a given extent
-     *
-     * @param extent used to help create the upper and lower bounds of the random number
-     * @return a random double within the calculated bounds
+     * PendingValidation is responsible for holding a validation started on the validation thread, along with the
+     * snapshot of the weights and biases being validated and the epoch it was started at - used in the case of
+     * asynchronous validation
      */
-    private Double randomNumber(double extent) {
-        double min = -2 / extent;
-        double max = 2 / extent;
-        return min + (max - min) * RANDOM.nextDouble();
+    private static final class PendingValidation {
+        private final InferenceModel model;
+        private final int epochCount;
+        private final double trainingRootMeanSquaredError;
+        private final Future<Double> result;
+
+        /**
+         * Constructor creates a record of a validation which has been started
+         *
+         * @param model                        the snapshot of the weights and biases being validated
+         * @param epochCount                   the number of epochs trained for when the snapshot was taken
+         * @param trainingRootMeanSquaredError the RMSE for the training data during the epoch before the snapshot
+         * @param result                       the validation RMSE, once it has been calculated
+         */
+        private PendingValidation(InferenceModel model, int epochCount, double trainingRootMeanSquaredError, Future<Double> result) {
+            this.model = model;
+            this.epochCount = epochCount;
+            this.trainingRootMeanSquaredError = trainingRootMeanSquaredError;
+            this.result = result;
+        }
+
+
+        /**
+         * Waits for the validation to finish, which it usually already has, as training carries on for a whole validation
+         * interval before the result is needed
+         *
+         * @return the validation RMSE of the snapshot
+         * @throws IllegalArgumentException if a chunk of the validation dataset did not fit the network
+         * @throws IllegalStateException    if the validation failed for another reason, or the thread was interrupted
+         */
+        private double awaitRootMeanSquaredError() {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the validation of epoch " + epochCount, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Validation of epoch " + epochCount + " failed", e.getCause());
+            }
+        }
     }
 }
@@ -0,0 +1,41 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * NoOpMetricsSink is a TrainingMetricsSink which discards the results of each validation, for networks whose training
+ * does not need to be plotted, such as those in a configuration sweep.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class NoOpMetricsSink implements TrainingMetricsSink {
+
+    /**
+     * The single instance, as the sink has no state
+     */
+    public static final NoOpMetricsSink INSTANCE = new NoOpMetricsSink();
+
+    private NoOpMetricsSink() {
+    }
+
+
+    /**
+     * Discards the results of a validation of the network
+     *
+     * @param epochCount                     the number of epochs trained for when the network was validated
+     * @param trainingRootMeanSquaredError   the RMSE for the training data during the epoch before the validation
+     * @param validationRootMeanSquaredError the RMSE for the validation data
+     * @param learningRate                   the learning rate after the validation
+     */
+    @Override
+    public void recordValidation(int epochCount, double trainingRootMeanSquaredError, double validationRootMeanSquaredError, double learningRate) {
+    }
+
+
+    /**
+     * Does nothing, as nothing is recorded
+     */
+    @Override
+    public void trainingFinished() {
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * PhaseHistogram is responsible for counting how long each run of a phase of training took, in nanoseconds, so that the
+ * percentiles of the times can be reported while training carries on.
+ * <p>
+ * Times are counted in buckets rather than stored, so recording a time never allocates memory. Each power of two is
+ * split into 8 buckets, so a percentile is reported to within about 6% of the real time, whatever its size. Times can be
+ * recorded on several threads at once, such as by the workers of Hogwild, and read on any other thread.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class PhaseHistogram {
+
+    // Each power of two is split into 2^SUB_BUCKET_BITS buckets, and times below that are counted exactly
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUMBER_OF_BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Records how long a run of the phase took
+     *
+     * @param nanos the time taken, in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        bucketCounts.incrementAndGet(bucketIndex(nanos));
+        totalNanos.addAndGet(nanos);
+        long currentMaxNanos = maxNanos.get();
+        while (nanos > currentMaxNanos && !maxNanos.compareAndSet(currentMaxNanos, nanos)) {
+            currentMaxNanos = maxNanos.get();
+        }
+    }
+
+
+    /**
+     * Discards every time recorded, so that a new training run starts from nothing
+     */
+    void reset() {
+        for (int bucketNum = 0; bucketNum < NUMBER_OF_BUCKETS; bucketNum++) {
+            bucketCounts.set(bucketNum, 0);
+        }
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+
+    /**
+     * Works out the count, mean and percentiles of the times recorded so far. Times recorded while this is running may
+     * or may not be included.
+     *
+     * @return the statistics of the times recorded
+     */
+    PhaseStatistics snapshot() {
+        long[] counts = new long[NUMBER_OF_BUCKETS];
+        long count = 0;
+        for (int bucketNum = 0; bucketNum < NUMBER_OF_BUCKETS; bucketNum++) {
+            counts[bucketNum] = bucketCounts.get(bucketNum);
+            count = count + counts[bucketNum];
+        }
+        long max = maxNanos.get();
+        double mean = count == 0 ? 0.0 : (double) totalNanos.get() / count;
+        return new PhaseStatistics(count, mean, percentile(counts, count, 0.5, max), percentile(counts, count, 0.9, max),
+                percentile(counts, count, 0.99, max), max);
+    }
+
+
+    /**
+     * Finds the time which the given fraction of the times recorded are at or below
+     *
+     * @param counts   the number of times recorded in each bucket
+     * @param count    the total number of times recorded
+     * @param fraction the fraction of the times, such as 0.99 for the 99th percentile
+     * @param max      the longest time recorded, which the percentile is never reported above
+     * @return the middle of the bucket the percentile falls in, in nanoseconds, or 0 if no times have been recorded
+     */
+    private static long percentile(long[] counts, long count, double fraction, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long countSoFar = 0;
+        for (int bucketNum = 0; bucketNum < NUMBER_OF_BUCKETS; bucketNum++) {
+            countSoFar = countSoFar + counts[bucketNum];
+            if (countSoFar >= rank) {
+                return Math.min(bucketMiddle(bucketNum), max);
+            }
+        }
+        return max;
+    }
+
+
+    /**
+     * Works out which bucket a time is counted in. Times below SUB_BUCKETS have a bucket each, and each power of two above
+     * that is split into SUB_BUCKETS buckets of equal width, using the bits just below the highest bit of the time.
+     *
+     * @param nanos the time, in nanoseconds, which must not be negative
+     * @return the index of the bucket
+     */
+    private static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /**
+     * Works out the time in the middle of a bucket, which is reported for any time counted in it
+     *
+     * @param bucketNum the index of the bucket
+     * @return the time in the middle of the bucket, in nanoseconds
+     */
+    private static long bucketMiddle(int bucketNum) {
+        if (bucketNum < SUB_BUCKETS) {
+            return bucketNum;
+        }
+        int shift = bucketNum / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucketNum % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+}
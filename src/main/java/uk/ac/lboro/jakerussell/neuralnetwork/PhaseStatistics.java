@@ -0,0 +1,110 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * PhaseStatistics holds the count, mean and percentiles of how long each run of a phase of training took, such as the
+ * forward pass for a catchment area, as reported by TrainingInstrumentation. Through JMX, each getter is an item of the
+ * phase's attribute.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class PhaseStatistics {
+
+    private final long count;
+    private final double meanNanos;
+    private final long medianNanos;
+    private final long ninetiethPercentileNanos;
+    private final long ninetyNinthPercentileNanos;
+    private final long maxNanos;
+
+    /**
+     * Constructor creates the statistics of a phase
+     *
+     * @param count                      the number of runs of the phase timed
+     * @param meanNanos                  the mean time taken, in nanoseconds
+     * @param medianNanos                the median time taken, in nanoseconds
+     * @param ninetiethPercentileNanos   the 90th percentile of the time taken, in nanoseconds
+     * @param ninetyNinthPercentileNanos the 99th percentile of the time taken, in nanoseconds
+     * @param maxNanos                   the longest time taken, in nanoseconds
+     */
+    PhaseStatistics(long count, double meanNanos, long medianNanos, long ninetiethPercentileNanos, long ninetyNinthPercentileNanos, long maxNanos) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.medianNanos = medianNanos;
+        this.ninetiethPercentileNanos = ninetiethPercentileNanos;
+        this.ninetyNinthPercentileNanos = ninetyNinthPercentileNanos;
+        this.maxNanos = maxNanos;
+    }
+
+
+    /**
+     * Returns the number of runs of the phase which were timed
+     *
+     * @return the number of runs timed
+     */
+    public long getCount() {
+        return count;
+    }
+
+
+    /**
+     * Returns the mean time taken by a run of the phase
+     *
+     * @return the mean time, in nanoseconds
+     */
+    public double getMeanNanos() {
+        return meanNanos;
+    }
+
+
+    /**
+     * Returns the median time taken by a run of the phase
+     *
+     * @return the median time, in nanoseconds
+     */
+    public long getMedianNanos() {
+        return medianNanos;
+    }
+
+
+    /**
+     * Returns the time which 90% of the runs of the phase took no longer than
+     *
+     * @return the 90th percentile of the time, in nanoseconds
+     */
+    public long getNinetiethPercentileNanos() {
+        return ninetiethPercentileNanos;
+    }
+
+
+    /**
+     * Returns the time which 99% of the runs of the phase took no longer than
+     *
+     * @return the 99th percentile of the time, in nanoseconds
+     */
+    public long getNinetyNinthPercentileNanos() {
+        return ninetyNinthPercentileNanos;
+    }
+
+
+    /**
+     * Returns the longest time taken by a run of the phase
+     *
+     * @return the longest time, in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+
+    /**
+     * Returns a short description of the statistics, for the periodic log line
+     *
+     * @return the median and 99th percentile of the time taken
+     */
+    @Override
+    public String toString() {
+        return "median " + medianNanos + " ns, p99 " + ninetyNinthPercentileNanos + " ns";
+    }
+}
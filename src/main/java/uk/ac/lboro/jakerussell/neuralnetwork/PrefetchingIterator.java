@@ -0,0 +1,192 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * PrefetchingIterator is responsible for producing elements on a background thread while the caller consumes them, so
+ * that reading the next chunk of a dataset overlaps with training on the current one.
+ * <p>
+ * At most a fixed number of elements are held in the queue between the two threads, and the background thread waits
+ * whenever the queue is full, so the memory used does not depend on how many elements are produced. If the caller stops
+ * before the end, such as when training fails part-way through a pass, the iterator must be closed, which stops the
+ * background thread and so releases anything the producer holds open, such as the file being read. The for-each loops
+ * over chunks close their iterator with closeIfPrefetching() in a finally block, as an Iterable does not say whether its
+ * iterators need closing.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    // Put into the queue after the last element, or wrapping whatever the producer threw
+    private static final Object END_OF_ELEMENTS = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final Thread producerThread;
+    private volatile boolean closed;
+    private Object nextElement;
+
+    /**
+     * Producer produces every element in order, passing each of them to a sink
+     */
+    @FunctionalInterface
+    interface Producer<T> {
+
+        /**
+         * Produces every element in order
+         *
+         * @param sink the sink to pass each element to, which waits while the queue is full
+         * @throws Exception if an element cannot be produced
+         */
+        void produce(Consumer<T> sink) throws Exception;
+    }
+
+    /**
+     * Constructor starts producing elements on a background thread straight away
+     *
+     * @param producer           the producer of the elements
+     * @param numberOfPrefetched the maximum number of elements produced ahead of the caller
+     * @param threadName         the name of the background thread
+     */
+    PrefetchingIterator(Producer<T> producer, int numberOfPrefetched, String threadName) {
+        if (numberOfPrefetched < 1) {
+            throw new IllegalArgumentException("At least 1 element must be prefetched");
+        }
+        this.queue = new ArrayBlockingQueue<>(numberOfPrefetched);
+
+        this.producerThread = new Thread(() -> {
+            Object endOfElements = END_OF_ELEMENTS;
+            // Errors are passed on as well as exceptions, such as running out of memory while reading a chunk, as the
+            // caller would otherwise wait forever for the end of the elements
+            try {
+                producer.produce(this::put);
+            } catch (Throwable e) {
+                endOfElements = new ProducerFailure(e);
+            }
+
+            // Once the iterator has been closed, nothing is waiting for the end of the elements
+            if (!closed) {
+                try {
+                    put(endOfElements);
+                } catch (IllegalStateException e) {
+                    // The iterator was closed while waiting to put the end of the elements
+                }
+            }
+        }, threadName);
+        this.producerThread.setDaemon(true);
+        this.producerThread.start();
+    }
+
+
+    /**
+     * Closes an iterator if it is a PrefetchingIterator, so that the loops over chunks can close their iterator without
+     * knowing where the chunks come from
+     *
+     * @param iterator the iterator to close, which does not need to be a PrefetchingIterator
+     */
+    static void closeIfPrefetching(Iterator<?> iterator) {
+        if (iterator instanceof PrefetchingIterator) {
+            ((PrefetchingIterator<?>) iterator).close();
+        }
+    }
+
+
+    /**
+     * Determines if there is another element, waiting for the background thread to produce it if needed
+     *
+     * @return true if there is another element, false otherwise
+     * @throws IllegalStateException if the producer threw an exception
+     * @throws Error                 the error thrown by the producer, if it threw one
+     */
+    @Override
+    public boolean hasNext() {
+        if (nextElement == null) {
+            try {
+                nextElement = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next element", e);
+            }
+        }
+        if (nextElement instanceof ProducerFailure) {
+            Throwable cause = ((ProducerFailure) nextElement).cause;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Could not produce the next element", cause);
+        }
+        return nextElement != END_OF_ELEMENTS;
+    }
+
+
+    /**
+     * Returns the next element, waiting for the background thread to produce it if needed
+     *
+     * @return the next element
+     * @throws NoSuchElementException if there are no more elements
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element = (T) nextElement;
+        nextElement = null;
+        return element;
+    }
+
+
+    /**
+     * Stops the background thread, interrupting it if it is waiting for space in the queue or reading, and discards any
+     * elements already produced. The iterator must not be used once it has been closed. Closing an iterator which has
+     * been consumed to the end, or has already been closed, has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        producerThread.interrupt();
+        queue.clear();
+        nextElement = null;
+    }
+
+
+    /**
+     * Puts an element into the queue, waiting while the queue is full - run on the background thread
+     *
+     * @param element the element to put into the queue
+     * @throws IllegalStateException if the background thread is interrupted while waiting
+     */
+    private void put(Object element) {
+        if (closed) {
+            throw new IllegalStateException("The iterator has been closed");
+        }
+        try {
+            queue.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while prefetching", e);
+        }
+    }
+
+
+    /**
+     * ProducerFailure carries an exception or error thrown by the producer to the caller, in place of the end of the
+     * elements
+     */
+    private static final class ProducerFailure {
+        private final Throwable cause;
+
+        private ProducerFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * RingBufferMetricsSink is a TrainingMetricsSink which keeps the results of the most recent validations in memory, in
+ * primitive arrays which are allocated once, so that they can be read back once training has finished. When the arrays
+ * are full, each new result replaces the oldest.
+ * <p>
+ * Results are recorded on the training thread, so they should only be read once train() has returned, or from the
+ * training thread.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class RingBufferMetricsSink implements TrainingMetricsSink {
+
+    private final int[] epochCounts;
+    private final double[] trainingRootMeanSquaredErrors;
+    private final double[] validationRootMeanSquaredErrors;
+    private final double[] learningRates;
+
+    // The index of the oldest result, and the number of results held
+    private int start;
+    private int size;
+
+    /**
+     * Constructor creates a sink which holds the results of up to the given number of validations
+     *
+     * @param capacity the number of validations to hold the results of, which must be at least 1
+     */
+    public RingBufferMetricsSink(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, but was " + capacity);
+        }
+        this.epochCounts = new int[capacity];
+        this.trainingRootMeanSquaredErrors = new double[capacity];
+        this.validationRootMeanSquaredErrors = new double[capacity];
+        this.learningRates = new double[capacity];
+    }
+
+
+    /**
+     * Records the results of a validation of the network, replacing the oldest results if the sink is full
+     *
+     * @param epochCount                     the number of epochs trained for when the network was validated
+     * @param trainingRootMeanSquaredError   the RMSE for the training data during the epoch before the validation
+     * @param validationRootMeanSquaredError the RMSE for the validation data
+     * @param learningRate                   the learning rate after the validation
+     */
+    @Override
+    public void recordValidation(int epochCount, double trainingRootMeanSquaredError, double validationRootMeanSquaredError, double learningRate) {
+        int index;
+        if (size < epochCounts.length) {
+            index = (start + size) % epochCounts.length;
+            size++;
+        } else {
+            index = start;
+            start = (start + 1) % epochCounts.length;
+        }
+        epochCounts[index] = epochCount;
+        trainingRootMeanSquaredErrors[index] = trainingRootMeanSquaredError;
+        validationRootMeanSquaredErrors[index] = validationRootMeanSquaredError;
+        learningRates[index] = learningRate;
+    }
+
+
+    /**
+     * Does nothing, as the results are already held in memory
+     */
+    @Override
+    public void trainingFinished() {
+    }
+
+
+    /**
+     * Discards every result held
+     */
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+
+    /**
+     * Returns the number of validations the sink holds the results of
+     *
+     * @return the number of results held
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of epochs trained for when the network was validated
+     *
+     * @param resultNum the number of the result, where 0 is the oldest result held
+     * @return the epoch of the validation
+     */
+    public int getEpochCount(int resultNum) {
+        return epochCounts[index(resultNum)];
+    }
+
+
+    /**
+     * Returns the RMSE for the training data during the epoch before a validation
+     *
+     * @param resultNum the number of the result, where 0 is the oldest result held
+     * @return the training RMSE
+     */
+    public double getTrainingRootMeanSquaredError(int resultNum) {
+        return trainingRootMeanSquaredErrors[index(resultNum)];
+    }
+
+
+    /**
+     * Returns the RMSE for the validation data of a validation
+     *
+     * @param resultNum the number of the result, where 0 is the oldest result held
+     * @return the validation RMSE
+     */
+    public double getValidationRootMeanSquaredError(int resultNum) {
+        return validationRootMeanSquaredErrors[index(resultNum)];
+    }
+
+
+    /**
+     * Returns the learning rate after a validation
+     *
+     * @param resultNum the number of the result, where 0 is the oldest result held
+     * @return the learning rate
+     */
+    public double getLearningRate(int resultNum) {
+        return learningRates[index(resultNum)];
+    }
+
+
+    /**
+     * Works out where a result is held in the arrays
+     *
+     * @param resultNum the number of the result, where 0 is the oldest result held
+     * @return the index of the result in the arrays
+     * @throws IndexOutOfBoundsException if the sink does not hold that many results
+     */
+    private int index(int resultNum) {
+        if (resultNum < 0 || resultNum >= size) {
+            throw new IndexOutOfBoundsException("Result " + resultNum + " is not one of the " + size + " results held");
+        }
+        return (start + resultNum) % epochCounts.length;
+    }
+}
@@ -0,0 +1,89 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * ScalarDenseKernels implements the dense layer operations with plain loops, performing the arithmetic in exactly the
+ * same order as the original network so that results are reproducible
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class ScalarDenseKernels implements DenseKernels {
+
+    @Override
+    public void batchWeightedSums(double[] weights, double[] biases, double[] inputs, double[] weightedSums, int numberOfSamples, int numberOfNodes, int numberOfInputs) {
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int inputOffset = sampleNum * numberOfInputs;
+            int outputOffset = sampleNum * numberOfNodes;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                weightedSums[outputOffset + nodeNum] = dotProduct(inputs, inputOffset, weights, nodeNum * numberOfInputs, numberOfInputs) + biases[nodeNum];
+            }
+        }
+    }
+
+    @Override
+    public void activate(ActivationFunctions activationFunction, double[] values, int offset, int length) {
+        activationFunction.activate(values, offset, length);
+    }
+
+    @Override
+    public void firstDerivative(ActivationFunctions activationFunction, double[] values, double[] firstDerivatives, int offset, int length) {
+        activationFunction.firstDerivative(values, firstDerivatives, offset, length);
+    }
+
+    @Override
+    public void updateWeights(double[] weights, double[] updatedWeights, double[] deltas, double[] inputs, int numberOfNodes, int numberOfInputs,
+                              double learningRate, boolean useMomentum, double momentumTerm, boolean outputLayer) {
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            int rowOffset = nodeNum * numberOfInputs;
+            for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
+                int weightNum = rowOffset + inputNum;
+                double newWeight;
+                if (outputLayer) {
+                    newWeight = weights[weightNum] + (learningRate * deltas[nodeNum] * inputs[inputNum]);
+                } else {
+                    newWeight = weights[weightNum] + (learningRate * (deltas[nodeNum] * inputs[inputNum]));
+                }
+
+                // If Momentum is to be used, calculate the new weight value with momentum, and add this to the weight
+                if (useMomentum) {
+                    double weightDifference = newWeight - weights[weightNum];
+                    newWeight = newWeight + (momentumTerm * weightDifference);
+                }
+                updatedWeights[weightNum] = newWeight;
+            }
+        }
+    }
+
+    @Override
+    public void accumulateWeightChanges(double[] deltas, double[] inputs, double[] weightChangeSums, int numberOfSamples, int numberOfNodes, int numberOfInputs) {
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int inputOffset = sampleNum * numberOfInputs;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                double delta = deltas[sampleNum * numberOfNodes + nodeNum];
+                int rowOffset = nodeNum * numberOfInputs;
+                for (int inputNum = 0; inputNum < numberOfInputs; inputNum++) {
+                    weightChangeSums[rowOffset + inputNum] = weightChangeSums[rowOffset + inputNum] + (delta * inputs[inputOffset + inputNum]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the dot product of two ranges of values
+     *
+     * @param values       the first array of values
+     * @param valuesOffset the index of the first value to use in the first array
+     * @param weights      the second array of values
+     * @param weightOffset the index of the first value to use in the second array
+     * @param length       the number of values to multiply and sum
+     * @return the sum of the products of each pair of values
+     */
+    private static double dotProduct(double[] values, int valuesOffset, double[] weights, int weightOffset, int length) {
+        double weightedSum = 0.0;
+        for (int valueNum = 0; valueNum < length; valueNum++) {
+            weightedSum = weightedSum + (values[valuesOffset + valueNum] * weights[weightOffset + valueNum]);
+        }
+        return weightedSum;
+    }
+}
@@ -0,0 +1,377 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * StreamingCatchmentData is responsible for cleaning, standardising and splitting a CSV file of catchment area data
+ * that is too large to be held in memory, by streaming over the file rather than reading it into a list.
+ * <p>
+ * The data is prepared in the same way as DataProcessor prepares an in-memory list, in 3 passes over the file which
+ * each hold a single row at a time:
+ * <ol>
+ *     <li>the mean and standard deviation of each column are calculated in one pass</li>
+ *     <li>the rows which are not outliers are counted, to find where the training, validation and testing datasets start</li>
+ *     <li>the minimum and maximum of each column are calculated over the training and validation datasets</li>
+ * </ol>
+ * Each dataset is then read as an Iterable of chunks, where every pass over it streams the file again, filtering out
+ * the outliers and standardising each row on the fly. The chunks are read on a background thread, at most a fixed
+ * number ahead of the network training on them, so the memory used depends only on the chunk size.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public final class StreamingCatchmentData {
+
+    private static final int NUMBER_OF_COLUMNS = CatchmentArea.NUMBER_OF_FEATURES + 1;
+    private static final int STANDARD_DEVIATION_MULTIPLIER = 4;
+    private static final String DELIMITER = ",";
+
+    private final Path csvFile;
+    private final int chunkSize;
+    private final int numberOfPrefetchedChunks;
+
+    private final ColumnStatistics allDataStatistics;
+    private final long numberOfInvalidRows;
+    private final double[] columnMinimums;
+    private final double[] columnMaximums;
+
+    // The number of rows remaining once outliers have been removed, and where each dataset starts within those rows
+    private final int numberOfSamples;
+    private final int numberOfTrainingSamples;
+    private final int validationStart;
+    private final int numberOfValidationSamples;
+    private final int testStart;
+    private final int numberOfTestSamples;
+
+    /**
+     * RowVisitor is given each valid row of the CSV file in turn, and decides whether to carry on reading the file
+     */
+    @FunctionalInterface
+    private interface RowVisitor {
+
+        /**
+         * Visits a row of the CSV file
+         *
+         * @param row the value of each column of the row, which is reused for the next row
+         * @return true if the next row should be read, false if reading should stop
+         */
+        boolean visit(double[] row);
+    }
+
+    /**
+     * Constructor prepares the data by streaming over the CSV file 3 times. Use prepare() to create an instance.
+     *
+     * @param csvFile                  the path of the CSV file
+     * @param chunkSize                the number of samples in each chunk
+     * @param numberOfPrefetchedChunks the maximum number of chunks read ahead of the network
+     * @throws IOException if the CSV file cannot be read
+     */
+    private StreamingCatchmentData(Path csvFile, int chunkSize, int numberOfPrefetchedChunks) throws IOException {
+        this.csvFile = csvFile;
+        this.chunkSize = chunkSize;
+        this.numberOfPrefetchedChunks = numberOfPrefetchedChunks;
+
+        // Pass 1 - calculates the mean and standard deviation of each column, used for identifying outliers
+        ColumnStatistics statistics = new ColumnStatistics(NUMBER_OF_COLUMNS);
+        this.numberOfInvalidRows = forEachRow(row -> {
+            statistics.add(row);
+            return true;
+        });
+        this.allDataStatistics = statistics;
+
+        // Pass 2 - counts the rows which are not outliers, and splits them into the same 3 distinct subsets as DataProcessor
+        long[] numberOfRemainingRows = new long[1];
+        forEachRow(row -> {
+            if (!isOutlier(row)) {
+                numberOfRemainingRows[0]++;
+            }
+            return true;
+        });
+        if (numberOfRemainingRows[0] > Integer.MAX_VALUE) {
+            throw new IOException(csvFile + " has too many rows to index: " + numberOfRemainingRows[0]);
+        }
+        this.numberOfSamples = (int) numberOfRemainingRows[0];
+        this.numberOfTrainingSamples = (int) (numberOfSamples * 0.6);
+        this.validationStart = numberOfTrainingSamples;
+        this.numberOfValidationSamples = (int) (numberOfSamples * 0.2);
+        this.testStart = (int) (numberOfSamples * 0.8);
+        this.numberOfTestSamples = Math.min((int) (numberOfSamples * 0.2), numberOfSamples - testStart);
+
+        // Pass 3 - calculates the minimum and maximum values of each column, excluding the testing data set
+        ColumnStatistics trainingPlusValidationStatistics = new ColumnStatistics(NUMBER_OF_COLUMNS);
+        int numberOfTrainingPlusValidationSamples = numberOfTrainingSamples + numberOfValidationSamples;
+        forEachRemainingRow(0, numberOfTrainingPlusValidationSamples, row -> {
+            trainingPlusValidationStatistics.add(row);
+            return true;
+        });
+        this.columnMinimums = trainingPlusValidationStatistics.getMinimums();
+        this.columnMaximums = trainingPlusValidationStatistics.getMaximums();
+    }
+
+
+    /**
+     * Prepares a CSV file of catchment area data for streaming, calculating everything needed to remove the outliers and
+     * standardise the remaining rows on the fly
+     *
+     * @param csvFile                  the path of the CSV file
+     * @param chunkSize                the number of samples in each chunk, which should be a multiple of the network's
+     *                                 batch size if Batch Processing is used, so that no mini-batch is cut short
+     * @param numberOfPrefetchedChunks the maximum number of chunks read ahead of the network
+     * @return the prepared data
+     * @throws IOException if the CSV file cannot be read
+     */
+    public static StreamingCatchmentData prepare(Path csvFile, int chunkSize, int numberOfPrefetchedChunks) throws IOException {
+        if (chunkSize < 1 || numberOfPrefetchedChunks < 1) {
+            throw new IllegalArgumentException("The chunk size and the number of prefetched chunks must be at least 1");
+        }
+        return new StreamingCatchmentData(csvFile, chunkSize, numberOfPrefetchedChunks);
+    }
+
+
+    /**
+     * Returns the number of rows of the CSV file which were skipped because they were missing data or were not numerical
+     *
+     * @return the number of invalid rows
+     */
+    public long getNumberOfInvalidRows() {
+        return numberOfInvalidRows;
+    }
+
+
+    /**
+     * Returns the number of rows removed as outliers
+     *
+     * @return the number of outliers
+     */
+    public long getNumberOfOutliers() {
+        return allDataStatistics.getCount() - numberOfSamples;
+    }
+
+
+    /**
+     * Returns the number of rows remaining once outliers have been removed
+     *
+     * @return the number of samples across the training, validation and testing datasets
+     */
+    public int getNumberOfSamples() {
+        return numberOfSamples;
+    }
+
+
+    /**
+     * Returns the minimum value of a column before it was standardised, in the order of the columns of the CSV file
+     *
+     * @param columnNum the number of the column
+     * @return the minimum value of the column, excluding the testing dataset
+     */
+    public double getColumnMinimum(int columnNum) {
+        return columnMinimums[columnNum];
+    }
+
+
+    /**
+     * Returns the maximum value of a column before it was standardised, in the order of the columns of the CSV file
+     *
+     * @param columnNum the number of the column
+     * @return the maximum value of the column, excluding the testing dataset
+     */
+    public double getColumnMaximum(int columnNum) {
+        return columnMaximums[columnNum];
+    }
+
+
+    /**
+     * Returns the 60% training dataset, as chunks which are read from the CSV file on each pass
+     *
+     * @return the chunks of the training dataset
+     */
+    public Iterable<Dataset> trainingChunks() {
+        return () -> chunks(0, numberOfTrainingSamples);
+    }
+
+
+    /**
+     * Returns the 20% validation dataset, as chunks which are read from the CSV file on each pass
+     *
+     * @return the chunks of the validation dataset
+     */
+    public Iterable<Dataset> validationChunks() {
+        return () -> chunks(validationStart, numberOfValidationSamples);
+    }
+
+
+    /**
+     * Returns the 20% testing dataset, as chunks which are read from the CSV file on each pass
+     *
+     * @return the chunks of the testing dataset
+     */
+    public Iterable<Dataset> testChunks() {
+        return () -> chunks(testStart, numberOfTestSamples);
+    }
+
+
+    /**
+     * Starts reading a range of the rows remaining once outliers have been removed, as standardised chunks, on a
+     * background thread
+     *
+     * @param first           the index of the first remaining row to read
+     * @param numberOfSamples the number of remaining rows to read
+     * @return an iterator over the chunks
+     */
+    private PrefetchingIterator<Dataset> chunks(int first, int numberOfSamples) {
+        return new PrefetchingIterator<>(sink -> readChunks(first, numberOfSamples, sink), numberOfPrefetchedChunks,
+                "Catchment Data Reader");
+    }
+
+
+    /**
+     * Reads a range of the rows remaining once outliers have been removed, standardising each row using the minimum and
+     * maximum values of each column, and passes them to a sink in chunks
+     *
+     * @param first           the index of the first remaining row to read
+     * @param numberOfSamples the number of remaining rows to read
+     * @param sink            the sink to pass each chunk to
+     * @throws IOException if the CSV file cannot be read
+     */
+    private void readChunks(int first, int numberOfSamples, Consumer<Dataset> sink) throws IOException {
+        Dataset[] chunk = {new Dataset(Math.min(chunkSize, numberOfSamples), CatchmentArea.NUMBER_OF_FEATURES, 1)};
+        int[] numberOfSamplesRead = new int[1];
+        forEachRemainingRow(first, numberOfSamples, row -> {
+            int sampleNum = numberOfSamplesRead[0] % chunkSize;
+            for (int featureNum = 0; featureNum < CatchmentArea.NUMBER_OF_FEATURES; featureNum++) {
+                chunk[0].setFeature(sampleNum, featureNum, standardisedValue(row, featureNum));
+            }
+            chunk[0].setTarget(sampleNum, 0, standardisedValue(row, CatchmentArea.NUMBER_OF_FEATURES));
+            numberOfSamplesRead[0]++;
+
+            // Once a chunk is full, pass it on and start the next one
+            if (sampleNum == chunk[0].size() - 1) {
+                sink.accept(chunk[0]);
+                int numberOfSamplesLeft = numberOfSamples - numberOfSamplesRead[0];
+                if (numberOfSamplesLeft > 0) {
+                    chunk[0] = new Dataset(Math.min(chunkSize, numberOfSamplesLeft), CatchmentArea.NUMBER_OF_FEATURES, 1);
+                }
+            }
+            return true;
+        });
+        if (numberOfSamplesRead[0] != numberOfSamples) {
+            throw new IOException(csvFile + " changed while it was being read");
+        }
+    }
+
+
+    /**
+     * Reads a range of the rows remaining once outliers have been removed, stopping once the range has been read
+     *
+     * @param first           the index of the first remaining row to read
+     * @param numberOfSamples the number of remaining rows to read
+     * @param visitor         the visitor to give each remaining row in the range to
+     * @throws IOException if the CSV file cannot be read
+     */
+    private void forEachRemainingRow(int first, int numberOfSamples, RowVisitor visitor) throws IOException {
+        if (numberOfSamples == 0) {
+            return;
+        }
+        int end = first + numberOfSamples;
+        int[] remainingRowIndex = new int[1];
+        forEachRow(row -> {
+            if (isOutlier(row)) {
+                return true;
+            }
+            int index = remainingRowIndex[0]++;
+            if (index >= first) {
+                visitor.visit(row);
+            }
+            return index + 1 < end;
+        });
+    }
+
+
+    /**
+     * Reads the CSV file one line at a time, giving each valid row to a visitor. A row is skipped if any of its values are
+     * missing, are not numerical, or are -999.
+     *
+     * @param visitor the visitor to give each valid row to
+     * @return the number of invalid rows skipped
+     * @throws IOException if the CSV file cannot be read
+     */
+    private long forEachRow(RowVisitor visitor) throws IOException {
+        long numberOfInvalidRows = 0;
+        double[] row = new double[NUMBER_OF_COLUMNS];
+        try (BufferedReader br = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!parseRow(line, row)) {
+                    numberOfInvalidRows++;
+                } else if (!visitor.visit(row)) {
+                    break;
+                }
+            }
+        }
+        return numberOfInvalidRows;
+    }
+
+
+    /**
+     * Parses a line of the CSV file into a row of values
+     *
+     * @param line the line to parse
+     * @param row  the array to parse the values into
+     * @return true if the row is valid, false if any of its values are missing, are not numerical, or are -999
+     */
+    private static boolean parseRow(String line, double[] row) {
+        String[] values = line.split(DELIMITER);
+        if (values.length < NUMBER_OF_COLUMNS) {
+            return false;
+        }
+        try {
+            for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+                row[columnNum] = Double.parseDouble(values[columnNum]);
+                if (row[columnNum] == -999) {
+                    return false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Determines if a row is an outlier, which is if any of its values are more than 4 standard deviations from the mean
+     * of its column
+     *
+     * @param row the value of each column of the row
+     * @return true if the row is an outlier, false otherwise
+     */
+    private boolean isOutlier(double[] row) {
+        for (int columnNum = 0; columnNum < NUMBER_OF_COLUMNS; columnNum++) {
+            double mean = allDataStatistics.getMean(columnNum);
+            double standardDeviation = allDataStatistics.getStandardDeviation(columnNum);
+            if (row[columnNum] > mean + (STANDARD_DEVIATION_MULTIPLIER * standardDeviation) ||
+                    row[columnNum] < mean - (STANDARD_DEVIATION_MULTIPLIER * standardDeviation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Standardises a value of a row, using the minimum and maximum values of its column
+     *
+     * @param row       the value of each column of the row
+     * @param columnNum the number of the column of the value to standardise
+     * @return the standardised value, between 0.1 and 0.9 for rows outside of the testing dataset
+     */
+    private double standardisedValue(double[] row, int columnNum) {
+        return 0.8 * ((row[columnNum] - columnMinimums[columnNum]) / (columnMaximums[columnNum] - columnMinimums[columnNum])) + 0.1;
+    }
+}
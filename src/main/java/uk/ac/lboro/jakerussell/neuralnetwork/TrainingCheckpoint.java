@@ -0,0 +1,651 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TrainingCheckpoint is responsible for holding a snapshot of everything needed to continue training a NeuralNetwork
+ * exactly where it left off, and for writing the snapshot to a binary file and reading it back.
+ * <p>
+ * As well as the network's configuration, a checkpoint holds the current and previous weights and biases of every layer,
+ * since the previous values are needed for Bold Driver to undo the most recent change, along with the current and
+ * starting learning rates, the number of epochs trained for, and the validation RMSE training is being compared against.
+ * The state of the EarlyStoppingMonitor is held too, including the best weights and biases so far if they are kept.
+ * <p>
+ * All values are little-endian. The file starts with a header of:
+ * <ul>
+ *     <li>the magic number and the format version, as ints</li>
+ *     <li>the number of inputs and the number of layers, as ints, followed by the number of nodes in each layer, as
+ *     ints, where the last layer is the output layer</li>
+ *     <li>the length of the UTF-8 name of the activation function as an int, and the name</li>
+ *     <li>the number of improvements as an int, followed by the length of the UTF-8 name of each as an int, and the name</li>
+ *     <li>the number of epochs to train for and the batch size, as ints, and the seed, as a long</li>
+ *     <li>the number of epochs trained for as an int, the learning rate, the starting learning rate, the best and the most
+ *     recent validation RMSE as doubles, and whether the previous weights and biases can be undone to and whether
+ *     training is to carry on until the early stopping policy stops it, as ints</li>
+ *     <li>the best validation RMSE of the early stopping monitor and the validation RMSE of its most recent improvement,
+ *     as doubles, the number of validations without an
+ *     improvement and the number of values in the plateau history as ints, followed by the values as doubles, and
+ *     whether the best weights and biases are held, as an int</li>
+ * </ul>
+ * The header is padded to a multiple of 8 bytes, and is followed by the row-major weights, previous weights, biases and
+ * previous biases of each layer in turn, as doubles. If the best weights and biases are held, they follow, with the
+ * weights and then the biases of each layer in turn.
+ * <p>
+ * Files of format version 1, written before the early stopping state was held, can still be read. The early stopping
+ * monitor then carries on from the best validation RMSE alone.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class TrainingCheckpoint {
+
+    private static final int MAGIC_NUMBER = 0x4E4E4350;
+    private static final int FORMAT_VERSION = 2;
+    private static final int FORMAT_VERSION_WITHOUT_EARLY_STOPPING = 1;
+
+    private final int numberOfInputs;
+    private final int[] layerSizes;
+    private final ActivationFunctions activationFunction;
+    private final List<Improvements> improvements;
+    private final int numberOfEpochsToTrainFor;
+    private final int batchSize;
+    private final long seed;
+
+    private final int epochCount;
+    private final double learningRate;
+    private final double startingLearningRate;
+    private final double bestValidationRootMeanSquaredError;
+    private final double validationRootMeanSquaredError;
+    private final boolean previousWeightsAndBiasesAvailable;
+    private final boolean carryOnTraining;
+
+    private final double[][] weights;
+    private final double[][] previousWeights;
+    private final double[][] biases;
+    private final double[][] previousBiases;
+
+    private final double earlyStoppingBestRootMeanSquaredError;
+    private final double improvedRootMeanSquaredError;
+    private final int validationsWithoutImprovement;
+    private final double[] earlyStoppingHistory;
+    private final double[][] bestWeights;
+    private final double[][] bestBiases;
+
+    /**
+     * Constructor creates a checkpoint from a snapshot of a network. The arrays are kept rather than copied, so they must
+     * not be changed afterwards.
+     *
+     * @param numberOfInputs                        the number of inputs to the network
+     * @param layerSizes                            the number of nodes in each layer, ending with the output layer
+     * @param activationFunction                    the activation function used by every node
+     * @param improvements                          the improvements used by the network
+     * @param numberOfEpochsToTrainFor              the number of epochs the network trains for, or 0 if training stops automatically
+     * @param batchSize                             the number of catchment areas in each mini-batch
+     * @param seed                                  the seed the network was created with
+     * @param epochCount                            the number of epochs trained for so far
+     * @param learningRate                          the current learning rate
+     * @param startingLearningRate                  the learning rate at the start of training, which Annealing decreases from
+     * @param bestValidationRootMeanSquaredError    the validation RMSE that the next validation RMSE will be compared against
+     * @param validationRootMeanSquaredError        the most recent validation RMSE
+     * @param previousWeightsAndBiasesAvailable     true if the most recent weight and bias change can be undone
+     * @param carryOnTraining                       true if training is to carry on until the early stopping policy stops it
+     * @param weights                               the row-major weights of each layer
+     * @param previousWeights                       the row-major weights of each layer before the most recent change
+     * @param biases                                the biases of each layer
+     * @param previousBiases                        the biases of each layer before the most recent change
+     * @param earlyStoppingBestRootMeanSquaredError the best validation RMSE of the early stopping monitor
+     * @param improvedRootMeanSquaredError          the validation RMSE of the early stopping monitor's most recent improvement
+     * @param validationsWithoutImprovement         the number of validations in a row without an improvement
+     * @param earlyStoppingHistory                  the best validation RMSE after each of the most recent validations, oldest first
+     * @param bestWeights                           the row-major weights of each layer at the best validation RMSE, or null if not held
+     * @param bestBiases                            the biases of each layer at the best validation RMSE, or null if not held
+     */
+    TrainingCheckpoint(int numberOfInputs, int[] layerSizes, ActivationFunctions activationFunction, List<Improvements> improvements,
+                       int numberOfEpochsToTrainFor, int batchSize, long seed, int epochCount, double learningRate, double startingLearningRate,
+                       double bestValidationRootMeanSquaredError, double validationRootMeanSquaredError, boolean previousWeightsAndBiasesAvailable,
+                       boolean carryOnTraining, double[][] weights, double[][] previousWeights, double[][] biases, double[][] previousBiases,
+                       double earlyStoppingBestRootMeanSquaredError, double improvedRootMeanSquaredError, int validationsWithoutImprovement, double[] earlyStoppingHistory,
+                       double[][] bestWeights, double[][] bestBiases) {
+        this.numberOfInputs = numberOfInputs;
+        this.layerSizes = layerSizes;
+        this.activationFunction = activationFunction;
+        this.improvements = Collections.unmodifiableList(new ArrayList<>(improvements));
+        this.numberOfEpochsToTrainFor = numberOfEpochsToTrainFor;
+        this.batchSize = batchSize;
+        this.seed = seed;
+        this.epochCount = epochCount;
+        this.learningRate = learningRate;
+        this.startingLearningRate = startingLearningRate;
+        this.bestValidationRootMeanSquaredError = bestValidationRootMeanSquaredError;
+        this.validationRootMeanSquaredError = validationRootMeanSquaredError;
+        this.previousWeightsAndBiasesAvailable = previousWeightsAndBiasesAvailable;
+        this.carryOnTraining = carryOnTraining;
+        this.weights = weights;
+        this.previousWeights = previousWeights;
+        this.biases = biases;
+        this.previousBiases = previousBiases;
+        this.earlyStoppingBestRootMeanSquaredError = earlyStoppingBestRootMeanSquaredError;
+        this.improvedRootMeanSquaredError = improvedRootMeanSquaredError;
+        this.validationsWithoutImprovement = validationsWithoutImprovement;
+        this.earlyStoppingHistory = earlyStoppingHistory;
+        this.bestWeights = bestWeights;
+        this.bestBiases = bestBiases;
+    }
+
+
+    /**
+     * Returns the number of inputs to the network
+     *
+     * @return the number of inputs
+     */
+    int getNumberOfInputs() {
+        return numberOfInputs;
+    }
+
+
+    /**
+     * Returns the number of nodes in each hidden layer
+     *
+     * @return a new array of the size of each hidden layer, in order
+     */
+    int[] getHiddenLayerSizes() {
+        int[] hiddenLayerSizes = new int[layerSizes.length - 1];
+        System.arraycopy(layerSizes, 0, hiddenLayerSizes, 0, hiddenLayerSizes.length);
+        return hiddenLayerSizes;
+    }
+
+
+    /**
+     * Returns the number of values the network predicts for each catchment area
+     *
+     * @return the number of outputs
+     */
+    int getNumberOfOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+
+    /**
+     * Returns the activation function used by every node
+     *
+     * @return the activation function
+     */
+    ActivationFunctions getActivationFunction() {
+        return activationFunction;
+    }
+
+
+    /**
+     * Returns the improvements used by the network
+     *
+     * @return an unmodifiable list of the improvements
+     */
+    List<Improvements> getImprovements() {
+        return improvements;
+    }
+
+
+    /**
+     * Returns the number of epochs the network trains for
+     *
+     * @return the number of epochs to train for, or 0 if training stops automatically
+     */
+    int getNumberOfEpochsToTrainFor() {
+        return numberOfEpochsToTrainFor;
+    }
+
+
+    /**
+     * Returns the number of catchment areas in each mini-batch - used in the case of Batch Processing
+     *
+     * @return the batch size
+     */
+    int getBatchSize() {
+        return batchSize;
+    }
+
+
+    /**
+     * Returns the seed the network was created with
+     *
+     * @return the seed of the network
+     */
+    long getSeed() {
+        return seed;
+    }
+
+
+    /**
+     * Returns the number of epochs trained for when the checkpoint was taken
+     *
+     * @return the number of epochs trained for
+     */
+    int getEpochCount() {
+        return epochCount;
+    }
+
+
+    /**
+     * Returns the learning rate when the checkpoint was taken
+     *
+     * @return the current learning rate
+     */
+    double getLearningRate() {
+        return learningRate;
+    }
+
+
+    /**
+     * Returns the learning rate at the start of training, which Annealing decreases from
+     *
+     * @return the starting learning rate
+     */
+    double getStartingLearningRate() {
+        return startingLearningRate;
+    }
+
+
+    /**
+     * Returns the validation RMSE that the next validation RMSE will be compared against
+     *
+     * @return the best validation RMSE so far
+     */
+    double getBestValidationRootMeanSquaredError() {
+        return bestValidationRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the most recent validation RMSE
+     *
+     * @return the most recent validation RMSE
+     */
+    double getValidationRootMeanSquaredError() {
+        return validationRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns whether the most recent weight and bias change can be undone - used in the case of Bold Driver
+     *
+     * @return true if the previous weights and biases can be undone to
+     */
+    boolean isPreviousWeightsAndBiasesAvailable() {
+        return previousWeightsAndBiasesAvailable;
+    }
+
+
+    /**
+     * Returns whether training is to carry on until the early stopping policy stops it, which is false once it has, or
+     * if the network trains for a fixed number of epochs
+     *
+     * @return true if training is to carry on until the early stopping policy stops it
+     */
+    boolean isCarryOnTraining() {
+        return carryOnTraining;
+    }
+
+
+    /**
+     * Returns the weights of a layer. The array belongs to the checkpoint, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the row-major weights of the layer, with one row per node
+     */
+    double[] getWeights(int layerNum) {
+        return weights[layerNum];
+    }
+
+
+    /**
+     * Returns the weights of a layer before the most recent change. The array belongs to the checkpoint, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the row-major previous weights of the layer, with one row per node
+     */
+    double[] getPreviousWeights(int layerNum) {
+        return previousWeights[layerNum];
+    }
+
+
+    /**
+     * Returns the biases of a layer. The array belongs to the checkpoint, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the biases of the layer's nodes
+     */
+    double[] getBiases(int layerNum) {
+        return biases[layerNum];
+    }
+
+
+    /**
+     * Returns the biases of a layer before the most recent change. The array belongs to the checkpoint, so it must not be changed.
+     *
+     * @param layerNum the number of the layer, where the last layer is the output layer
+     * @return the previous biases of the layer's nodes
+     */
+    double[] getPreviousBiases(int layerNum) {
+        return previousBiases[layerNum];
+    }
+
+
+    /**
+     * Returns the best validation RMSE of the early stopping monitor
+     *
+     * @return the best validation RMSE so far
+     */
+    double getEarlyStoppingBestRootMeanSquaredError() {
+        return earlyStoppingBestRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the validation RMSE of the early stopping monitor's most recent improvement of at least the minimum delta
+     *
+     * @return the validation RMSE of the most recent improvement
+     */
+    double getImprovedRootMeanSquaredError() {
+        return improvedRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the number of validations in a row without an improvement of at least the minimum delta
+     *
+     * @return the number of validations without an improvement
+     */
+    int getValidationsWithoutImprovement() {
+        return validationsWithoutImprovement;
+    }
+
+
+    /**
+     * Returns the best validation RMSE after each of the most recent validations, used to detect a plateau. The array
+     * belongs to the checkpoint, so it must not be changed.
+     *
+     * @return the best validation RMSEs, oldest first
+     */
+    double[] getEarlyStoppingHistory() {
+        return earlyStoppingHistory;
+    }
+
+
+    /**
+     * Returns the weights of each layer at the best validation RMSE. The arrays belong to the checkpoint, so they must not
+     * be changed.
+     *
+     * @return the row-major weights of each layer, or null if the best weights were not kept
+     */
+    double[][] getBestWeights() {
+        return bestWeights;
+    }
+
+
+    /**
+     * Returns the biases of each layer at the best validation RMSE. The arrays belong to the checkpoint, so they must not
+     * be changed.
+     *
+     * @return the biases of each layer, or null if the best weights were not kept
+     */
+    double[][] getBestBiases() {
+        return bestBiases;
+    }
+
+
+    /**
+     * Writes the checkpoint to a binary file. The checkpoint is written to a temporary file next to it which then replaces
+     * the file, so a job killed while writing a checkpoint leaves the previous checkpoint intact.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    void write(Path file) throws IOException {
+        byte[] activationFunctionName = activationFunction.name().getBytes(StandardCharsets.UTF_8);
+        byte[][] improvementNames = new byte[improvements.size()][];
+        int headerLength = (4 + layerSizes.length) * Integer.BYTES + Integer.BYTES + activationFunctionName.length + Integer.BYTES;
+        for (int improvementNum = 0; improvementNum < improvements.size(); improvementNum++) {
+            improvementNames[improvementNum] = improvements.get(improvementNum).name().getBytes(StandardCharsets.UTF_8);
+            headerLength = headerLength + Integer.BYTES + improvementNames[improvementNum].length;
+        }
+        headerLength = headerLength + 2 * Integer.BYTES + Long.BYTES + Integer.BYTES + 4 * Double.BYTES + 2 * Integer.BYTES;
+        headerLength = headerLength + 2 * Double.BYTES + 2 * Integer.BYTES + earlyStoppingHistory.length * Double.BYTES + Integer.BYTES;
+        int parametersStart = (headerLength + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        int numberOfParameters = 0;
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            numberOfParameters = numberOfParameters + 2 * (weights[layerNum].length + biases[layerNum].length);
+            if (bestWeights != null) {
+                numberOfParameters = numberOfParameters + weights[layerNum].length + biases[layerNum].length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(parametersStart + numberOfParameters * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Write the header
+        buffer.putInt(MAGIC_NUMBER);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(numberOfInputs);
+        buffer.putInt(layerSizes.length);
+        for (int layerSize : layerSizes) {
+            buffer.putInt(layerSize);
+        }
+        buffer.putInt(activationFunctionName.length);
+        buffer.put(activationFunctionName);
+        buffer.putInt(improvementNames.length);
+        for (byte[] improvementName : improvementNames) {
+            buffer.putInt(improvementName.length);
+            buffer.put(improvementName);
+        }
+        buffer.putInt(numberOfEpochsToTrainFor);
+        buffer.putInt(batchSize);
+        buffer.putLong(seed);
+        buffer.putInt(epochCount);
+        buffer.putDouble(learningRate);
+        buffer.putDouble(startingLearningRate);
+        buffer.putDouble(bestValidationRootMeanSquaredError);
+        buffer.putDouble(validationRootMeanSquaredError);
+        buffer.putInt(previousWeightsAndBiasesAvailable ? 1 : 0);
+        buffer.putInt(carryOnTraining ? 1 : 0);
+        buffer.putDouble(earlyStoppingBestRootMeanSquaredError);
+        buffer.putDouble(improvedRootMeanSquaredError);
+        buffer.putInt(validationsWithoutImprovement);
+        buffer.putInt(earlyStoppingHistory.length);
+        for (double bestRootMeanSquaredError : earlyStoppingHistory) {
+            buffer.putDouble(bestRootMeanSquaredError);
+        }
+        buffer.putInt(bestWeights != null ? 1 : 0);
+        buffer.position(parametersStart);
+
+        // Write the weights, previous weights, biases and previous biases of each layer
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            putDoubles(buffer, weights[layerNum]);
+            putDoubles(buffer, previousWeights[layerNum]);
+            putDoubles(buffer, biases[layerNum]);
+            putDoubles(buffer, previousBiases[layerNum]);
+        }
+        if (bestWeights != null) {
+            for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+                putDoubles(buffer, bestWeights[layerNum]);
+                putDoubles(buffer, bestBiases[layerNum]);
+            }
+        }
+        buffer.flip();
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Reads a checkpoint from a binary file
+     *
+     * @param file the file to read
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read, or is not a valid checkpoint file
+     */
+    static TrainingCheckpoint read(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return read(file, buffer);
+        } catch (RuntimeException e) {
+            // A truncated or corrupted header shows up as a buffer underflow or an invalid name or topology
+            throw new IOException(file + " is not a valid checkpoint file: " + e, e);
+        }
+    }
+
+
+    /**
+     * Reads the header and the weights and biases of a checkpoint file
+     *
+     * @param file   the path of the file, used in error messages
+     * @param buffer the contents of the file
+     * @return the checkpoint
+     * @throws IOException if the file is not a checkpoint file, or is not the length its header describes
+     */
+    private static TrainingCheckpoint read(Path file, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4 * Integer.BYTES || buffer.getInt() != MAGIC_NUMBER) {
+            throw new IOException(file + " is not a checkpoint file");
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion != FORMAT_VERSION && formatVersion != FORMAT_VERSION_WITHOUT_EARLY_STOPPING) {
+            throw new IOException(file + " has unsupported format version " + formatVersion);
+        }
+        int numberOfInputs = buffer.getInt();
+        int[] layerSizes = new int[buffer.getInt()];
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            layerSizes[layerNum] = buffer.getInt();
+        }
+        ActivationFunctions activationFunction = ActivationFunctions.valueOf(getString(buffer));
+        int numberOfImprovements = buffer.getInt();
+        List<Improvements> improvements = new ArrayList<>();
+        for (int improvementNum = 0; improvementNum < numberOfImprovements; improvementNum++) {
+            improvements.add(Improvements.valueOf(getString(buffer)));
+        }
+        int numberOfEpochsToTrainFor = buffer.getInt();
+        int batchSize = buffer.getInt();
+        long seed = buffer.getLong();
+        int epochCount = buffer.getInt();
+        double learningRate = buffer.getDouble();
+        double startingLearningRate = buffer.getDouble();
+        double bestValidationRootMeanSquaredError = buffer.getDouble();
+        double validationRootMeanSquaredError = buffer.getDouble();
+        boolean previousWeightsAndBiasesAvailable = buffer.getInt() != 0;
+        boolean carryOnTraining = buffer.getInt() != 0;
+
+        // A version 1 checkpoint has no early stopping state, so the monitor carries on from the best validation RMSE
+        double earlyStoppingBestRootMeanSquaredError = bestValidationRootMeanSquaredError;
+        double improvedRootMeanSquaredError = bestValidationRootMeanSquaredError;
+        int validationsWithoutImprovement = 0;
+        double[] earlyStoppingHistory = new double[0];
+        boolean bestWeightsHeld = false;
+        if (formatVersion == FORMAT_VERSION) {
+            earlyStoppingBestRootMeanSquaredError = buffer.getDouble();
+            improvedRootMeanSquaredError = buffer.getDouble();
+            validationsWithoutImprovement = buffer.getInt();
+            earlyStoppingHistory = new double[buffer.getInt()];
+            for (int historyNum = 0; historyNum < earlyStoppingHistory.length; historyNum++) {
+                earlyStoppingHistory[historyNum] = buffer.getDouble();
+            }
+            bestWeightsHeld = buffer.getInt() != 0;
+        }
+
+        // Read the weights, previous weights, biases and previous biases of each layer
+        buffer.position((buffer.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES);
+        double[][] weights = new double[layerSizes.length][];
+        double[][] previousWeights = new double[layerSizes.length][];
+        double[][] biases = new double[layerSizes.length][];
+        double[][] previousBiases = new double[layerSizes.length][];
+        int numberOfLayerInputs = numberOfInputs;
+        long expectedLength = buffer.position();
+        int copiesOfParameters = bestWeightsHeld ? 3 : 2;
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            expectedLength = expectedLength + (long) copiesOfParameters * (layerSizes[layerNum] * numberOfLayerInputs + layerSizes[layerNum]) * Double.BYTES;
+            numberOfLayerInputs = layerSizes[layerNum];
+        }
+        if (expectedLength != buffer.limit()) {
+            throw new IOException(file + " is " + buffer.limit() + " bytes, but its header describes " + expectedLength + " bytes");
+        }
+        numberOfLayerInputs = numberOfInputs;
+        for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+            weights[layerNum] = getDoubles(buffer, layerSizes[layerNum] * numberOfLayerInputs);
+            previousWeights[layerNum] = getDoubles(buffer, layerSizes[layerNum] * numberOfLayerInputs);
+            biases[layerNum] = getDoubles(buffer, layerSizes[layerNum]);
+            previousBiases[layerNum] = getDoubles(buffer, layerSizes[layerNum]);
+            numberOfLayerInputs = layerSizes[layerNum];
+        }
+        double[][] bestWeights = null;
+        double[][] bestBiases = null;
+        if (bestWeightsHeld) {
+            bestWeights = new double[layerSizes.length][];
+            bestBiases = new double[layerSizes.length][];
+            numberOfLayerInputs = numberOfInputs;
+            for (int layerNum = 0; layerNum < layerSizes.length; layerNum++) {
+                bestWeights[layerNum] = getDoubles(buffer, layerSizes[layerNum] * numberOfLayerInputs);
+                bestBiases[layerNum] = getDoubles(buffer, layerSizes[layerNum]);
+                numberOfLayerInputs = layerSizes[layerNum];
+            }
+        }
+
+        return new TrainingCheckpoint(numberOfInputs, layerSizes, activationFunction, improvements, numberOfEpochsToTrainFor, batchSize, seed,
+                epochCount, learningRate, startingLearningRate, bestValidationRootMeanSquaredError, validationRootMeanSquaredError,
+                previousWeightsAndBiasesAvailable, carryOnTraining, weights, previousWeights, biases, previousBiases,
+                earlyStoppingBestRootMeanSquaredError, improvedRootMeanSquaredError, validationsWithoutImprovement, earlyStoppingHistory, bestWeights, bestBiases);
+    }
+
+
+    /**
+     * Puts an array of doubles into a buffer in bulk
+     *
+     * @param buffer the buffer to put the doubles into, at its current position
+     * @param values the doubles to put
+     */
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Double.BYTES);
+    }
+
+
+    /**
+     * Gets a number of doubles from a buffer in bulk
+     *
+     * @param buffer         the buffer to get the doubles from, at its current position
+     * @param numberOfValues the number of doubles to get
+     * @return a new array of the doubles
+     */
+    private static double[] getDoubles(ByteBuffer buffer, int numberOfValues) {
+        double[] values = new double[numberOfValues];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + numberOfValues * Double.BYTES);
+        return values;
+    }
+
+
+    /**
+     * Gets a UTF-8 string from a buffer, stored as its length in bytes followed by its bytes
+     *
+     * @param buffer the buffer to get the string from, at its current position
+     * @return the string
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
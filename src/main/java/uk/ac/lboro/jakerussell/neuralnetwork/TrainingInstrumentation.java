@@ -0,0 +1,404 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TrainingInstrumentation is responsible for timing the phases of training a NeuralNetwork - the forward pass, the
+ * backward pass, updating the weights and biases, and validation - and counting the epochs and samples trained, so that
+ * where the time goes during training can be watched live. While train() is running, the results are published as a
+ * TrainingInstrumentationMXBean, and a summary line is printed every 10 seconds.
+ * <p>
+ * Instrumentation is switched on for the whole JVM with the neuralnetwork.instrumentation system property. It is off by
+ * default, and as the switch is a constant once the class is loaded, the JIT compiler removes the instrumentation from
+ * the training loops altogether, so it costs nothing. When it is on, the phases of every 64th catchment area are timed,
+ * rather than every one, as reading the clock takes about as long as a forward pass of a small network. With Batch
+ * Processing, each chunk of a mini-batch is timed instead, and the weight update of every mini-batch.
+ * <p>
+ * The sampling interval is set with neuralnetwork.instrumentationSamplingInterval, which is rounded up to a power of two,
+ * and the number of seconds between log lines with neuralnetwork.instrumentationLogInterval, where 0 turns the log line
+ * off.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class TrainingInstrumentation implements TrainingInstrumentationMXBean {
+
+    /**
+     * The system property used to switch instrumentation on
+     */
+    static final String INSTRUMENTATION_PROPERTY = "neuralnetwork.instrumentation";
+
+    /**
+     * The system property used to set how many catchment areas there are for each one whose phases are timed
+     */
+    static final String SAMPLING_INTERVAL_PROPERTY = "neuralnetwork.instrumentationSamplingInterval";
+
+    /**
+     * The system property used to set the number of seconds between log lines
+     */
+    static final String LOG_INTERVAL_PROPERTY = "neuralnetwork.instrumentationLogInterval";
+
+    /**
+     * Whether instrumentation is switched on. The training loops check this before anything else, so that they are
+     * compiled without the instrumentation when it is off.
+     */
+    static final boolean ENABLED = Boolean.getBoolean(INSTRUMENTATION_PROPERTY);
+
+    /**
+     * The phases of a catchment area are timed if the bits of its number in this mask are all 0
+     */
+    static final int SAMPLING_MASK = Integer.highestOneBit(Math.min(Math.max(Integer.getInteger(SAMPLING_INTERVAL_PROPERTY, 64), 1), 1 << 20) * 2 - 1) - 1;
+
+    private static final long LOG_INTERVAL_SECONDS = Long.getLong(LOG_INTERVAL_PROPERTY, 10);
+    private static final String OBJECT_NAME_PREFIX = "uk.ac.lboro.jakerussell.neuralnetwork:type=Training,name=";
+    private static final AtomicInteger NUMBER_OF_NETWORKS = new AtomicInteger();
+
+    // Prints the log line of every network being trained, on a single shared daemon thread. Created when first needed.
+    private static ScheduledExecutorService logExecutor;
+
+    private final String name;
+
+    private final PhaseHistogram forwardPass = new PhaseHistogram();
+    private final PhaseHistogram backwardPass = new PhaseHistogram();
+    private final PhaseHistogram weightUpdate = new PhaseHistogram();
+    private final PhaseHistogram validation = new PhaseHistogram();
+
+    // Written by the training thread at the end of each epoch or validation, and read by any thread
+    private volatile int epochCount;
+    private volatile long numberOfSamplesTrained;
+    private volatile double learningRate;
+    private volatile double trainingRootMeanSquaredError;
+    private volatile double validationRootMeanSquaredError;
+
+    // Guarded by this. The counts at the start of the period the rates are worked out over, which begins at the last log
+    // line, or when train() was called.
+    private long periodStartTime;
+    private int periodStartEpochCount;
+    private long periodStartNumberOfSamplesTrained;
+
+    // Guarded by this. Set while train() is running.
+    private ObjectName objectName;
+    private ScheduledFuture<?> logTask;
+
+    /**
+     * Constructor creates the instrumentation for a network, which is given the next free name
+     */
+    TrainingInstrumentation() {
+        this.name = "network-" + NUMBER_OF_NETWORKS.incrementAndGet();
+    }
+
+
+    /**
+     * Resets the results for a new training run, then registers the MXBean and starts printing the log line
+     *
+     * @param epochCount   the number of epochs already trained for, which is only more than 0 if the network was resumed
+     * @param learningRate the learning rate at the start of training
+     */
+    synchronized void trainingStarted(int epochCount, double learningRate) {
+        forwardPass.reset();
+        backwardPass.reset();
+        weightUpdate.reset();
+        validation.reset();
+        this.epochCount = epochCount;
+        this.numberOfSamplesTrained = 0;
+        this.learningRate = learningRate;
+        this.trainingRootMeanSquaredError = Double.NaN;
+        this.validationRootMeanSquaredError = Double.NaN;
+        this.periodStartTime = System.nanoTime();
+        this.periodStartEpochCount = epochCount;
+        this.periodStartNumberOfSamplesTrained = 0;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName newObjectName = new ObjectName(OBJECT_NAME_PREFIX + name);
+            server.registerMBean(this, newObjectName);
+            this.objectName = newObjectName;
+        } catch (JMException e) {
+            System.out.println("Could not register " + name + " for JMX: " + e.getMessage());
+        }
+
+        if (LOG_INTERVAL_SECONDS > 0) {
+            this.logTask = logExecutor().scheduleAtFixedRate(() -> System.out.println(logLine()), LOG_INTERVAL_SECONDS, LOG_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+
+    /**
+     * Stops printing the log line, prints a final one, and unregisters the MXBean
+     */
+    synchronized void trainingFinished() {
+        if (logTask != null) {
+            logTask.cancel(false);
+            logTask = null;
+            System.out.println(logLine());
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                System.out.println("Could not unregister " + name + " from JMX: " + e.getMessage());
+            }
+            objectName = null;
+        }
+    }
+
+
+    /**
+     * Records the end of an epoch
+     *
+     * @param epochCount                   the number of epochs trained for so far
+     * @param numberOfSamples              the number of catchment areas trained on during the epoch
+     * @param trainingRootMeanSquaredError the RMSE for the training data during the epoch
+     * @param learningRate                 the learning rate at the end of the epoch
+     */
+    void epochFinished(int epochCount, long numberOfSamples, double trainingRootMeanSquaredError, double learningRate) {
+        this.numberOfSamplesTrained = this.numberOfSamplesTrained + numberOfSamples;
+        this.trainingRootMeanSquaredError = trainingRootMeanSquaredError;
+        this.learningRate = learningRate;
+        this.epochCount = epochCount;
+    }
+
+
+    /**
+     * Records the result of a validation
+     *
+     * @param validationRootMeanSquaredError the RMSE for the validation data
+     */
+    void validationFinished(double validationRootMeanSquaredError) {
+        this.validationRootMeanSquaredError = validationRootMeanSquaredError;
+    }
+
+
+    /**
+     * Records the time taken by a forward pass
+     *
+     * @param startTime the value of System.nanoTime() when the forward pass started
+     * @return the value of System.nanoTime() now, so that the next phase can be timed from it
+     */
+    long recordForwardPass(long startTime) {
+        long now = System.nanoTime();
+        forwardPass.record(now - startTime);
+        return now;
+    }
+
+
+    /**
+     * Records the time taken by a backward pass
+     *
+     * @param startTime the value of System.nanoTime() when the backward pass started
+     * @return the value of System.nanoTime() now, so that the next phase can be timed from it
+     */
+    long recordBackwardPass(long startTime) {
+        long now = System.nanoTime();
+        backwardPass.record(now - startTime);
+        return now;
+    }
+
+
+    /**
+     * Records the time taken by updating the weights and biases
+     *
+     * @param startTime the value of System.nanoTime() when the update started
+     * @return the value of System.nanoTime() now, so that the next phase can be timed from it
+     */
+    long recordWeightUpdate(long startTime) {
+        long now = System.nanoTime();
+        weightUpdate.record(now - startTime);
+        return now;
+    }
+
+
+    /**
+     * Records the time taken by a validation, which may have run on the validation thread
+     *
+     * @param startTime the value of System.nanoTime() when the validation started
+     * @return the value of System.nanoTime() now
+     */
+    long recordValidation(long startTime) {
+        long now = System.nanoTime();
+        validation.record(now - startTime);
+        return now;
+    }
+
+
+    /**
+     * Returns the number of epochs trained for so far, including any trained before the network was resumed
+     *
+     * @return the epoch count
+     */
+    @Override
+    public int getEpochCount() {
+        return epochCount;
+    }
+
+
+    /**
+     * Returns the number of catchment areas trained on since train() was called
+     *
+     * @return the number of samples trained on
+     */
+    @Override
+    public long getNumberOfSamplesTrained() {
+        return numberOfSamplesTrained;
+    }
+
+
+    /**
+     * Returns the number of catchment areas trained on per second since the last log line, or since train() was called if
+     * there has not been one yet
+     *
+     * @return the samples per second
+     */
+    @Override
+    public synchronized double getSamplesPerSecond() {
+        return (numberOfSamplesTrained - periodStartNumberOfSamplesTrained) / secondsSincePeriodStart();
+    }
+
+
+    /**
+     * Returns the number of epochs trained per second since the last log line, or since train() was called if there has
+     * not been one yet
+     *
+     * @return the epochs per second
+     */
+    @Override
+    public synchronized double getEpochsPerSecond() {
+        return (epochCount - periodStartEpochCount) / secondsSincePeriodStart();
+    }
+
+
+    /**
+     * Returns the learning rate at the end of the most recent epoch
+     *
+     * @return the current learning rate
+     */
+    @Override
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+
+    /**
+     * Returns the RMSE for the training data during the most recent epoch
+     *
+     * @return the training RMSE
+     */
+    @Override
+    public double getTrainingRootMeanSquaredError() {
+        return trainingRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the RMSE for the validation data of the most recent validation, or NaN before the first validation
+     *
+     * @return the validation RMSE
+     */
+    @Override
+    public double getValidationRootMeanSquaredError() {
+        return validationRootMeanSquaredError;
+    }
+
+
+    /**
+     * Returns the statistics of the time taken by the forward pass
+     *
+     * @return the forward pass statistics
+     */
+    @Override
+    public PhaseStatistics getForwardPass() {
+        return forwardPass.snapshot();
+    }
+
+
+    /**
+     * Returns the statistics of the time taken by the backward pass
+     *
+     * @return the backward pass statistics
+     */
+    @Override
+    public PhaseStatistics getBackwardPass() {
+        return backwardPass.snapshot();
+    }
+
+
+    /**
+     * Returns the statistics of the time taken by updating the weights and biases
+     *
+     * @return the weight update statistics
+     */
+    @Override
+    public PhaseStatistics getWeightUpdate() {
+        return weightUpdate.snapshot();
+    }
+
+
+    /**
+     * Returns the statistics of the time taken by validating the network
+     *
+     * @return the validation statistics
+     */
+    @Override
+    public PhaseStatistics getValidation() {
+        return validation.snapshot();
+    }
+
+
+    /**
+     * Builds the log line summarising training so far, and starts a new period for the rates to be worked out over
+     *
+     * @return the log line
+     */
+    synchronized String logLine() {
+        String logLine = "[" + name + "] epoch " + epochCount +
+                ", " + Math.round(getSamplesPerSecond()) + " samples/s" +
+                ", " + Math.round(getEpochsPerSecond()) + " epochs/s" +
+                ", learning rate " + learningRate +
+                ", training RMSE " + trainingRootMeanSquaredError +
+                ", validation RMSE " + validationRootMeanSquaredError +
+                ", forward " + forwardPass.snapshot() +
+                ", backward " + backwardPass.snapshot() +
+                ", update " + weightUpdate.snapshot() +
+                ", validation " + validation.snapshot();
+        periodStartTime = System.nanoTime();
+        periodStartEpochCount = epochCount;
+        periodStartNumberOfSamplesTrained = numberOfSamplesTrained;
+        return logLine;
+    }
+
+
+    /**
+     * Works out how long it has been since the start of the period the rates are worked out over
+     *
+     * @return the number of seconds since the period started
+     */
+    private double secondsSincePeriodStart() {
+        return Math.max(System.nanoTime() - periodStartTime, 1) / 1e9;
+    }
+
+
+    /**
+     * Returns the thread which prints the log lines, creating it if it does not exist yet
+     *
+     * @return the executor which prints the log lines
+     */
+    private static synchronized ScheduledExecutorService logExecutor() {
+        if (logExecutor == null) {
+            logExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "training-instrumentation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return logExecutor;
+    }
+}
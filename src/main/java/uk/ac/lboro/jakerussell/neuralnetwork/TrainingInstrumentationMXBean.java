@@ -0,0 +1,102 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * TrainingInstrumentationMXBean is the management interface through which the progress of a NeuralNetwork being trained
+ * can be watched live over JMX, such as with JConsole or a monitoring agent. Each network being trained is registered
+ * under uk.ac.lboro.jakerussell.neuralnetwork:type=Training,name=network-n while train() is running.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public interface TrainingInstrumentationMXBean {
+
+    /**
+     * Returns the number of epochs trained for so far, including any trained before the network was resumed
+     *
+     * @return the epoch count
+     */
+    int getEpochCount();
+
+
+    /**
+     * Returns the number of catchment areas trained on since train() was called
+     *
+     * @return the number of samples trained on
+     */
+    long getNumberOfSamplesTrained();
+
+
+    /**
+     * Returns the number of catchment areas trained on per second since the last log line, or since train() was called if
+     * there has not been one yet
+     *
+     * @return the samples per second
+     */
+    double getSamplesPerSecond();
+
+
+    /**
+     * Returns the number of epochs trained per second since the last log line, or since train() was called if there has
+     * not been one yet
+     *
+     * @return the epochs per second
+     */
+    double getEpochsPerSecond();
+
+
+    /**
+     * Returns the learning rate at the end of the most recent epoch
+     *
+     * @return the current learning rate
+     */
+    double getLearningRate();
+
+
+    /**
+     * Returns the RMSE for the training data during the most recent epoch
+     *
+     * @return the training RMSE
+     */
+    double getTrainingRootMeanSquaredError();
+
+
+    /**
+     * Returns the RMSE for the validation data of the most recent validation, or NaN before the first validation
+     *
+     * @return the validation RMSE
+     */
+    double getValidationRootMeanSquaredError();
+
+
+    /**
+     * Returns the statistics of the time taken by the forward pass
+     *
+     * @return the forward pass statistics
+     */
+    PhaseStatistics getForwardPass();
+
+
+    /**
+     * Returns the statistics of the time taken by the backward pass
+     *
+     * @return the backward pass statistics
+     */
+    PhaseStatistics getBackwardPass();
+
+
+    /**
+     * Returns the statistics of the time taken by updating the weights and biases
+     *
+     * @return the weight update statistics
+     */
+    PhaseStatistics getWeightUpdate();
+
+
+    /**
+     * Returns the statistics of the time taken by validating the network
+     *
+     * @return the validation statistics
+     */
+    PhaseStatistics getValidation();
+}
@@ -0,0 +1,32 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+/**
+ * TrainingMetricsSink receives the results of each validation of a NeuralNetwork during training, such as to plot graphs
+ * of how training went.
+ * <p>
+ * The results are passed as primitives, and recordValidation() is called on the training thread, so an implementation
+ * must neither block nor allocate memory for each validation.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+public interface TrainingMetricsSink {
+
+    /**
+     * Records the results of a validation of the network
+     *
+     * @param epochCount                     the number of epochs trained for when the network was validated
+     * @param trainingRootMeanSquaredError   the RMSE for the training data during the epoch before the validation
+     * @param validationRootMeanSquaredError the RMSE for the validation data
+     * @param learningRate                   the learning rate after the validation, once Annealing has been applied
+     */
+    void recordValidation(int epochCount, double trainingRootMeanSquaredError, double validationRootMeanSquaredError, double learningRate);
+
+
+    /**
+     * Called once training has finished, after the last validation has been recorded, so that any results still being
+     * written can be finished off. The sink can record the results of another training run afterwards.
+     */
+    void trainingFinished();
+}
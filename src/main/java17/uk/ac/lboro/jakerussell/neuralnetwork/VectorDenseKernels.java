@@ -0,0 +1,158 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorDenseKernels implements the dense layer operations using SIMD instructions through the incubating Vector API.
+ * <p>
+ * The dot products are accumulated in separate lanes and with fused multiply-adds, and the exponential functions use
+ * the vector library's approximations, so results can differ from the scalar kernels in the last few bits. The weight
+ * updates perform the same operations on each weight as the scalar kernels. Any values left over after the last full
+ * vector are handled with scalar code.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+final class VectorDenseKernels implements DenseKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void batchWeightedSums(double[] weights, double[] biases, double[] inputs, double[] weightedSums, int numberOfSamples, int numberOfNodes, int numberOfInputs) {
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int inputOffset = sampleNum * numberOfInputs;
+            int outputOffset = sampleNum * numberOfNodes;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                weightedSums[outputOffset + nodeNum] = dotProduct(inputs, inputOffset, weights, nodeNum * numberOfInputs, numberOfInputs) + biases[nodeNum];
+            }
+        }
+    }
+
+    @Override
+    public void activate(ActivationFunctions activationFunction, double[] values, int offset, int length) {
+        int upperBound = offset + SPECIES.loopBound(length);
+        int valueNum = offset;
+        for (; valueNum < upperBound; valueNum += SPECIES.length()) {
+            DoubleVector weightedSums = DoubleVector.fromArray(SPECIES, values, valueNum);
+            DoubleVector activatedValues;
+            switch (activationFunction) {
+                case TANH:
+                    activatedValues = weightedSums.lanewise(VectorOperators.TANH);
+                    break;
+                case RELU:
+                    activatedValues = weightedSums.max(weightedSums.mul(0.01));
+                    break;
+                default:
+                    activatedValues = DoubleVector.broadcast(SPECIES, 1.0).div(weightedSums.neg().lanewise(VectorOperators.EXP).add(1.0));
+            }
+            activatedValues.intoArray(values, valueNum);
+        }
+        activationFunction.activate(values, valueNum, offset + length - valueNum);
+    }
+
+    @Override
+    public void firstDerivative(ActivationFunctions activationFunction, double[] values, double[] firstDerivatives, int offset, int length) {
+        int upperBound = offset + SPECIES.loopBound(length);
+        int valueNum = offset;
+        for (; valueNum < upperBound; valueNum += SPECIES.length()) {
+            DoubleVector valueVector = DoubleVector.fromArray(SPECIES, values, valueNum);
+            DoubleVector derivatives;
+            switch (activationFunction) {
+                case TANH:
+                    derivatives = DoubleVector.broadcast(SPECIES, 1.0).sub(valueVector.mul(valueVector));
+                    break;
+                case RELU:
+                    VectorMask<Double> notPositive = valueVector.compare(VectorOperators.LE, 0.0);
+                    derivatives = DoubleVector.broadcast(SPECIES, 1.0).blend(0.01, notPositive);
+                    break;
+                default:
+                    derivatives = valueVector.mul(DoubleVector.broadcast(SPECIES, 1.0).sub(valueVector));
+            }
+            derivatives.intoArray(firstDerivatives, valueNum);
+        }
+        activationFunction.firstDerivative(values, firstDerivatives, valueNum, offset + length - valueNum);
+    }
+
+    @Override
+    public void updateWeights(double[] weights, double[] updatedWeights, double[] deltas, double[] inputs, int numberOfNodes, int numberOfInputs,
+                              double learningRate, boolean useMomentum, double momentumTerm, boolean outputLayer) {
+        int upperBound = SPECIES.loopBound(numberOfInputs);
+        for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+            int rowOffset = nodeNum * numberOfInputs;
+            double delta = deltas[nodeNum];
+            double scaledDelta = learningRate * delta;
+            int inputNum = 0;
+            for (; inputNum < upperBound; inputNum += SPECIES.length()) {
+                DoubleVector weightVector = DoubleVector.fromArray(SPECIES, weights, rowOffset + inputNum);
+                DoubleVector inputVector = DoubleVector.fromArray(SPECIES, inputs, inputNum);
+                DoubleVector weightChanges = outputLayer ? inputVector.mul(scaledDelta) : inputVector.mul(delta).mul(learningRate);
+                DoubleVector newWeights = weightVector.add(weightChanges);
+
+                // If Momentum is to be used, calculate the new weight values with momentum, and add this to the weights
+                if (useMomentum) {
+                    newWeights = newWeights.add(newWeights.sub(weightVector).mul(momentumTerm));
+                }
+                newWeights.intoArray(updatedWeights, rowOffset + inputNum);
+            }
+            for (; inputNum < numberOfInputs; inputNum++) {
+                int weightNum = rowOffset + inputNum;
+                double newWeight = weights[weightNum] + (outputLayer ? scaledDelta * inputs[inputNum] : learningRate * (delta * inputs[inputNum]));
+                if (useMomentum) {
+                    double weightDifference = newWeight - weights[weightNum];
+                    newWeight = newWeight + (momentumTerm * weightDifference);
+                }
+                updatedWeights[weightNum] = newWeight;
+            }
+        }
+    }
+
+    @Override
+    public void accumulateWeightChanges(double[] deltas, double[] inputs, double[] weightChangeSums, int numberOfSamples, int numberOfNodes, int numberOfInputs) {
+        int upperBound = SPECIES.loopBound(numberOfInputs);
+        for (int sampleNum = 0; sampleNum < numberOfSamples; sampleNum++) {
+            int inputOffset = sampleNum * numberOfInputs;
+            for (int nodeNum = 0; nodeNum < numberOfNodes; nodeNum++) {
+                double delta = deltas[sampleNum * numberOfNodes + nodeNum];
+                int rowOffset = nodeNum * numberOfInputs;
+                int inputNum = 0;
+                for (; inputNum < upperBound; inputNum += SPECIES.length()) {
+                    DoubleVector inputVector = DoubleVector.fromArray(SPECIES, inputs, inputOffset + inputNum);
+                    DoubleVector sumVector = DoubleVector.fromArray(SPECIES, weightChangeSums, rowOffset + inputNum);
+                    sumVector.add(inputVector.mul(delta)).intoArray(weightChangeSums, rowOffset + inputNum);
+                }
+                for (; inputNum < numberOfInputs; inputNum++) {
+                    weightChangeSums[rowOffset + inputNum] = weightChangeSums[rowOffset + inputNum] + (delta * inputs[inputOffset + inputNum]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the dot product of two ranges of values
+     *
+     * @param values       the first array of values
+     * @param valuesOffset the index of the first value to use in the first array
+     * @param weights      the second array of values
+     * @param weightOffset the index of the first value to use in the second array
+     * @param length       the number of values to multiply and sum
+     * @return the sum of the products of each pair of values
+     */
+    private static double dotProduct(double[] values, int valuesOffset, double[] weights, int weightOffset, int length) {
+        int upperBound = SPECIES.loopBound(length);
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        int valueNum = 0;
+        for (; valueNum < upperBound; valueNum += SPECIES.length()) {
+            DoubleVector valueVector = DoubleVector.fromArray(SPECIES, values, valuesOffset + valueNum);
+            DoubleVector weightVector = DoubleVector.fromArray(SPECIES, weights, weightOffset + valueNum);
+            sums = valueVector.fma(weightVector, sums);
+        }
+        double weightedSum = sums.reduceLanes(VectorOperators.ADD);
+        for (; valueNum < length; valueNum++) {
+            weightedSum = weightedSum + (values[valuesOffset + valueNum] * weights[weightOffset + valueNum]);
+        }
+        return weightedSum;
+    }
+}
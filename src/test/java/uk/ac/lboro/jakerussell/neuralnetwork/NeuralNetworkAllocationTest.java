@@ -0,0 +1,98 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NeuralNetworkAllocationTest checks that once training has warmed up, an epoch allocates no memory at all, so that the
+ * garbage collector never runs because of training. The epochs are trained with trainEpoch() directly, so that the
+ * validations which train() performs every few hundred epochs are not counted.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+class NeuralNetworkAllocationTest {
+
+    private static final int NUMBER_OF_SAMPLES = 342;
+    private static final int NUMBER_OF_WARM_UP_EPOCHS = 20000;
+    private static final int NUMBER_OF_MEASURED_EPOCHS = 1000;
+
+    /**
+     * Checks that an epoch of online training, which updates the weights and biases after every catchment area,
+     * allocates no memory
+     */
+    @Test
+    void onlineEpochAllocatesNothing() {
+        assertEquals(0, bytesAllocatedByEpochs(new ArrayList<>(Arrays.asList(Improvements.MOMENTUM))));
+    }
+
+
+    /**
+     * Checks that an epoch of training with Batch Processing, which updates the weights and biases after every
+     * mini-batch, allocates no memory
+     */
+    @Test
+    void batchProcessingEpochAllocatesNothing() {
+        assertEquals(0, bytesAllocatedByEpochs(new ArrayList<>(Arrays.asList(Improvements.MOMENTUM, Improvements.BATCH_PROCESSING))));
+    }
+
+
+    /**
+     * Trains a network until the JIT compiler has compiled the training loops, and then measures how many bytes the
+     * current thread allocates while training for a number of epochs
+     *
+     * @param improvements the improvements the network is trained with
+     * @return the number of bytes allocated by the measured epochs
+     */
+    private static long bytesAllocatedByEpochs(List<Improvements> improvements) {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threadBean.isThreadAllocatedMemorySupported(), "The JVM cannot measure the memory allocated by a thread");
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        NeuralNetwork network = new NeuralNetwork(CatchmentArea.NUMBER_OF_FEATURES, 8, 0.1, ActivationFunctions.SIGMOID, improvements, 0, 42L);
+        Dataset trainingData = randomDataset();
+        for (int epochNum = 0; epochNum < NUMBER_OF_WARM_UP_EPOCHS; epochNum++) {
+            network.trainEpoch(trainingData);
+        }
+
+        // Reading the number of bytes allocated may itself allocate, so this is measured first and taken away
+        long threadId = Thread.currentThread().getId();
+        long measurementStart = threadBean.getThreadAllocatedBytes(threadId);
+        long measurementEnd = threadBean.getThreadAllocatedBytes(threadId);
+        long measurementBytes = measurementEnd - measurementStart;
+
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int epochNum = 0; epochNum < NUMBER_OF_MEASURED_EPOCHS; epochNum++) {
+            network.trainEpoch(trainingData);
+        }
+        long end = threadBean.getThreadAllocatedBytes(threadId);
+        return end - start - measurementBytes;
+    }
+
+
+    /**
+     * Creates a training dataset of random standardised catchment areas
+     *
+     * @return the dataset
+     */
+    private static Dataset randomDataset() {
+        SplittableRandom random = new SplittableRandom(7L);
+        Dataset dataset = new Dataset(NUMBER_OF_SAMPLES, CatchmentArea.NUMBER_OF_FEATURES, 1);
+        for (int sampleNum = 0; sampleNum < NUMBER_OF_SAMPLES; sampleNum++) {
+            for (int featureNum = 0; featureNum < CatchmentArea.NUMBER_OF_FEATURES; featureNum++) {
+                dataset.setFeature(sampleNum, featureNum, random.nextDouble(0.1, 0.9));
+            }
+            dataset.setTarget(sampleNum, 0, random.nextDouble(0.1, 0.9));
+        }
+        return dataset;
+    }
+}
@@ -0,0 +1,99 @@
+package uk.ac.lboro.jakerussell.neuralnetwork;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PrefetchingIteratorTest checks that the background thread of a PrefetchingIterator finishes both when the iterator is
+ * consumed to the end and when it is closed part-way through, so that nothing the producer holds open is leaked, and
+ * that the caller is told when the producer fails rather than waiting forever.
+ *
+ * @author Jake Russell
+ * @version 1.0
+ * @since 22/03/2021
+ */
+class PrefetchingIteratorTest {
+
+    /**
+     * Checks that every element is returned in order, and that the producer finishes once they have all been consumed
+     *
+     * @throws InterruptedException if interrupted while waiting for the producer to finish
+     */
+    @Test
+    void consumingToTheEndReturnsEveryElement() throws InterruptedException {
+        CountDownLatch producerFinished = new CountDownLatch(1);
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(sink -> {
+            try {
+                for (int elementNum = 0; elementNum < 10; elementNum++) {
+                    sink.accept(elementNum);
+                }
+            } finally {
+                producerFinished.countDown();
+            }
+        }, 2, "Test Producer");
+
+        for (int elementNum = 0; elementNum < 10; elementNum++) {
+            assertTrue(iterator.hasNext());
+            assertEquals(elementNum, iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        assertTrue(producerFinished.await(5, TimeUnit.SECONDS));
+    }
+
+
+    /**
+     * Checks that closing the iterator part-way through stops a producer which is waiting for space in the queue, so that
+     * it can release what it holds open
+     *
+     * @throws InterruptedException if interrupted while waiting for the producer to finish
+     */
+    @Test
+    void closingPartWayThroughStopsTheProducer() throws InterruptedException {
+        CountDownLatch producerFinished = new CountDownLatch(1);
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(sink -> {
+            try {
+                for (int elementNum = 0; ; elementNum++) {
+                    sink.accept(elementNum);
+                }
+            } finally {
+                producerFinished.countDown();
+            }
+        }, 2, "Test Producer");
+
+        assertEquals(0, iterator.next());
+        iterator.close();
+        assertTrue(producerFinished.await(5, TimeUnit.SECONDS));
+
+        // Closing again has no effect
+        iterator.close();
+    }
+
+
+    /**
+     * Checks that an error thrown by the producer, such as running out of memory while reading a chunk, is thrown to the
+     * caller once the elements produced before it have been consumed, rather than leaving the caller waiting forever
+     */
+    @Test
+    void errorThrownByTheProducerIsThrownToTheCaller() {
+        OutOfMemoryError error = new OutOfMemoryError("Test error");
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(sink -> {
+            sink.accept(0);
+            throw error;
+        }, 2, "Test Producer");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertEquals(0, iterator.next());
+            assertSame(error, assertThrows(OutOfMemoryError.class, iterator::hasNext));
+        });
+    }
+}